@@ -0,0 +1,34 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code target/benchmarks.jar}: the JMH command line with the gc profiler always
+ * on, so every result carries its allocation rate ({@code gc.alloc.rate.norm} is bytes per
+ * operation). For example
+ *
+ * <pre>
+ *   mvn -P benchmarks package
+ *   java -jar target/benchmarks.jar MaxFlowBenchmark -p shape=GRID_4 -p solver=BOYKOV_KOLMOGOROV,IBFS
+ *   java -jar target/benchmarks.jar SegmentationBenchmark -rf json
+ * </pre>
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
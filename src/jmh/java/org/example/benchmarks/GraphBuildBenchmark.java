@@ -0,0 +1,106 @@
+package org.example.benchmarks;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.example.imaging.GridGraphBuilder;
+import org.example.imaging.HistogramModel;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the segmentation graph of a synthetic image with {@link GridGraphBuilder}, without
+ * solving it, on the calling thread and in parallel row bands, with the vector and the scalar
+ * lookup kernel.
+ *
+ * <p>{@code fill} only computes the capacities, {@code build} also adds the edges to a solver that
+ * is cleared and reused between invocations, as a pooled solver would be. Run through
+ * {@link BenchmarkMain} to check that neither allocates per invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class GraphBuildBenchmark {
+
+    @Param({"512", "2048"})
+    int side;
+
+    @Param({"4", "8"})
+    int connectivity;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    // the SIMD kernel of the vector API, or the scalar loop it falls back to
+    @Param({"false", "true"})
+    boolean scalarKernel;
+
+    private int[] intensities;
+    private HistogramModel hist;
+    private BitSet inO, inB;
+    private int src, sink;
+    private GridGraphBuilder builder;
+    private NetworkFlowSolverBase graph;
+
+    @Setup(Level.Trial)
+    public void createImage() {
+        // read once when the kernel is chosen, every trial runs in its own fork
+        System.setProperty("graphcut.scalarKernel", String.valueOf(scalarKernel));
+
+        // a noisy bright disc, the object seeds a row through its middle, the background the first row
+        Random random = new Random(1);
+        intensities = new int[side * side];
+        for (int p = 0; p < intensities.length; p++) {
+            boolean object = Math.hypot(p % side - side / 2, p / side - side / 2) < side / 3;
+            intensities[p] = Math.clamp((object ? 180 : 70) + random.nextInt(61) - 30, 0, 255);
+        }
+        inO = new BitSet(side * side);
+        inO.set(side / 2 * side + side / 4, side / 2 * side + 3 * side / 4);
+        inB = new BitSet(side * side);
+        inB.set(0, side);
+        src = inO.nextSetBit(0);
+        sink = 0;
+
+        hist = new HistogramModel();
+        for (int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) hist.addObjSeed(intensities[o]);
+        for (int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) hist.addBkgSeed(intensities[b]);
+        hist.compile();
+
+        builder = new GridGraphBuilder(side, side, connectivity);
+        builder.setParallel(parallel);
+        graph = new BoykovKolmogorovSolver(side * side, src, sink);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearGraph() {
+        graph.clearEdges();
+    }
+
+    @Benchmark
+    public GridGraphBuilder fill() {
+        builder.fill(intensities, hist, inO, inB);
+        return builder;
+    }
+
+    @Benchmark
+    public NetworkFlowSolverBase build() {
+        builder.fill(intensities, hist, inO, inB);
+        builder.addTo(graph, src, sink);
+        return graph;
+    }
+}
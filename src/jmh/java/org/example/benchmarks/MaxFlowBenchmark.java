@@ -0,0 +1,145 @@
+package org.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
+import org.example.network.EdmondsKarpSolver;
+import org.example.network.IbfsSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.ParallelPushRelabelSolver;
+import org.example.network.PushRelabelSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every {@link NetworkFlowSolverBase} solver on synthetic networks: 4- and 8-connected
+ * segmentation-like grids of growing side, and random layered graphs of the same node count.
+ *
+ * <p>{@code build} only adds the edges, {@code solve} only solves a graph built beforehand, and
+ * {@code buildAndSolve} is what a caller pays for a fresh cut. Run through {@link BenchmarkMain}
+ * to get the allocation rate next to the times. Solved solvers are closed, so the worker threads
+ * of {@link ParallelPushRelabelSolver} do not pile up between invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaxFlowBenchmark {
+
+    /** Solvers under test, add new ones here. */
+    public enum Solver {
+        EDMONDS_KARP {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new EdmondsKarpSolver(n, s, t);
+            }
+        },
+        BOYKOV_KOLMOGOROV {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new BoykovKolmogorovSolver(n, s, t);
+            }
+        },
+        DINIC {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new DinicSolver(n, s, t);
+            }
+        },
+        IBFS {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new IbfsSolver(n, s, t);
+            }
+        },
+        PUSH_RELABEL {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new PushRelabelSolver(n, s, t);
+            }
+        },
+        PARALLEL_PUSH_RELABEL {
+            NetworkFlowSolverBase create(int n, int s, int t) {
+                return new ParallelPushRelabelSolver(n, s, t);
+            }
+        };
+
+        abstract NetworkFlowSolverBase create(int n, int s, int t);
+    }
+
+    public enum Shape {
+        GRID_4, GRID_8, LAYERED
+    }
+
+    @Param
+    Solver solver;
+
+    @Param
+    Shape shape;
+
+    // grid side, layered graphs get side x side inner nodes in side layers
+    @Param({"64", "128", "256"})
+    int side;
+
+    private Workload workload;
+
+    // built by the invocation setup, only solved by the benchmark
+    private NetworkFlowSolverBase built;
+
+    @Setup(Level.Trial)
+    public void createWorkload() {
+        workload = switch (shape) {
+            case GRID_4 -> Workload.grid(side, 4, 42);
+            case GRID_8 -> Workload.grid(side, 8, 42);
+            case LAYERED -> Workload.layered(side, side, 4, 42);
+        };
+    }
+
+    @Setup(Level.Invocation)
+    public void buildGraph() {
+        built = newSolver();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeGraph() {
+        close(built);
+        built = null;
+    }
+
+    private NetworkFlowSolverBase newSolver() {
+        return workload.addTo(solver.create(workload.nodes(), workload.source(), workload.sink()));
+    }
+
+    // stops the worker threads of a solver that has them
+    private static void close(NetworkFlowSolverBase solver) {
+        if (solver instanceof ParallelPushRelabelSolver parallel) parallel.close();
+    }
+
+    @Benchmark
+    public NetworkFlowSolverBase build() {
+        return newSolver();
+    }
+
+    @Benchmark
+    public long solve() {
+        return built.getMaxFlow();
+    }
+
+    @Benchmark
+    public long buildAndSolve() {
+        NetworkFlowSolverBase fresh = newSolver();
+        try {
+            return fresh.getMaxFlow();
+        } finally {
+            close(fresh);
+        }
+    }
+}
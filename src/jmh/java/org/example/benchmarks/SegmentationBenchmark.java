@@ -0,0 +1,115 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.ProcessedImage.GraphCutEngine;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole segmentations of the {@code images/} corpus through {@link ProcessedImage#runGraphCut},
+ * graph building included, with each engine and with the banded multilevel cut.
+ *
+ * <p>There is nobody to click seeds, so the object seeds are a small square in the middle of the
+ * image and the background seeds run along its border. Images are read from the directory in the
+ * {@code benchmark.images} system property, {@code images} by default, so run from the project
+ * root or pass {@code -jvmArgs -Dbenchmark.images=...}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SegmentationBenchmark {
+
+    @Param({"cat.jpg", "baby.jpg", "mcgraw.jpg"})
+    String image;
+
+    // same downsizing as Main
+    @Param({"5"})
+    int downsize;
+
+    @Param({"BOYKOV_KOLMOGOROV", "GRID_BOYKOV_KOLMOGOROV", "PARALLEL_GRID_BOYKOV_KOLMOGOROV", "IBFS", "MULTILEVEL"})
+    String engine;
+
+    @Param({"4"})
+    int connectivity;
+
+    private Path file;
+    private ProcessedImage processed;
+    private int src, sink;
+    private List<CustomPoint> objSeeds, bkgSeeds;
+
+    @Setup(Level.Trial)
+    public void chooseSeeds() {
+        file = Path.of(System.getProperty("benchmark.images", "images"), image);
+        if (!Files.isRegularFile(file))
+            throw new IllegalStateException("Cannot find " + file.toAbsolutePath());
+        ProcessedImage probe = load();
+        int width = probe.getDimensions().width();
+        int height = probe.getDimensions().height();
+
+        objSeeds = new ArrayList<>();
+        int r = Math.max(1, Math.min(width, height) / 20);
+        for (int y = height / 2 - r; y <= height / 2 + r; y++) {
+            for (int x = width / 2 - r; x <= width / 2 + r; x++) objSeeds.add(new CustomPoint(x, y));
+        }
+        bkgSeeds = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            bkgSeeds.add(new CustomPoint(x, 0));
+            bkgSeeds.add(new CustomPoint(x, height - 1));
+        }
+        for (int y = 1; y < height - 1; y++) {
+            bkgSeeds.add(new CustomPoint(0, y));
+            bkgSeeds.add(new CustomPoint(width - 1, y));
+        }
+        src = objSeeds.get(objSeeds.size() / 2).pointToIndex(width);
+        sink = 0;
+    }
+
+    // a fresh image each time, runGraphCut keeps the solved graph of the last run
+    @Setup(Level.Invocation)
+    public void loadImage() {
+        processed = load();
+    }
+
+    private ProcessedImage load() {
+        ProcessedImage loaded;
+        try {
+            loaded = ProcessedImage.decode(file.toString(), downsize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        loaded.grayScaleImage();
+        loaded.setConnectivity(connectivity);
+        if (engine.equals("MULTILEVEL")) {
+            loaded.setMultilevel(true);
+        } else {
+            loaded.setGraphCutEngine(GraphCutEngine.valueOf(engine));
+        }
+        return loaded;
+    }
+
+    @Benchmark
+    public boolean[] segment() {
+        return processed.runGraphCut(src, sink, objSeeds, bkgSeeds);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.example.network.NetworkFlowSolverBase;
+
+/**
+ * A synthetic flow network kept as flat edge arrays, so the same graph can be fed to every solver
+ * and building it can be timed apart from solving it.
+ */
+public record Workload(int nodes, int source, int sink, int[] from, int[] to, long[] capacity) {
+
+    public int edges() {
+        return from.length;
+    }
+
+    /** Adds every edge to a solver created for this workload. */
+    public <S extends NetworkFlowSolverBase> S addTo(S solver) {
+        for (int i = 0; i < from.length; i++) solver.addEdge(from[i], to[i], capacity[i]);
+        return solver;
+    }
+
+    /**
+     * A side x side pixel lattice shaped like a segmentation graph: a smooth random intensity
+     * field, t-links that prefer bright pixels for the source and dark ones for the sink, and
+     * n-links that are cheap across intensity edges. Connectivity is 4 or 8.
+     */
+    public static Workload grid(int side, int connectivity, long seed) {
+        if (connectivity != 4 && connectivity != 8)
+            throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        Random random = new Random(seed);
+        int pixels = side * side;
+        int source = pixels, sink = pixels + 1;
+
+        // a few overlapping blobs plus noise
+        double[] intensity = new double[pixels];
+        for (int blob = 0; blob < 6; blob++) {
+            double cx = random.nextDouble() * side, cy = random.nextDouble() * side;
+            double radius = side * (0.1 + 0.2 * random.nextDouble());
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    double d = Math.hypot(x - cx, y - cy) / radius;
+                    intensity[y * side + x] += 200 * Math.exp(-d * d);
+                }
+            }
+        }
+        for (int i = 0; i < pixels; i++) intensity[i] = Math.min(255, intensity[i] + 20 * random.nextDouble());
+
+        int perPixel = 2 + connectivity / 2;
+        EdgeList edges = new EdgeList(pixels * perPixel);
+        int[][] forward = connectivity == 4 ? new int[][] {{1, 0}, {0, 1}} : new int[][] {{1, 0}, {0, 1}, {1, 1}, {-1, 1}};
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int p = y * side + x;
+                edges.add(source, p, 1 + (long) (intensity[p] * 100 / 255));
+                edges.add(p, sink, 1 + (long) ((255 - intensity[p]) * 100 / 255));
+                for (int[] d : forward) {
+                    int nx = x + d[0], ny = y + d[1];
+                    if (nx < 0 || nx >= side || ny >= side) continue;
+                    int q = ny * side + nx;
+                    double diff = intensity[p] - intensity[q];
+                    long weight = 1 + (long) (100 * Math.exp(-diff * diff / 200));
+                    edges.add(p, q, weight);
+                    edges.add(q, p, weight);
+                }
+            }
+        }
+        return edges.toWorkload(pixels + 2, source, sink);
+    }
+
+    /**
+     * Random layered network: the source feeds every node of the first layer, each node links to
+     * fanOut random nodes of the next layer and the last layer drains into the sink.
+     */
+    public static Workload layered(int layers, int width, int fanOut, long seed) {
+        Random random = new Random(seed);
+        int inner = layers * width;
+        int source = inner, sink = inner + 1;
+        EdgeList edges = new EdgeList(inner * fanOut + 2 * width);
+        for (int i = 0; i < width; i++) {
+            edges.add(source, i, 1 + random.nextInt(1000));
+            edges.add((layers - 1) * width + i, sink, 1 + random.nextInt(1000));
+        }
+        for (int layer = 0; layer + 1 < layers; layer++) {
+            for (int i = 0; i < width; i++) {
+                int u = layer * width + i;
+                for (int k = 0; k < fanOut; k++) {
+                    edges.add(u, (layer + 1) * width + random.nextInt(width), 1 + random.nextInt(1000));
+                }
+            }
+        }
+        return edges.toWorkload(inner + 2, source, sink);
+    }
+
+    private static final class EdgeList {
+        private int[] from, to;
+        private long[] capacity;
+        private int size;
+
+        EdgeList(int expected) {
+            from = new int[expected];
+            to = new int[expected];
+            capacity = new long[expected];
+        }
+
+        void add(int u, int v, long c) {
+            if (size == from.length) {
+                int grown = Math.max(16, size * 2);
+                from = Arrays.copyOf(from, grown);
+                to = Arrays.copyOf(to, grown);
+                capacity = Arrays.copyOf(capacity, grown);
+            }
+            from[size] = u;
+            to[size] = v;
+            capacity[size++] = c;
+        }
+
+        Workload toWorkload(int nodes, int source, int sink) {
+            return new Workload(nodes, source, sink, Arrays.copyOf(from, size),
+                    Arrays.copyOf(to, size), Arrays.copyOf(capacity, size));
+        }
+    }
+}
@@ -3,11 +3,13 @@ package org.example;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import org.example.imaging.ProcessedImage;
+import org.example.imaging.SegmentationCache;
 import org.example.use_interface.GraphicalUserInterface;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
@@ -15,12 +17,13 @@ import org.example.use_interface.GraphicalUserInterface;
 public class Main {
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
-        // process image for algoithm
-        ProcessedImage image = new ProcessedImage("images/mcgraw.jpg");
+        // process image for algoithm, decoded at a fifth of its size
+        ProcessedImage image = ProcessedImage.decode("images/mcgraw.jpg", 5);
         image.grayScaleImage();
-        image.resizeImage(5);
+        // seeds clicked back to an earlier set are not solved again
+        image.setResultCache(new SegmentationCache(16 << 20));
 
 
         // image props
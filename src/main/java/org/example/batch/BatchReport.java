@@ -0,0 +1,25 @@
+package org.example.batch;
+
+import java.util.List;
+
+/**
+ * Outcome of one {@link BatchSegmenter} run.
+ *
+ * @param segmented - Images whose mask was written.
+ * @param failures - One line per image that failed, with the stage and the error.
+ * @param elapsedNanos - Wall time from the first decode to the last write.
+ * @param peakHeapBytes - Sum of the peak usage of every heap memory pool during the run, an upper
+ *     bound of the peak heap since the pools need not peak at the same time.
+ */
+public record BatchReport(int segmented, List<String> failures, long elapsedNanos, long peakHeapBytes) {
+
+    public double imagesPerSecond() {
+        return elapsedNanos == 0 ? 0 : segmented * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d images in %.2f s, %.2f images/s, %d failed, peak heap %d MB",
+                segmented, elapsedNanos / 1e9, imagesPerSecond(), failures.size(), peakHeapBytes >> 20);
+    }
+}
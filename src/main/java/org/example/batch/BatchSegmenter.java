@@ -0,0 +1,321 @@
+package org.example.batch;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.ProcessedImage.GraphCutEngine;
+import org.example.imaging.SegmentationCache;
+import org.example.network.MinCut;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.SolverPool;
+
+/**
+ * Segments every image of a directory that has a {@link SeedFile} sidecar, without a user
+ * interface, and writes one mask per image.
+ *
+ * <p>Each image passes five stages: decode at the downsized size, grayscale, graph build, solve
+ * and mask write. Every stage has its own workers and hands images to the next one through a bounded
+ * queue, so reading and writing files, building graphs and solving them overlap across images
+ * while at most a few images per stage are held in memory. Decoding and writing run on virtual
+ * threads, building on a pool sized to the processors and solving on a pool of its own size.
+ * Solvers go back to a shared {@link SolverPool} once their cut is read, so images of one size
+ * reuse them.
+ *
+ * <p>An image that fails in any stage is dropped and reported, the others go on.
+ */
+public class BatchSegmenter {
+
+    private int downsize = 1;
+    private int connectivity = 4;
+    private GraphCutEngine engine = GraphCutEngine.BOYKOV_KOLMOGOROV;
+    private int ioThreads = 8;
+    private int cpuThreads = Runtime.getRuntime().availableProcessors();
+    private int solveThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int queueCapacity = 4;
+    private SegmentationCache cache;
+
+    /**
+     * Divides width and height of every image by factor, like {@link ProcessedImage#resizeImage},
+     * but while decoding with {@link ProcessedImage#decode(String, int)}.
+     */
+    public void setDownsize(int factor) {
+        if (factor < 1) throw new IllegalArgumentException("Downsize factor < 1");
+        this.downsize = factor;
+    }
+
+    /**
+     * Looks every image up in the cache before building its graph and stores the masks it solves,
+     * so a re-run over unchanged images and seeds writes the masks without solving. Null for none.
+     */
+    public void setResultCache(SegmentationCache cache) {
+        this.cache = cache;
+    }
+
+    public void setConnectivity(int connectivity) {
+        if (connectivity != 4 && connectivity != 8) throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        this.connectivity = connectivity;
+    }
+
+    /** Engines that build an explicit flow graph, the grid engines build and solve in one step. */
+    public void setGraphCutEngine(GraphCutEngine engine) {
+        if (engine == GraphCutEngine.GRID_BOYKOV_KOLMOGOROV || engine == GraphCutEngine.PARALLEL_GRID_BOYKOV_KOLMOGOROV)
+            throw new IllegalArgumentException("Engine " + engine + " has no separate graph build");
+        this.engine = engine;
+    }
+
+    // Virtual threads decoding and, as many again, writing.
+    public void setIoThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("I/O threads < 1");
+        this.ioThreads = threads;
+    }
+
+    // Threads converting and, as many again, building graphs.
+    public void setCpuThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("CPU threads < 1");
+        this.cpuThreads = threads;
+    }
+
+    public void setSolveThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Solve threads < 1");
+        this.solveThreads = threads;
+    }
+
+    // Images waiting between two stages.
+    public void setQueueCapacity(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Queue capacity < 1");
+        this.queueCapacity = capacity;
+    }
+
+    /** One image on its way through the stages, each stage fills in its part and drops the last. */
+    private static final class Job {
+        final Path file;
+        SeedFile seeds;
+        ProcessedImage image;
+        SegmentationCache.Key key;
+        NetworkFlowSolverBase graph;
+        MinCut cut;
+        int width, height;
+
+        Job(Path file) {
+            this.file = file;
+        }
+    }
+
+    // end of input, passed on by the last worker of a stage
+    private static final Job END = new Job(null);
+
+    private interface Step {
+        void run(Job job) throws Exception;
+    }
+
+    /** Images of the directory, in name order, that ImageIO can read and that have seeds. */
+    public static List<Path> listImages(Path input) throws IOException {
+        Set<String> suffixes = Arrays.stream(ImageIO.getReaderFileSuffixes())
+                .map(suffix -> suffix.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        try (Stream<Path> files = Files.list(input)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> suffixes.contains(suffix(file)))
+                    .filter(file -> Files.isRegularFile(SeedFile.sidecarOf(file)))
+                    .sorted().toList();
+        }
+    }
+
+    private static String suffix(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    // cat.jpg is written as cat-mask.png
+    public static Path maskOf(Path output, Path image) {
+        String name = image.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return output.resolve((dot > 0 ? name.substring(0, dot) : name) + "-mask.png");
+    }
+
+    /**
+     * Segments the images of {@link #listImages} in input and writes their masks into output,
+     * white for object and black for background, at the resized size.
+     */
+    public BatchReport run(Path input, Path output) throws IOException, InterruptedException {
+        List<Path> files = listImages(input);
+        Files.createDirectories(output);
+
+        List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        SolverPool solvers = new SolverPool(cpuThreads + solveThreads + queueCapacity);
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger segmented = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        BlockingQueue<Job> toDecode = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toConvert = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toBuild = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toSolve = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Job> toWrite = new ArrayBlockingQueue<>(queueCapacity);
+
+        long start = System.nanoTime();
+        try (ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+                ExecutorService cpu = Executors.newFixedThreadPool(2 * cpuThreads);
+                ExecutorService solve = Executors.newFixedThreadPool(solveThreads)) {
+
+            startStage("decode", io, ioThreads, toDecode, toConvert, failures, null, job -> {
+                job.seeds = SeedFile.read(SeedFile.sidecarOf(job.file));
+                // subsampled by the decoder, the full size image is never in memory
+                job.image = ProcessedImage.decode(job.file.toString(), downsize);
+            });
+
+            startStage("convert", cpu, cpuThreads, toConvert, toBuild, failures, null, job -> {
+                job.image.grayScaleImage();
+                job.width = job.image.getDimensions().width();
+                job.height = job.image.getDimensions().height();
+            });
+
+            startStage("build", cpu, cpuThreads, toBuild, toSolve, failures, null, job -> {
+                ProcessedImage image = job.image;
+                image.setConnectivity(connectivity);
+                image.setGraphCutEngine(engine);
+                image.setSolverPool(solvers);
+                SeedFile seeds = job.seeds.scaled(downsize, job.width, job.height);
+                int src = seeds.src().pointToIndex(job.width), sink = seeds.sink().pointToIndex(job.width);
+                if (cache != null) {
+                    job.key = image.cacheKey(src, sink, seeds.objSeeds(), seeds.bkgSeeds());
+                    job.cut = cache.get(job.key);
+                }
+                // a cached mask passes the solve stage as it is
+                if (job.cut == null) job.graph = image.buildGraphCut(src, sink, seeds.objSeeds(), seeds.bkgSeeds());
+                job.image = null;
+            });
+
+            startStage("solve", solve, solveThreads, toSolve, toWrite, failures, null, job -> {
+                if (job.graph == null) return;
+                // a bitset copy, the solver goes back to the pool
+                job.cut = job.graph.getMinCutSet();
+                solvers.release(job.graph);
+                job.graph = null;
+                if (cache != null) cache.put(job.key, job.cut);
+            });
+
+            startStage("write", io, ioThreads, toWrite, null, failures, done, job -> {
+                ImageIO.write(maskImage(job.cut, job.width, job.height), "png", maskOf(output, job.file).toFile());
+                segmented.incrementAndGet();
+            });
+
+            for (Path file : files) toDecode.put(new Job(file));
+            toDecode.put(END);
+            done.await();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) peak += pool.getPeakUsage().getUsed();
+        return new BatchReport(segmented.get(), new ArrayList<>(failures), elapsed, peak);
+    }
+
+    /** The mask the batch writes, white for the object, filled a run of object pixels at a time. */
+    public static BufferedImage maskImage(MinCut cut, int width, int height) {
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = mask.getRaster();
+        int[] ones = new int[width];
+        Arrays.fill(ones, 1);
+        cut.forEachRun(true, (from, to) -> {
+            for (int p = from; p < to; ) {
+                int y = p / width, x = p % width;
+                int length = Math.min(to - p, width - x);
+                raster.setSamples(x, y, length, 1, 0, ones);
+                p += length;
+            }
+        });
+        return mask;
+    }
+
+    /**
+     * Starts workers that take jobs from in, run step on them and put them on out. A worker that
+     * takes END puts it back for the others, the last one to stop passes it on to out, or counts
+     * down done when this is the final stage.
+     */
+    private static void startStage(String name, ExecutorService executor, int workers, BlockingQueue<Job> in,
+            BlockingQueue<Job> out, ConcurrentLinkedQueue<String> failures, CountDownLatch done, Step step) {
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int w = 0; w < workers; w++) {
+            executor.execute(() -> {
+                try {
+                    for (Job job = in.take(); job != END; job = in.take()) {
+                        try {
+                            step.run(job);
+                        } catch (Throwable e) {
+                            // a worker that died would stall the whole pipeline
+                            failures.add(job.file.getFileName() + ": " + name + ": " + e);
+                            continue;
+                        }
+                        if (out != null) out.put(job);
+                    }
+                    in.put(END);
+                    if (running.decrementAndGet() == 0) {
+                        if (out != null) out.put(END);
+                        else done.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    // budgets of the --cache option's mask cache
+    private static final long CACHE_MEMORY_BYTES = 64L << 20;
+    private static final long CACHE_DISK_BYTES = 1L << 30;
+
+    /**
+     * Segments a directory from the command line:
+     * {@code BatchSegmenter <input dir> <output dir> [--downsize n] [--connectivity 4|8]
+     * [--engine NAME] [--solvers n] [--queue n] [--cache dir]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println("usage: BatchSegmenter <input dir> <output dir> [--downsize n] [--connectivity 4|8]"
+                    + " [--engine NAME] [--solvers n] [--queue n] [--cache dir]");
+            System.exit(2);
+        }
+        BatchSegmenter segmenter = new BatchSegmenter();
+        for (int i = 2; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--downsize" -> segmenter.setDownsize(Integer.parseInt(value));
+                case "--connectivity" -> segmenter.setConnectivity(Integer.parseInt(value));
+                case "--engine" -> segmenter.setGraphCutEngine(GraphCutEngine.valueOf(value));
+                case "--solvers" -> segmenter.setSolveThreads(Integer.parseInt(value));
+                case "--queue" -> segmenter.setQueueCapacity(Integer.parseInt(value));
+                case "--cache" -> segmenter.setResultCache(new SegmentationCache(CACHE_MEMORY_BYTES, Path.of(value), CACHE_DISK_BYTES));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        BatchReport report = segmenter.run(Path.of(args[0]), Path.of(args[1]));
+        report.failures().forEach(System.err::println);
+        System.out.println(report);
+        if (segmenter.cache != null) System.out.println(segmenter.cache.stats());
+    }
+}
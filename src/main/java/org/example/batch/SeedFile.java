@@ -0,0 +1,105 @@
+package org.example.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+
+/**
+ * Seeds of one image read from its sidecar file, {@code cat.jpg.seeds} next to {@code cat.jpg}.
+ * Each line is a keyword followed by a point or an inclusive rectangle in the coordinates of the
+ * original image, blank lines and lines starting with {@code #} are skipped:
+ *
+ * <pre>
+ * src 120 80
+ * sink 0 0
+ * obj 100 60 140 100
+ * bkg 0 0 319 0
+ * </pre>
+ *
+ * Without a {@code src} or {@code sink} line the first object or background seed is used.
+ *
+ * @param src - Source pixel of the graph cut.
+ * @param sink - Sink pixel of the graph cut.
+ * @param objSeeds - Pixels that must be object.
+ * @param bkgSeeds - Pixels that must be background.
+ */
+public record SeedFile(CustomPoint src, CustomPoint sink, List<CustomPoint> objSeeds, List<CustomPoint> bkgSeeds) {
+
+    public static final String SUFFIX = ".seeds";
+
+    public static Path sidecarOf(Path image) {
+        return image.resolveSibling(image.getFileName() + SUFFIX);
+    }
+
+    public static SeedFile read(Path file) throws IOException {
+        return parse(file.toString(), Files.readAllLines(file));
+    }
+
+    /** Seeds from the lines of a seed file that did not come from disk, file only names it in errors. */
+    public static SeedFile parse(String file, List<String> lines) throws IOException {
+        CustomPoint src = null, sink = null;
+        List<CustomPoint> objSeeds = new ArrayList<>(), bkgSeeds = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\\s+");
+            int[] values = new int[fields.length - 1];
+            try {
+                for (int k = 0; k < values.length; k++) values[k] = Integer.parseInt(fields[k + 1]);
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + (i + 1) + ": not a number in \"" + line + "\"");
+            }
+
+            switch (fields[0]) {
+                case "src", "sink" -> {
+                    if (values.length != 2) throw new IOException(file + ":" + (i + 1) + ": expected x y");
+                    if (fields[0].equals("src")) src = new CustomPoint(values[0], values[1]);
+                    else sink = new CustomPoint(values[0], values[1]);
+                }
+                case "obj", "bkg" -> {
+                    List<CustomPoint> seeds = fields[0].equals("obj") ? objSeeds : bkgSeeds;
+                    if (values.length == 2) {
+                        seeds.add(new CustomPoint(values[0], values[1]));
+                    } else if (values.length == 4) {
+                        for (int y = Math.min(values[1], values[3]); y <= Math.max(values[1], values[3]); y++) {
+                            for (int x = Math.min(values[0], values[2]); x <= Math.max(values[0], values[2]); x++) {
+                                seeds.add(new CustomPoint(x, y));
+                            }
+                        }
+                    } else {
+                        throw new IOException(file + ":" + (i + 1) + ": expected x y or x0 y0 x1 y1");
+                    }
+                }
+                default -> throw new IOException(file + ":" + (i + 1) + ": unknown keyword " + fields[0]);
+            }
+        }
+
+        if (objSeeds.isEmpty() || bkgSeeds.isEmpty()) throw new IOException(file + ": needs object and background seeds");
+        return new SeedFile(src != null ? src : objSeeds.get(0), sink != null ? sink : bkgSeeds.get(0), objSeeds, bkgSeeds);
+    }
+
+    /**
+     * The seeds on an image resized down by factor, like {@code ProcessedImage.resizeImage}, to
+     * width x height. Points are clipped to the image and merged where they fall on one pixel.
+     */
+    public SeedFile scaled(int factor, int width, int height) {
+        return new SeedFile(scale(src, factor, width, height), scale(sink, factor, width, height),
+                scale(objSeeds, factor, width, height), scale(bkgSeeds, factor, width, height));
+    }
+
+    private static CustomPoint scale(CustomPoint p, int factor, int width, int height) {
+        return new CustomPoint(Math.clamp(p.x() / factor, 0, width - 1), Math.clamp(p.y() / factor, 0, height - 1));
+    }
+
+    private static List<CustomPoint> scale(List<CustomPoint> points, int factor, int width, int height) {
+        Set<CustomPoint> scaled = new LinkedHashSet<>();
+        for (CustomPoint p : points) scaled.add(scale(p, factor, width, height));
+        return new ArrayList<>(scaled);
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.imaging;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.example.network.GridBoykovKolmogorovSolver;
+
+/**
+ * Coarse-to-fine segmentation with banded graph cuts, after Lombaert, Sun, Grady and Xu.
+ *
+ * <p>The intensities are averaged into a pyramid of half-size levels until a level has at most
+ * {@code coarsestPixels} pixels. Only that level is cut as a whole. Its cut is projected onto the
+ * next finer level, where only the pixels within {@code bandWidth} of the projected boundary are
+ * cut again. Every other pixel keeps its projected label, and the n-link from a band pixel to such
+ * a fixed pixel is added to the band pixel's t-link towards the fixed side. Pixels outside the band
+ * get no links at all, so the grid solver's search never reaches them and refining up to full
+ * resolution costs about as much as the coarse cut.
+ *
+ * <p>All levels use the energy of {@link ProcessedImage}: histogram t-links, intensity n-links and
+ * hard constraints for the seeds, a coarse pixel being a seed if any of its pixels is one. A pixel
+ * of level k covers 4^k pixels of the image but its boundary only 2^k n-links, so its t-links are
+ * scaled by 2^k to keep the balance of the full resolution cut.
+ */
+public class BandedGraphCut {
+
+    // about a 1/25 thumbnail of a 1 - 2 megapixel photo
+    public static final int DEFAULT_COARSEST_PIXELS = 1 << 16;
+    public static final int DEFAULT_BAND_WIDTH = 2;
+
+    // hard constraint flags per pixel
+    private static final byte OBJECT = 1;
+    private static final byte BACKGROUND = 2;
+
+    private final int connectivity;
+    private final int coarsestPixels;
+    private final int bandWidth;
+
+    public BandedGraphCut(int connectivity){
+        this(connectivity, DEFAULT_COARSEST_PIXELS, DEFAULT_BAND_WIDTH);
+    }
+
+    /**
+     * @param connectivity - 4 or 8.
+     * @param coarsestPixels - Levels are halved until they have at most this many pixels.
+     * @param bandWidth - Distance from the projected boundary, in pixels, that is cut again.
+     */
+    public BandedGraphCut(int connectivity, int coarsestPixels, int bandWidth){
+        if(connectivity != 4 && connectivity != 8)
+            throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        if(coarsestPixels < 1) throw new IllegalArgumentException("Coarsest pixels < 1");
+        if(bandWidth < 1) throw new IllegalArgumentException("Band width < 1");
+        this.connectivity = connectivity;
+        this.coarsestPixels = coarsestPixels;
+        this.bandWidth = bandWidth;
+    }
+
+    /**
+     * segments a width x height image, src and the pixels of inO are object, sink and the pixels
+     * of inB background
+     *
+     * @return the full resolution cut, object pixels marked true
+     */
+    public boolean[] segment(int width, int height, int[] intensities, HistogramModel hist,
+            int src, int sink, BitSet inO, BitSet inB){
+
+        byte[] hard = new byte[width * height];
+        hard[src] |= OBJECT;
+        hard[sink] |= BACKGROUND;
+        for(int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) hard[o] |= OBJECT;
+        for(int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) hard[b] |= BACKGROUND;
+
+        // level 0 is the image itself
+        List<Level> pyramid = new ArrayList<>();
+        pyramid.add(new Level(width, height, intensities, hard, 1));
+        while(pyramid.getLast().pixels() > coarsestPixels && pyramid.getLast().width > 1 && pyramid.getLast().height > 1){
+            pyramid.add(pyramid.getLast().halve());
+        }
+
+        boolean[] cut = cutWhole(pyramid.getLast(), hist);
+        for(int k = pyramid.size() - 2; k >= 0; k--){
+            cut = refine(pyramid.get(k), pyramid.get(k + 1).width, cut, hist);
+        }
+        return cut;
+    }
+
+    private boolean[] cutWhole(Level level, HistogramModel hist){
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(level.width, level.height, connectivity);
+
+        for(int y=0; y<level.height; y++){
+            for(int x=0; x<level.width; x++){
+                int curr = y*level.width+x;
+                grid.addTerminalWeights(curr, level.sourceWeight(curr, hist), level.sinkWeight(curr, hist));
+
+                // each neighbouring pair once, same weight both ways
+                for(int d : ProcessedImage.FORWARD_DIRECTIONS){
+                    if(d >= connectivity) continue;
+                    int nx = x + ProcessedImage.DX[d];
+                    int ny = y + ProcessedImage.DY[d];
+
+                    if(0 <= nx && nx < level.width && 0 <= ny && ny < level.height){
+                        long weight = ProcessedImage.boundaryWeight(level.intensities[curr], level.intensities[ny * level.width + nx], d);
+                        grid.addEdge(curr, d, weight, weight);
+                    }
+                }
+            }
+        }
+        return grid.getMinCut();
+    }
+
+    /**
+     * projects the cut of the level above onto this level and cuts the band around its boundary
+     * again, with the pixels outside the band fixed to their projected side
+     */
+    private boolean[] refine(Level level, int coarseWidth, boolean[] coarseCut, HistogramModel hist){
+        int width = level.width, height = level.height;
+
+        boolean[] cut = new boolean[width * height];
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++) cut[y*width+x] = coarseCut[(y >> 1) * coarseWidth + (x >> 1)];
+        }
+
+        boolean[] band = band(level, cut);
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(width, height, connectivity);
+
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++){
+                int curr = y*width+x;
+                if(!band[curr]) continue;
+
+                long source = level.sourceWeight(curr, hist);
+                long sink = level.sinkWeight(curr, hist);
+
+                for(int d=0; d<connectivity; d++){
+                    int nx = x + ProcessedImage.DX[d];
+                    int ny = y + ProcessedImage.DY[d];
+                    if(nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+
+                    int neighbor = ny * width + nx;
+                    long weight = ProcessedImage.boundaryWeight(level.intensities[curr], level.intensities[neighbor], d);
+                    if(!band[neighbor]){
+                        if(cut[neighbor]) source = saturatedAdd(source, weight);
+                        else sink = saturatedAdd(sink, weight);
+                    } else if(isForward(d)){
+                        grid.addEdge(curr, d, weight, weight);
+                    }
+                }
+
+                grid.addTerminalWeights(curr, source, sink);
+            }
+        }
+
+        boolean[] bandCut = grid.getMinCut();
+        for(int p = 0; p < cut.length; p++) if(band[p]) cut[p] = bandCut[p];
+        return cut;
+    }
+
+    /**
+     * pixels within bandWidth of a pixel whose neighbour got the other label, or of a seed the
+     * projection put on the wrong side
+     */
+    private boolean[] band(Level level, boolean[] cut){
+        int width = level.width, height = level.height;
+        boolean[] band = new boolean[width * height];
+
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++){
+                int curr = y*width+x;
+                boolean boundary = (level.hard[curr] == OBJECT && !cut[curr])
+                        || (level.hard[curr] == BACKGROUND && cut[curr]);
+                for(int d=0; d<connectivity && !boundary; d++){
+                    int nx = x + ProcessedImage.DX[d];
+                    int ny = y + ProcessedImage.DY[d];
+                    if(0 <= nx && nx < width && 0 <= ny && ny < height) boundary = cut[ny * width + nx] != cut[curr];
+                }
+                if(!boundary) continue;
+
+                for(int by = Math.max(0, y - bandWidth); by <= Math.min(height - 1, y + bandWidth); by++){
+                    for(int bx = Math.max(0, x - bandWidth); bx <= Math.min(width - 1, x + bandWidth); bx++){
+                        band[by * width + bx] = true;
+                    }
+                }
+            }
+        }
+        return band;
+    }
+
+    private static boolean isForward(int direction){
+        for(int d : ProcessedImage.FORWARD_DIRECTIONS) if(d == direction) return true;
+        return false;
+    }
+
+    private static long saturatedAdd(long capacity, long amount){
+        return capacity > Long.MAX_VALUE - amount ? Long.MAX_VALUE : capacity + amount;
+    }
+
+    /**
+     * one pyramid level: mean intensities, hard constraint flags and the t-link scale 2^k
+     */
+    private record Level(int width, int height, int[] intensities, byte[] hard, int scale){
+
+        int pixels(){
+            return width * height;
+        }
+
+        // the level at half the size, odd sides round up
+        Level halve(){
+            int w = (width + 1) / 2, h = (height + 1) / 2;
+            int[] sum = new int[w * h];
+            int[] count = new int[w * h];
+            byte[] coarseHard = new byte[w * h];
+
+            for(int y=0; y<height; y++){
+                for(int x=0; x<width; x++){
+                    int curr = y*width+x;
+                    int coarse = (y >> 1) * w + (x >> 1);
+                    sum[coarse] += intensities[curr];
+                    count[coarse]++;
+                    coarseHard[coarse] |= hard[curr];
+                }
+            }
+            for(int p = 0; p < sum.length; p++) sum[p] /= count[p];
+            return new Level(w, h, sum, coarseHard, 2 * scale);
+        }
+
+        // t-link from the source, what labelling the pixel background costs
+        long sourceWeight(int p, HistogramModel hist){
+            if((hard[p] & OBJECT) != 0) return Long.MAX_VALUE;
+            if(hard[p] != 0) return 0;
+            return scale * hist.bkgEnergy(intensities[p]);
+        }
+
+        // t-link to the sink, what labelling the pixel object costs
+        long sinkWeight(int p, HistogramModel hist){
+            if((hard[p] & BACKGROUND) != 0) return Long.MAX_VALUE;
+            if(hard[p] != 0) return 0;
+            return scale * hist.objEnergy(intensities[p]);
+        }
+    }
+}
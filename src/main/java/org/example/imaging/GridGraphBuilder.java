@@ -0,0 +1,185 @@
+package org.example.imaging;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+import org.example.network.NetworkFlowSolverBase;
+
+/**
+ * Builds the flow graph ProcessedImage segments with an explicit flow graph engine: every pixel in
+ * row-major order with its source t-link, its sink t-link and its n-links in the order of
+ * {@link ProcessedImage#DX}.
+ *
+ * <p>The edge layout only depends on the image size and connectivity, so the first edge of every
+ * row is known up front. The capacities are computed into a preallocated array in parallel bands
+ * of rows, each band writing only its own slice. Every capacity is a lookup in a 256-entry table,
+ * the compiled histogram energies for t-links and the boundary weights by intensity difference for
+ * n-links, done a row at a time by a {@link WeightKernel}. One serial pass then adds the edges to
+ * the solver, which reserves room for all of them at once. Edge indices are the same whatever the
+ * number of threads, and a builder kept for the next image of the same size only allocates a few
+ * rows of scratch per band.
+ */
+public class GridGraphBuilder {
+
+    // images with fewer pixels are built on the calling thread
+    static final int PARALLEL_PIXELS = 1 << 16;
+
+    // rows one task fills
+    private static final int BAND_ROWS = 16;
+
+    private final int width;
+    private final int height;
+    private final int connectivity;
+
+    // index of the first edge of every row, and the edge count at rowStart[height]
+    private final int[] rowStart;
+    private final long[] capacity;
+
+    private boolean parallel = true;
+
+    /**
+     * @param connectivity - 4 or 8.
+     */
+    public GridGraphBuilder(int width, int height, int connectivity){
+        if(connectivity != 4 && connectivity != 8)
+            throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        if(width < 1 || height < 1) throw new IllegalArgumentException("Image must have pixels");
+        this.width = width;
+        this.height = height;
+        this.connectivity = connectivity;
+
+        rowStart = new int[height + 1];
+        long edges = 0;
+        for(int y = 0; y < height; y++){
+            rowStart[y] = (int) edges;
+            edges += edgesBefore(y, width);
+            if(edges > Integer.MAX_VALUE) throw new IllegalArgumentException("Image too large for one flow graph");
+        }
+        rowStart[height] = (int) edges;
+        capacity = new long[(int) edges];
+    }
+
+    /**
+     * fills on the calling thread only when false, for comparing against the parallel build
+     */
+    public void setParallel(boolean parallel){
+        this.parallel = parallel;
+    }
+
+    public boolean matches(int width, int height, int connectivity){
+        return this.width == width && this.height == height && this.connectivity == connectivity;
+    }
+
+    public int edgeCount(){
+        return rowStart[height];
+    }
+
+    // edge of the t-link from the source to pixel p, its sink t-link is the edge after it
+    public int sourceLink(int p){
+        return rowStart[p / width] + edgesBefore(p / width, p % width);
+    }
+
+    // edges of the pixels x' < x of row y: two t-links each and the n-links that stay in the image
+    private int edgesBefore(int y, int x){
+        int edges = 2 * x;
+        for(int d = 0; d < connectivity; d++){
+            int ny = y + ProcessedImage.DY[d];
+            if(ny < 0 || ny >= height) continue;
+            // x' + DX[d] has to land in [0, width)
+            int dx = ProcessedImage.DX[d];
+            edges += dx > 0 ? Math.min(x, width - 1) : dx < 0 ? Math.max(0, x - 1) : x;
+        }
+        return edges;
+    }
+
+    /**
+     * computes every capacity of the graph, the t-links of the seed pixels in inO and inB being
+     * hard constraints. compiles the histogram if it is not yet
+     */
+    public void fill(int[] intensities, HistogramModel hist, BitSet inO, BitSet inB){
+        if(intensities.length != width * height)
+            throw new IllegalArgumentException("Expected " + width * height + " intensities, got " + intensities.length);
+        long[] objEnergies = hist.objEnergies();
+        long[] bkgEnergies = hist.bkgEnergies();
+
+        IntStream bands = IntStream.range(0, (height + BAND_ROWS - 1) / BAND_ROWS);
+        if(parallel && width * height >= PARALLEL_PIXELS) bands = bands.parallel();
+        bands.forEach(band -> fillRows(band * BAND_ROWS, Math.min(height, (band + 1) * BAND_ROWS),
+                intensities, objEnergies, bkgEnergies, inO, inB));
+    }
+
+    /**
+     * looks the capacities of a row up link by link, each kind of link into its own array, and
+     * interleaves them in edge order
+     */
+    private void fillRows(int fromRow, int toRow, int[] intensities, long[] objEnergies, long[] bkgEnergies,
+            BitSet inO, BitSet inB){
+        WeightKernel kernel = WeightKernel.get();
+        long[] sourceLinks = new long[width];
+        long[] sinkLinks = new long[width];
+        long[][] nLinks = new long[connectivity][width];
+        int[] differences = new int[width];
+        boolean[] inImage = new boolean[connectivity];
+
+        int e = rowStart[fromRow];
+        for(int y = fromRow; y < toRow; y++){
+            int row = y * width;
+            kernel.lookup(bkgEnergies, intensities, row, sourceLinks, 0, width);
+            kernel.lookup(objEnergies, intensities, row, sinkLinks, 0, width);
+            for(int o = inO.nextSetBit(row); o >= 0 && o < row + width; o = inO.nextSetBit(o + 1)){
+                sourceLinks[o - row] = Long.MAX_VALUE;
+                sinkLinks[o - row] = 0;
+            }
+            // a pixel in both sets keeps its infinite source link
+            for(int b = inB.nextSetBit(row); b >= 0 && b < row + width; b = inB.nextSetBit(b + 1)){
+                if(!inO.get(b)) sourceLinks[b - row] = 0;
+                sinkLinks[b - row] = Long.MAX_VALUE;
+            }
+
+            for(int d = 0; d < connectivity; d++){
+                int ny = y + ProcessedImage.DY[d];
+                inImage[d] = 0 <= ny && ny < height;
+                if(!inImage[d]) continue;
+                // the pixels whose neighbour in direction d is in the row ny
+                int dx = ProcessedImage.DX[d];
+                int first = Math.max(0, -dx), count = width - Math.abs(dx);
+                kernel.lookupDifference(ProcessedImage.boundaryWeights(d), intensities, row + first,
+                        ny * width + first + dx, differences, nLinks[d], first, count);
+            }
+
+            for(int x = 0; x < width; x++){
+                capacity[e++] = sourceLinks[x];
+                capacity[e++] = sinkLinks[x];
+                for(int d = 0; d < connectivity; d++){
+                    int nx = x + ProcessedImage.DX[d];
+                    if(inImage[d] && 0 <= nx && nx < width) capacity[e++] = nLinks[d][x];
+                }
+            }
+        }
+    }
+
+    /**
+     * adds the filled edges to a graph that has none yet, src and sink being its terminals
+     */
+    public void addTo(NetworkFlowSolverBase graph, int src, int sink){
+        graph.ensureEdgeCapacity(edgeCount());
+
+        int e = 0;
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                int curr = y * width + x;
+                if(graph.addEdge(src, curr, capacity[e]) != e)
+                    throw new IllegalStateException("Graph already has edges");
+                graph.addEdge(curr, sink, capacity[e + 1]);
+                e += 2;
+
+                for(int d = 0; d < connectivity; d++){
+                    int nx = x + ProcessedImage.DX[d];
+                    int ny = y + ProcessedImage.DY[d];
+                    if(0 <= nx && nx < width && 0 <= ny && ny < height){
+                        graph.addEdge(curr, ny * width + nx, capacity[e++]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -7,17 +7,45 @@ public class HistogramModel {
     private int objTotal = 0;
     private int bkgTotal = 0;
 
+    // energies of every intensity, null until compile()
+    private long[] objEnergies;
+    private long[] bkgEnergies;
+
 
     public void addObjSeed(int intensity){
+        if(objEnergies != null) throw new IllegalStateException("Histogram already compiled");
         distrO[intensity]++;
         objTotal++;
     }
 
     public void addBkgSeed(int intensity){
+        if(objEnergies != null) throw new IllegalStateException("Histogram already compiled");
         distrB[intensity]++;
         bkgTotal++;
     }
 
+    /**
+     * tabulates both energies for the 256 intensities once the seeds are final, so they are
+     * looked up instead of taking a logarithm per pixel. no seeds can be added afterwards; calling
+     * this again does nothing
+     */
+    public HistogramModel compile(){
+        if(objEnergies != null) return this;
+        long[] obj = new long[256];
+        long[] bkg = new long[256];
+        for(int i = 0; i < 256; i++){
+            obj[i] = energy(pObj(i));
+            bkg[i] = energy(pBkg(i));
+        }
+        bkgEnergies = bkg;
+        objEnergies = obj;
+        return this;
+    }
+
+    public boolean isCompiled(){
+        return objEnergies != null;
+    }
+
     public double pObj(int intensity){
         return (distrO[intensity] + 1.0) / (objTotal + 256.0);
     }
@@ -27,11 +55,26 @@ public class HistogramModel {
     }
 
     public long objEnergy(int intensity){
-        return (long)(-Math.log(pObj(intensity)) * 100);
+        return objEnergies != null ? objEnergies[intensity] : energy(pObj(intensity));
     }
 
     public long bkgEnergy(int intensity){
-        return (long)(-Math.log(pBkg(intensity)) * 100);
+        return bkgEnergies != null ? bkgEnergies[intensity] : energy(pBkg(intensity));
+    }
+
+    private static long energy(double probability){
+        return (long)(-Math.log(probability) * 100);
+    }
+
+    // the tables of compile(), shared and not to be written
+    long[] objEnergies(){
+        compile();
+        return objEnergies;
+    }
+
+    long[] bkgEnergies(){
+        compile();
+        return bkgEnergies;
     }
 
 }
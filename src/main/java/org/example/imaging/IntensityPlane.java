@@ -0,0 +1,152 @@
+package org.example.imaging;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 8-bit intensity planes, one byte per pixel in row-major order, read straight from the arrays
+ * behind a BufferedImage's raster instead of a getRGB call per pixel.
+ *
+ * packed int images (INT_RGB, INT_ARGB, INT_BGR) and interleaved byte images (3BYTE_BGR,
+ * 4BYTE_ABGR, BYTE_GRAY) are read from their DataBuffer; a gray image's plane is its samples, any
+ * other image's the luma of ProcessedImage.intensity. other layouts, like indexed colour, go
+ * through getRGB a row at a time
+ */
+final class IntensityPlane {
+
+    private IntensityPlane(){
+    }
+
+    /**
+     * the intensity of every pixel of image, in one pass over its raster
+     */
+    static byte[] of(BufferedImage image){
+        int width = image.getWidth(), height = image.getHeight();
+        byte[] plane = new byte[width * height];
+        Raster raster = image.getRaster();
+        // a subimage's raster starts inside its parent's arrays
+        int dx = -raster.getSampleModelTranslateX(), dy = -raster.getSampleModelTranslateY();
+
+        switch(image.getType()){
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR -> {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int base = raster.getDataBuffer().getOffset() + dy * stride + dx;
+                boolean bgr = image.getType() == BufferedImage.TYPE_INT_BGR;
+                for(int y = 0; y < height; y++){
+                    int row = base + y * stride;
+                    for(int x = 0; x < width; x++){
+                        int pixel = data[row + x];
+                        int r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+                        plane[y * width + x] = (byte) (bgr ? ProcessedImage.intensity(b, g, r) : ProcessedImage.intensity(r, g, b));
+                    }
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY -> {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                int stride = model.getScanlineStride(), pixelStride = model.getPixelStride();
+                int[] bands = model.getBandOffsets();
+                int base = raster.getDataBuffer().getOffset() + dy * stride + dx * pixelStride;
+                if(image.getType() == BufferedImage.TYPE_BYTE_GRAY){
+                    for(int y = 0; y < height; y++){
+                        if(pixelStride == 1){
+                            System.arraycopy(data, base + y * stride + bands[0], plane, y * width, width);
+                        } else {
+                            for(int x = 0; x < width; x++) plane[y * width + x] = data[base + y * stride + x * pixelStride + bands[0]];
+                        }
+                    }
+                    return plane;
+                }
+                // bands are red, green, blue (, alpha) whatever their order in memory
+                for(int y = 0; y < height; y++){
+                    int row = base + y * stride;
+                    for(int x = 0; x < width; x++){
+                        int pixel = row + x * pixelStride;
+                        plane[y * width + x] = (byte) ProcessedImage.intensity(data[pixel + bands[0]] & 0xFF,
+                                data[pixel + bands[1]] & 0xFF, data[pixel + bands[2]] & 0xFF);
+                    }
+                }
+            }
+            default -> {
+                int[] row = new int[width];
+                for(int y = 0; y < height; y++){
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    for(int x = 0; x < width; x++) plane[y * width + x] = (byte) ProcessedImage.intensity(row[x]);
+                }
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * the plane as ints in [0, 255], what the graph builders take
+     */
+    static int[] widen(byte[] plane){
+        int[] intensities = new int[plane.length];
+        for(int p = 0; p < plane.length; p++) intensities[p] = plane[p] & 0xFF;
+        return intensities;
+    }
+
+    /**
+     * bilinear resampling to targetWidth x targetHeight, sampling the source at the centre of
+     * every target pixel
+     */
+    static byte[] resize(byte[] plane, int width, int height, int targetWidth, int targetHeight){
+        // the two source columns and the weight of the second for every target column
+        int[] left = new int[targetWidth], right = new int[targetWidth];
+        double[] toRight = new double[targetWidth];
+        for(int x = 0; x < targetWidth; x++){
+            double sx = Math.clamp((x + 0.5) * width / targetWidth - 0.5, 0, width - 1);
+            left[x] = (int) sx;
+            right[x] = Math.min(left[x] + 1, width - 1);
+            toRight[x] = sx - left[x];
+        }
+
+        byte[] resized = new byte[targetWidth * targetHeight];
+        for(int y = 0; y < targetHeight; y++){
+            double sy = Math.clamp((y + 0.5) * height / targetHeight - 0.5, 0, height - 1);
+            int top = (int) sy * width, bottom = Math.min((int) sy + 1, height - 1) * width;
+            double toBottom = sy - (int) sy;
+            for(int x = 0; x < targetWidth; x++){
+                double upper = (plane[top + left[x]] & 0xFF) * (1 - toRight[x]) + (plane[top + right[x]] & 0xFF) * toRight[x];
+                double lower = (plane[bottom + left[x]] & 0xFF) * (1 - toRight[x]) + (plane[bottom + right[x]] & 0xFF) * toRight[x];
+                resized[y * targetWidth + x] = (byte) Math.round(upper * (1 - toBottom) + lower * toBottom);
+            }
+        }
+        return resized;
+    }
+
+    /**
+     * a TYPE_BYTE_GRAY image whose raster is the plane itself, no copy
+     */
+    static BufferedImage grayImage(byte[] plane, int width, int height){
+        // the colour model and layout BufferedImage gives TYPE_BYTE_GRAY
+        ColorModel gray = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] {8},
+                false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(plane, plane.length),
+                width, height, width, 1, new int[] {0}, null);
+        return new BufferedImage(gray, raster, false, null);
+    }
+
+    /**
+     * a TYPE_INT_RGB image with every pixel gray at the plane's intensity, which can still be
+     * painted in colour
+     */
+    static BufferedImage rgbImage(byte[] plane, int width, int height){
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for(int p = 0; p < plane.length; p++) data[p] = (plane[p] & 0xFF) * 0x010101;
+        return image;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.imaging;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * one bit per pixel segmentation stored in a binary PBM (P4) file and mapped into memory, so a
+ * mask of a 40k x 40k scan takes 200 MB of page cache instead of a 1.6 GB boolean[] on the heap.
+ * bits are set for object pixels, which a PBM viewer shows black. rows are padded to whole bytes,
+ * most significant bit first, as the format prescribes
+ *
+ * not thread safe: pixels of neighbouring columns share bytes
+ */
+public final class MaskFile implements AutoCloseable {
+
+    private final int width;
+    private final int height;
+    private final long rowBytes;
+    private final Arena arena = Arena.ofConfined();
+    private final MemorySegment bits;
+
+    private MaskFile(FileChannel channel, int width, int height, long offset) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.rowBytes = (width + 7) / 8;
+        this.bits = channel.map(FileChannel.MapMode.READ_WRITE, offset, rowBytes * height, arena);
+    }
+
+    /**
+     * creates or overwrites file with an all background width x height mask
+     */
+    public static MaskFile create(Path file, int width, int height) throws IOException {
+        if(width < 1 || height < 1) throw new IllegalArgumentException("Mask must have pixels");
+        byte[] header = ("P4\n" + width + " " + height + "\n").getBytes(StandardCharsets.US_ASCII);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            channel.write(ByteBuffer.wrap(header));
+            // the mapping stays valid after the channel is closed, mapping past the end zero fills
+            return new MaskFile(channel, width, height, header.length);
+        }
+    }
+
+    public int width(){
+        return width;
+    }
+
+    public int height(){
+        return height;
+    }
+
+    public boolean get(int x, int y){
+        byte b = bits.get(ValueLayout.JAVA_BYTE, y * rowBytes + (x >> 3));
+        return (b & (0x80 >> (x & 7))) != 0;
+    }
+
+    public void set(int x, int y, boolean object){
+        long offset = y * rowBytes + (x >> 3);
+        byte b = bits.get(ValueLayout.JAVA_BYTE, offset);
+        int bit = 0x80 >> (x & 7);
+        bits.set(ValueLayout.JAVA_BYTE, offset, (byte) (object ? b | bit : b & ~bit));
+    }
+
+    // number of object pixels
+    public long count(){
+        long count = 0;
+        for(long i = 0; i < rowBytes * height; i += 8){
+            if(rowBytes * height - i >= 8) count += Long.bitCount(bits.get(ValueLayout.JAVA_LONG_UNALIGNED, i));
+            else for(long j = i; j < rowBytes * height; j++) count += Integer.bitCount(bits.get(ValueLayout.JAVA_BYTE, j) & 0xFF);
+        }
+        return count;
+    }
+
+    // writes the mapped pixels through to the file
+    public void force(){
+        bits.force();
+    }
+
+    @Override
+    public void close(){
+        force();
+        arena.close();
+    }
+}
@@ -1,15 +1,30 @@
 package org.example.imaging;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.example.network.BoykovKolmogorovSolver;
 import org.example.network.EdmondsKarpSolver;
+import org.example.network.GridBoykovKolmogorovSolver;
+import org.example.network.IbfsSolver;
+import org.example.network.MinCut;
 import org.example.network.NetworkFlowSolverBase;
+import org.example.network.ParallelGridBoykovKolmogorovSolver;
+import org.example.network.ParallelPushRelabelSolver;
+import org.example.network.ParametricCut;
+import org.example.network.ParametricMaxFlowSolver;
+import org.example.network.PushRelabelSolver;
+import org.example.network.SolverPool;
 import org.example.use_interface.GraphicalUserInterface.CustomPoint;
 
 public class ProcessedImage {
@@ -21,6 +36,9 @@ public class ProcessedImage {
     private int width;
     private int downsizeFactor;
 
+    // intensities of processedImageInstance once it is gray, null while it is in colour
+    private byte[] plane;
+
     public ProcessedImage(String src){
 
         this.src = src;
@@ -45,18 +63,88 @@ public class ProcessedImage {
 
 
     /**
-     *  converts processedImageInstance from 3-channel RGB to single channel intensity [0, 255]
+     *  wraps an image that is already decoded, src only names it
      */
-    public void grayScaleImage(){
+    public ProcessedImage(String src, BufferedImage image){
+        this.src = src;
+        this.originalImage = image;
+        this.height = image.getHeight();
+        this.width = image.getWidth();
+        this.processedImageInstance = image;
+    }
+
+
+    /**
+     *  decodes src already divided by factor, like resizeImage(factor) after loading it whole
+     * @see #decode(String, Rectangle, int)
+     */
+    public static ProcessedImage decode(String src, int factor) throws IOException {
+        return decode(src, null, factor);
+    }
+
+
+    /**
+     *  decodes only region of src (the whole image if null) and only every factor-th row and
+     *  column of it, so the image is never held at full resolution. the size is the one
+     *  resizeImage(factor) would give the region, each pixel is the one in the middle of its
+     *  factor x factor block instead of an interpolation of the block. the image counts as
+     *  resized then, calling resizeImage divides it again
+     */
+    public static ProcessedImage decode(String src, Rectangle region, int factor) throws IOException {
+        try(ImageInputStream input = ImageIO.createImageInputStream(new File(src))){
+            if(input == null) throw new IOException("Cannot open " + src);
+            return decode(input, src, region, factor);
+        }
+    }
+
+
+    /**
+     *  decode for an image that is not a file, like one received over the network. src only
+     *  names it, the caller closes input
+     */
+    public static ProcessedImage decode(ImageInputStream input, String src, Rectangle region, int factor) throws IOException {
+        if(factor < 1) throw new IllegalArgumentException("Downsize factor < 1");
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext()) throw new IOException("No image reader for " + src);
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            Rectangle bounds = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+            if(region != null) bounds = bounds.intersection(region);
+            if(bounds.width / factor == 0 || bounds.height / factor == 0)
+                throw new IllegalArgumentException("Region smaller than the downsize factor");
+
+            // the rows and columns resizeImage would drop are never decoded
+            bounds.setSize(bounds.width / factor * factor, bounds.height / factor * factor);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(bounds);
+            param.setSourceSubsampling(factor, factor, factor / 2, factor / 2);
+
+            ProcessedImage image = new ProcessedImage(src, reader.read(0, param));
+            image.downsizeFactor = factor;
+            return image;
+        } finally {
+            reader.dispose();
+        }
+    }
 
-        BufferedImage gray = new BufferedImage(
-                this.width,
-                this.height,
-                BufferedImage.TYPE_BYTE_GRAY
-        );
-        gray.getGraphics().drawImage(originalImage, 0, 0, null);
 
-        this.processedImageInstance = gray;
+    /**
+     *  converts processedImageInstance from 3-channel RGB to single channel intensity [0, 255]
+     *  the intensities are read from the original's raster in one pass and become the raster of
+     *  the gray image, so later steps work on the byte plane and not through getRGB
+     */
+    public void grayScaleImage(){
+        byte[] gray = IntensityPlane.of(originalImage);
+        // keeps an earlier resize
+        if(this.width != originalImage.getWidth() || this.height != originalImage.getHeight())
+            gray = IntensityPlane.resize(gray, originalImage.getWidth(), originalImage.getHeight(), this.width, this.height);
+        this.plane = gray;
+        // a resized or subsampled image stays RGB, like after resizeImage, so a cut can be painted on it
+        this.processedImageInstance = downsizeFactor > 1
+                ? IntensityPlane.rgbImage(plane, this.width, this.height)
+                : IntensityPlane.grayImage(plane, this.width, this.height);
+        discardGraphCut();
     }
 
 
@@ -72,6 +160,17 @@ public class ProcessedImage {
         assert targetWidth > 0 && targetHeight > 0;
 
         this.downsizeFactor = factor;
+
+        // a gray image is resampled on its plane, and stays an RGB image so a cut can be painted on it
+        if(plane != null){
+            plane = IntensityPlane.resize(plane, width, height, targetWidth, targetHeight);
+            this.width = targetWidth;
+            this.height = targetHeight;
+            this.processedImageInstance = IntensityPlane.rgbImage(plane, targetWidth, targetHeight);
+            discardGraphCut();
+            return;
+        }
+
         this.width = targetWidth;
         this.height = targetHeight;
 
@@ -82,6 +181,7 @@ public class ProcessedImage {
         g2d.dispose();
 
         this.processedImageInstance = resized;
+        discardGraphCut();
     }
 
 
@@ -144,111 +244,480 @@ public class ProcessedImage {
     }
 
 
+    /**
+     * max-flow engines runGraphCut can solve the segmentation with
+     */
+    public enum GraphCutEngine {
+        // explicit flow graph solved by BoykovKolmogorovSolver
+        BOYKOV_KOLMOGOROV,
+        // implicit pixel lattice solved by GridBoykovKolmogorovSolver
+        GRID_BOYKOV_KOLMOGOROV,
+        // pixel lattice cut into blocks solved on all processors by ParallelGridBoykovKolmogorovSolver
+        PARALLEL_GRID_BOYKOV_KOLMOGOROV,
+        // explicit flow graph solved by PushRelabelSolver, first phase only
+        PUSH_RELABEL,
+        // explicit flow graph solved by ParallelPushRelabelSolver on all processors, first phase only
+        PARALLEL_PUSH_RELABEL,
+        // explicit flow graph solved by IbfsSolver
+        IBFS
+    }
+
+    private GraphCutEngine engine = GraphCutEngine.BOYKOV_KOLMOGOROV;
+    private int connectivity = 4;
+
+    // neighbour offsets, the first 4 are used for 4-connectivity
+    // same order as GridBoykovKolmogorovSolver's directions
+    static final int[] DX = {1, 0, -1, 0, 1, -1, -1, 1};
+    static final int[] DY = {0, 1, 0, -1, 1, 1, -1, -1};
+
+    // directions that visit every neighbouring pair once, used for symmetric grid edges
+    static final int[] FORWARD_DIRECTIONS = {0, 1, 4, 5};
+
+    // cut a pyramid coarse to fine with BandedGraphCut instead of the whole image at once
+    private boolean multilevel = false;
+
+    // idle solvers shared with other images, null to build new ones for every run
+    private SolverPool solverPool;
+
+    // segmentations of earlier runs, of this or any other image, null to always solve
+    private SegmentationCache resultCache;
+
+    public void setGraphCutEngine(GraphCutEngine engine){
+        this.engine = engine;
+    }
+
+    /**
+     * takes solvers from the pool and gives them back once their cut is read, so segmenting many
+     * images of the same size reuses the solvers and their arrays. the cuts runGraphCut returns are
+     * copies then. a BOYKOV_KOLMOGOROV solver goes back when the image no longer needs it for
+     * updates
+     */
+    public void setSolverPool(SolverPool solverPool){
+        this.solverPool = solverPool;
+    }
+
+    /**
+     * looks every run up in the cache before solving and stores what it solves there, so running
+     * the same intensities with the same seeds, terminals, engine and connectivity again reads the
+     * cut back. the cache can be shared by many images and threads
+     */
+    public void setResultCache(SegmentationCache resultCache){
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * segments at full resolution by cutting a coarse level of the image and only re-cutting a
+     * narrow band around the boundary at each finer level, instead of resizing the image down.
+     * the engine is not used then
+     */
+    public void setMultilevel(boolean multilevel){
+        this.multilevel = multilevel;
+        // the next run cuts again, with the kept intensities
+        this.graphCutPerformed = false;
+        releaseDynamicSolver();
+    }
+
+    /**
+     * sets the pixel neighbourhood used for n-links, 4 or 8
+     */
+    public void setConnectivity(int connectivity){
+        if(connectivity != 4 && connectivity != 8)
+            throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        this.connectivity = connectivity;
+        // the kept cut and graph have the old n-links
+        this.graphCutPerformed = false;
+        releaseDynamicSolver();
+    }
+
+
     /**
      * runs the graph cut given source, sink, and the O, B sets
+     *
+     * the intensities of the first run are kept, so later runs segment the same image even after
+     * the cut has been painted onto it. running again with new seeds and the BOYKOV_KOLMOGOROV
+     * engine only updates the t-links of the solved graph and resumes its search
      */
 
     boolean graphCutPerformed = false;
     boolean[] graphCut;
 
+    private int[] intensities;
+    // SegmentationCache.digest of intensities, null until a cache needs it
+    private byte[] intensityDigest;
+    private int solvedSrc, solvedSink;
+    private BitSet solvedObjSeeds, solvedBkgSeeds;
+
+    // solved graph of the last BOYKOV_KOLMOGOROV run, its t-links are those of graphBuilder
+    private BoykovKolmogorovSolver dynamicSolver;
+
+    // capacities of the last explicit flow graph, kept for the next one of the same size
+    private GridGraphBuilder graphBuilder;
+
     public boolean[] runGraphCut(int src, int sink, List<CustomPoint> objSeedSet,
             List<CustomPoint> bkgSeedSet){
 
-        if(graphCutPerformed) return graphCut;
+        // seed pixels, compared with those of the last run
+        BitSet inO = pixelIndices(objSeedSet);
+        BitSet inB = pixelIndices(bkgSeedSet);
+
+        boolean sameTerminals = graphCutPerformed && src == solvedSrc && sink == solvedSink;
+        if(sameTerminals && inO.equals(solvedObjSeeds) && inB.equals(solvedBkgSeeds)) return graphCut;
+
+        if(intensities == null) intensities = readIntensities();
+
+        SegmentationCache.Key key = resultCache != null ? cacheKey(src, sink, inO, inB) : null;
+        MinCut cached = key != null ? resultCache.get(key) : null;
+        if(cached != null){
+            // a kept BOYKOV_KOLMOGOROV graph stays for the same terminals, updating it rewrites
+            // every t-link; its source and sink are pixels, so other terminals need a new graph
+            if(!sameTerminals) releaseDynamicSolver();
+            this.graphCut = cached.toBooleanArray();
+        } else {
+            this.graphCut = solve(src, sink, sameTerminals, inO, inB);
+            if(key != null) resultCache.put(key, MinCut.of(graphCut));
+        }
 
-        int imgSize = this.width * this.height;
+        solvedSrc = src;
+        solvedSink = sink;
+        solvedObjSeeds = inO;
+        solvedBkgSeeds = inB;
+        graphCutPerformed = true;
+        return graphCut;
+    }
 
+    // the cut of runGraphCut with the configured engine
+    private boolean[] solve(int src, int sink, boolean sameTerminals, BitSet inO, BitSet inB){
+        // recording
+        HistogramModel hist = histogram(inO, inB);
 
-        NetworkFlowSolverBase graph = new BoykovKolmogorovSolver(imgSize, src, sink);
-        int[] intensities = new int[imgSize];
+        if(sameTerminals && dynamicSolver != null && engine == GraphCutEngine.BOYKOV_KOLMOGOROV){
+            return updateTerminalLinks(hist, inO, inB);
+        }
+        releaseDynamicSolver();
+        if(multilevel){
+            return new BandedGraphCut(connectivity).segment(width, height, intensities, hist, src, sink, inO, inB);
+        } else if(engine == GraphCutEngine.GRID_BOYKOV_KOLMOGOROV || engine == GraphCutEngine.PARALLEL_GRID_BOYKOV_KOLMOGOROV){
+            return solveOnGrid(src, sink, intensities, hist, inO, inB);
+        }
+        return solveOnFlowGraph(src, sink, intensities, hist, inO, inB);
+    }
 
-        // populate intensity array
-        for(int y=0; y<this.height; y++) {
-            for (int x = 0; x < this.width; x++) {
-                int curr = y*this.width+x;
+    /**
+     * the key runGraphCut stores its cut under in a SegmentationCache, for callers that solve the
+     * graph of buildGraphCut themselves
+     */
+    public SegmentationCache.Key cacheKey(int src, int sink, List<CustomPoint> objSeedSet,
+            List<CustomPoint> bkgSeedSet){
+        if(intensities == null) intensities = readIntensities();
+        return cacheKey(src, sink, pixelIndices(objSeedSet), pixelIndices(bkgSeedSet));
+    }
 
-                int rgb = processedImageInstance.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8)  & 0xFF;
-                int b = rgb & 0xFF;
+    private SegmentationCache.Key cacheKey(int src, int sink, BitSet inO, BitSet inB){
+        if(intensityDigest == null) intensityDigest = SegmentationCache.digest(intensities, width, height);
+        String parameters = (multilevel ? "MULTILEVEL" : engine.name()) + " connectivity " + connectivity;
+        return SegmentationCache.key(intensityDigest, parameters, src, sink, inO, inB);
+    }
 
-                int intensity = (int)(0.299*r + 0.587*g + 0.114*b);
+    /**
+     * builds the graph runGraphCut would solve with an explicit flow graph engine and leaves
+     * solving it to the caller, so building and solving can run on different threads. the solver
+     * comes from the solver pool if one is set and can go back to it once its cut is read; the
+     * image keeps nothing of the run
+     */
+    public NetworkFlowSolverBase buildGraphCut(int src, int sink, List<CustomPoint> objSeedSet,
+            List<CustomPoint> bkgSeedSet){
+        if(multilevel || engine == GraphCutEngine.GRID_BOYKOV_KOLMOGOROV || engine == GraphCutEngine.PARALLEL_GRID_BOYKOV_KOLMOGOROV)
+            throw new IllegalStateException("Engine " + (multilevel ? "MULTILEVEL" : engine) + " builds no explicit flow graph");
 
-                intensities[curr] = intensity;
-            }
-        }
+        BitSet inO = pixelIndices(objSeedSet);
+        BitSet inB = pixelIndices(bkgSeedSet);
+        if(intensities == null) intensities = readIntensities();
+        return buildFlowGraph(src, sink, intensities, histogram(inO, inB), inO, inB);
+    }
 
+    // seed pixels as a bitmap, a point given twice counts once
+    private BitSet pixelIndices(List<CustomPoint> points){
+        BitSet indices = new BitSet(this.width * this.height);
+        for(CustomPoint p : points) indices.set(p.pointToIndex(this.width));
+        return indices;
+    }
 
-        // recording
+    private HistogramModel histogram(BitSet inO, BitSet inB){
         HistogramModel hist = new HistogramModel();
-        HashSet<Integer> inO = new HashSet<>();
-        HashSet<Integer> inB = new HashSet<>();
+        for(int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) hist.addObjSeed(intensities[o]);
+        for(int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) hist.addBkgSeed(intensities[b]);
+        return hist.compile();
+    }
+
+    // the plane of a gray image, else the luma of processedImageInstance read from its raster
+    private int[] readIntensities(){
+        return IntensityPlane.widen(plane != null ? plane : IntensityPlane.of(processedImageInstance));
+    }
+
+    // luma of an RGB pixel in [0, 255]
+    static int intensity(int rgb){
+        return intensity((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    static int intensity(int r, int g, int b){
+        return (int)(0.299*r + 0.587*g + 0.114*b);
+    }
+
+    // drops everything computed on the previous processedImageInstance
+    private void discardGraphCut(){
+        graphCutPerformed = false;
+        graphCut = null;
+        intensities = null;
+        intensityDigest = null;
+        releaseDynamicSolver();
+    }
 
 
-        // impose hard constraints by building expensive edges from s to O and B to t
-        for(CustomPoint p : objSeedSet){
-            int o = p.pointToIndex(processedImageInstance.getWidth());
-            graph.addEdge(src, o, Long.MAX_VALUE);
+    /**
+     * gives the solver kept for BOYKOV_KOLMOGOROV updates back to the solver pool, for an image
+     * that is done with. the next run builds its graph again
+     */
+    public void releaseSolver(){
+        graphCutPerformed = false;
+        releaseDynamicSolver();
+    }
+
+    private void releaseDynamicSolver(){
+        if(dynamicSolver != null && solverPool != null) solverPool.release(dynamicSolver);
+        dynamicSolver = null;
+    }
+
+
+    /**
+     * builds every t-link and n-link explicitly, src and sink are the terminal nodes of the graph
+     */
+    private boolean[] solveOnFlowGraph(int src, int sink, int[] intensities, HistogramModel hist,
+            BitSet inO, BitSet inB){
+
+        NetworkFlowSolverBase graph = buildFlowGraph(src, sink, intensities, hist, inO, inB);
 
-            hist.addObjSeed(intensities[p.pointToIndex(width)]);
-            inO.add(p.pointToIndex(this.width));
+        // solves the min cut, a pooled solver overwrites its cut array with the next image's
+        boolean[] cut = graph.getMinCut();
+        if(solverPool != null) cut = cut.clone();
+
+        if(engine == GraphCutEngine.BOYKOV_KOLMOGOROV){
+            this.dynamicSolver = (BoykovKolmogorovSolver) graph;
+        } else if(solverPool != null){
+            solverPool.release(graph);
+        } else if(graph instanceof ParallelPushRelabelSolver parallel){
+            parallel.close();
         }
+        return cut;
+    }
+
+    /**
+     * the unsolved graph of solveOnFlowGraph. the capacities are filled in parallel row bands by
+     * graphBuilder, whose edge indices give the t-links of every pixel
+     */
+    private NetworkFlowSolverBase buildFlowGraph(int src, int sink, int[] intensities, HistogramModel hist,
+            BitSet inO, BitSet inB){
 
-        for(CustomPoint p : bkgSeedSet){
-            int b = p.pointToIndex(this.width);
-            graph.addEdge(b, sink, Long.MAX_VALUE);
+        if(graphBuilder == null || !graphBuilder.matches(this.width, this.height, connectivity))
+            graphBuilder = new GridGraphBuilder(this.width, this.height, connectivity);
+        graphBuilder.fill(intensities, hist, inO, inB);
 
-            hist.addBkgSeed(intensities[p.pointToIndex(width)]);
-            inB.add(p.pointToIndex(this.width));
+        NetworkFlowSolverBase graph = createFlowSolver(this.width * this.height, src, sink);
+        graphBuilder.addTo(graph, src, sink);
+        return graph;
+    }
+
+    /**
+     * moves the t-links of the last solved graph to the new seeds and histogram, the solver keeps
+     * its flow and search trees and only looks for the paths the changed links opened up
+     */
+    private boolean[] updateTerminalLinks(HistogramModel hist, BitSet inO, BitSet inB){
+        for(int p = 0; p < this.width * this.height; p++){
+            int sourceLink = graphBuilder.sourceLink(p);
+            dynamicSolver.updateCapacity(sourceLink, sourceWeight(p, intensities, hist, inO, inB));
+            dynamicSolver.updateCapacity(sourceLink + 1, sinkWeight(p, intensities, hist, inO, inB));
         }
+        boolean[] cut = dynamicSolver.getMinCut();
+        return solverPool != null ? cut.clone() : cut;
+    }
 
+    /**
+     * segments for every object bias in [minBias, maxBias] at once. a bias of b makes labelling a
+     * pixel background b energy units dearer, so the object only grows with b and bias 0 gives the
+     * cut of runGraphCut. the cuts are nested, so one parametric solve finds all of them and a
+     * strength slider can show any bias with ParametricCut.fillMinCut instead of solving again
+     *
+     * the graph is the one of solveOnFlowGraph, seed links do not depend on the bias
+     */
+    public ParametricCut runParametricGraphCut(int src, int sink, List<CustomPoint> objSeedSet,
+            List<CustomPoint> bkgSeedSet, long minBias, long maxBias){
+
+        BitSet inO = pixelIndices(objSeedSet);
+        BitSet inB = pixelIndices(bkgSeedSet);
+        if(intensities == null) intensities = readIntensities();
+        HistogramModel hist = histogram(inO, inB);
 
+        // both t-links of a pixel are raised by the same amount when the bias goes negative,
+        // which keeps the capacities positive and changes no cut
+        long shift = Math.max(0, -minBias);
 
-        // remaining neighbor edge operations
-        // O(N)
+        ParametricMaxFlowSolver graph = new ParametricMaxFlowSolver(this.width * this.height, src, sink);
         for(int y=0; y<this.height; y++){
             for(int x=0; x<this.width; x++){
-
                 int curr = y*this.width+x;
 
-                // adding t-links
-                if(!inO.contains(curr) && ! inB.contains(curr)){
-                    long weightSrc = hist.objEnergy(intensities[curr]);
-                    long weightSink = hist.bkgEnergy(intensities[curr]);
+                if(inO.get(curr) || inB.get(curr)){
+                    graph.addEdge(src, curr, sourceWeight(curr, intensities, hist, inO, inB));
+                    graph.addEdge(curr, sink, sinkWeight(curr, intensities, hist, inO, inB));
+                } else {
+                    graph.addParametricEdge(src, curr, hist.bkgEnergy(intensities[curr]) + shift, 1);
+                    graph.addEdge(curr, sink, hist.objEnergy(intensities[curr]) + shift);
+                }
 
-                    graph.addEdge(src, curr, weightSink);
-                    graph.addEdge(curr, sink, weightSrc);
+                for(int d=0; d<connectivity; d++){
+                    int nx = x + DX[d];
+                    int ny = y + DY[d];
+                    if(0 <= nx && nx < this.width && 0 <= ny && ny < this.height){
+                        int neighbor = ny * this.width + nx;
+                        graph.addEdge(curr, neighbor, boundaryWeight(intensities[curr], intensities[neighbor], d));
+                    }
                 }
+            }
+        }
+        return graph.solve(minBias, maxBias);
+    }
 
+    // capacity of the t-link from the source, what labelling the pixel background costs
+    private static long sourceWeight(int p, int[] intensities, HistogramModel hist, BitSet inO, BitSet inB){
+        if(inO.get(p)) return Long.MAX_VALUE;
+        if(inB.get(p)) return 0;
+        return hist.bkgEnergy(intensities[p]);
+    }
 
-                int[] dx = {1, 0, -1, 0};
-                int[] dy = {0, 1, 0, -1};
+    // capacity of the t-link to the sink, what labelling the pixel object costs
+    private static long sinkWeight(int p, int[] intensities, HistogramModel hist, BitSet inO, BitSet inB){
+        if(inB.get(p)) return Long.MAX_VALUE;
+        if(inO.get(p)) return 0;
+        return hist.objEnergy(intensities[p]);
+    }
 
-                // adding n-links
-                // O(1)
-                for(int d=0; d<4; d++){
-                    int nx = x + dx[d];
-                    int ny = y + dy[d];
 
-                    int neighbor = ny * this.width + nx;
-                    if(0 <= nx && nx < this.width && 0 <= ny && ny < this.height){
+    private NetworkFlowSolverBase createFlowSolver(int n, int src, int sink){
+        if(solverPool == null) return newFlowSolver(n, src, sink);
+        Class<? extends NetworkFlowSolverBase> type = switch(engine){
+            case PUSH_RELABEL -> PushRelabelSolver.class;
+            case PARALLEL_PUSH_RELABEL -> ParallelPushRelabelSolver.class;
+            case IBFS -> IbfsSolver.class;
+            default -> BoykovKolmogorovSolver.class;
+        };
+        return solverPool.acquire(type, n, src, sink, () -> newFlowSolver(n, src, sink));
+    }
 
-                        int diff = Math.abs(intensities[curr] - intensities[neighbor]);
-                        int noise = 30;
-                        long weight = (long)(100 * Math.exp(- ((double)diff * diff) / (2 * noise * noise)));
-                        long weightSafe = Math.max(1, weight);
+    private NetworkFlowSolverBase newFlowSolver(int n, int src, int sink){
+        switch(engine){
+            case PUSH_RELABEL: {
+                // segmentation only needs the cut, skip converting the preflow into a flow
+                PushRelabelSolver solver = new PushRelabelSolver(n, src, sink);
+                solver.setMinCutOnly(true);
+                return solver;
+            }
+            case PARALLEL_PUSH_RELABEL: {
+                PushRelabelSolver solver = new ParallelPushRelabelSolver(n, src, sink);
+                solver.setMinCutOnly(true);
+                return solver;
+            }
+            case IBFS:
+                return new IbfsSolver(n, src, sink);
+            default:
+                return new BoykovKolmogorovSolver(n, src, sink);
+        }
+    }
 
-                        graph.addEdge(curr, neighbor, weightSafe);
-                    }
 
+    /**
+     * solves the same energy on GridBoykovKolmogorovSolver, the src and sink pixels become hard
+     * constraints to the virtual terminals instead of being terminals themselves
+     */
+    private boolean[] solveOnGrid(int src, int sink, int[] intensities, HistogramModel hist,
+            BitSet inO, BitSet inB){
+
+        GridBoykovKolmogorovSolver grid = createGridSolver();
+
+        grid.addTerminalWeights(src, Long.MAX_VALUE, 0);
+        grid.addTerminalWeights(sink, 0, Long.MAX_VALUE);
+        for(int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) grid.addTerminalWeights(o, Long.MAX_VALUE, 0);
+        for(int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) grid.addTerminalWeights(b, 0, Long.MAX_VALUE);
+
+        for(int y=0; y<this.height; y++){
+            for(int x=0; x<this.width; x++){
+
+                int curr = y*this.width+x;
+
+                if(!inO.get(curr) && !inB.get(curr)){
+                    grid.addTerminalWeights(curr, hist.bkgEnergy(intensities[curr]), hist.objEnergy(intensities[curr]));
+                }
+
+                // each neighbouring pair once, same weight both ways
+                for(int d : FORWARD_DIRECTIONS){
+                    if(d >= connectivity) continue;
+                    int nx = x + DX[d];
+                    int ny = y + DY[d];
+
+                    if(0 <= nx && nx < this.width && 0 <= ny && ny < this.height){
+                        int neighbor = ny * this.width + nx;
+                        long weight = boundaryWeight(intensities[curr], intensities[neighbor], d);
+                        grid.addEdge(curr, d, weight, weight);
+                    }
                 }
             }
         }
 
-        // solves the min cut
-        this.graphCut = graph.getMinCut();
-        graphCutPerformed = true;
-        return graphCut;
+        boolean[] cut = grid.getMinCut();
+        if(solverPool != null){
+            cut = cut.clone();
+            solverPool.release(grid);
+        }
+        return cut;
+    }
+
+    private GridBoykovKolmogorovSolver createGridSolver(){
+        int w = this.width, h = this.height;
+        if(engine == GraphCutEngine.PARALLEL_GRID_BOYKOV_KOLMOGOROV){
+            if(solverPool == null) return new ParallelGridBoykovKolmogorovSolver(w, h, connectivity);
+            return solverPool.acquireGrid(ParallelGridBoykovKolmogorovSolver.class, w, h, connectivity,
+                    () -> new ParallelGridBoykovKolmogorovSolver(w, h, connectivity));
+        }
+        if(solverPool == null) return new GridBoykovKolmogorovSolver(w, h, connectivity);
+        return solverPool.acquireGrid(GridBoykovKolmogorovSolver.class, w, h, connectivity,
+                () -> new GridBoykovKolmogorovSolver(w, h, connectivity));
+    }
+
+
+    // boundaryWeight of every intensity difference, for axial and for diagonal n-links
+    static final long[] AXIAL_WEIGHTS = boundaryWeights(false);
+    static final long[] DIAGONAL_WEIGHTS = boundaryWeights(true);
+
+    /**
+     * n-link weight in [1, 100], cheap to cut across large intensity changes;
+     * diagonal links are scaled down by their length
+     */
+    static long boundaryWeight(int intensity, int neighborIntensity, int direction){
+        return boundaryWeights(direction)[Math.abs(intensity - neighborIntensity)];
+    }
+
+    // the table of boundaryWeight for a direction, indexed by the intensity difference
+    static long[] boundaryWeights(int direction){
+        return direction >= 4 ? DIAGONAL_WEIGHTS : AXIAL_WEIGHTS;
+    }
+
+    private static long[] boundaryWeights(boolean diagonal){
+        long[] weights = new long[256];
+        int noise = 30;
+        for(int diff = 0; diff < 256; diff++){
+            double weight = 100 * Math.exp(- ((double)diff * diff) / (2 * noise * noise));
+            if(diagonal) weight /= Math.sqrt(2);
+            weights[diff] = Math.max(1, (long) weight);
+        }
+        return weights;
     }
 
 }
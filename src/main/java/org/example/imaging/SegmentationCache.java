@@ -0,0 +1,330 @@
+package org.example.imaging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.example.network.MinCut;
+
+/**
+ * Segmentations already computed, keyed by what determines them: the intensities of the image,
+ * the terminals, the seed pixels and the solver parameters. Running the same image with the same
+ * seeds again, from the GUI, a batch re-run or another client, reads the mask back instead of
+ * solving.
+ *
+ * <p>Masks are kept as {@link MinCut} bitsets in two tiers. The memory tier holds the most
+ * recently used ones up to a byte budget. The optional disk tier holds one file per mask in a
+ * directory, up to a byte budget of its own, and evicts the least recently used files. Masks
+ * evicted from memory stay on disk, and a disk hit goes back into memory. A disk file that cannot
+ * be read or written counts as a miss, the cache never fails a segmentation.
+ *
+ * <p>The cache is thread safe. Files are written under a temporary name and moved into place, so
+ * several caches may share a directory.
+ */
+public final class SegmentationCache {
+
+    private static final String SUFFIX = ".cut";
+    private static final int MAGIC = 0x43555431; // "CUT1"
+
+    /** A SHA-256 of everything the segmentation depends on, in hex. */
+    public record Key(String digest) {
+    }
+
+    /**
+     * Counters since the cache was created.
+     *
+     * @param memoryHits - Lookups served from memory.
+     * @param diskHits - Lookups served from disk.
+     * @param misses - Lookups found in neither tier.
+     * @param memoryEntries - Masks in memory.
+     * @param memoryBytes - Estimated heap bytes of the masks in memory.
+     * @param diskEntries - Mask files.
+     * @param diskBytes - Bytes of the mask files.
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, int memoryEntries, long memoryBytes,
+            int diskEntries, long diskBytes) {
+
+        public long hits(){
+            return memoryHits + diskHits;
+        }
+
+        // share of lookups served from either tier, 0 before the first lookup
+        public double hitRate(){
+            long lookups = hits() + misses;
+            return lookups == 0 ? 0 : (double) hits() / lookups;
+        }
+    }
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    // least recently used first
+    private final LinkedHashMap<Key, MinCut> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * a cache in memory only
+     * @param maxMemoryBytes - Estimated heap bytes of the masks kept, see {@link MinCut#memoryFootprint}.
+     */
+    public SegmentationCache(long maxMemoryBytes){
+        if(maxMemoryBytes < 0) throw new IllegalArgumentException("Memory budget < 0");
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /**
+     * a cache in memory backed by directory, which is created if needed. mask files already in it
+     * are kept, the most recently modified ones if they exceed maxDiskBytes
+     * @param maxMemoryBytes - Estimated heap bytes of the masks kept in memory.
+     * @param directory - Where the mask files go.
+     * @param maxDiskBytes - Bytes of the mask files kept.
+     */
+    public SegmentationCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException {
+        if(maxMemoryBytes < 0) throw new IllegalArgumentException("Memory budget < 0");
+        if(maxDiskBytes < 0) throw new IllegalArgumentException("Disk budget < 0");
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = Files.createDirectories(directory);
+        this.maxDiskBytes = maxDiskBytes;
+
+        // the files of earlier runs, oldest first so the index starts in LRU order
+        record Stored(Key key, long size, FileTime modified) {}
+        List<Stored> stored = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)){
+            for(Path file : files){
+                String name = file.getFileName().toString();
+                Key key = new Key(name.substring(0, name.length() - SUFFIX.length()));
+                stored.add(new Stored(key, Files.size(file), Files.getLastModifiedTime(file)));
+            }
+        }
+        stored.sort(Comparator.comparing(Stored::modified));
+        List<Path> evicted;
+        synchronized(this){
+            for(Stored s : stored){
+                disk.put(s.key(), s.size());
+                diskBytes += s.size();
+            }
+            evicted = evictFromDisk();
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * the digest of an image's intensities, computed once per image and passed to key
+     */
+    public static byte[] digest(int[] intensities, int width, int height){
+        if(intensities.length != width * height) throw new IllegalArgumentException("Intensities do not match the size");
+        MessageDigest sha = sha256();
+        sha.update(ByteBuffer.allocate(8).putInt(width).putInt(height).array());
+        // intensities are 8-bit
+        byte[] row = new byte[width];
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++) row[x] = (byte) intensities[y * width + x];
+            sha.update(row);
+        }
+        return sha.digest();
+    }
+
+    /**
+     * the key of a segmentation. the seed sets are canonical as bitsets: the order and duplicates
+     * of the points they came from do not matter
+     * @param imageDigest - The digest of the intensities.
+     * @param parameters - Everything else the cut depends on, like the engine and connectivity.
+     */
+    public static Key key(byte[] imageDigest, String parameters, int src, int sink, BitSet inO, BitSet inB){
+        MessageDigest sha = sha256();
+        sha.update(imageDigest);
+        byte[] text = parameters.getBytes(StandardCharsets.UTF_8);
+        sha.update(ByteBuffer.allocate(12).putInt(text.length).putInt(src).putInt(sink).array());
+        sha.update(text);
+        update(sha, inO);
+        update(sha, inB);
+        return new Key(HexFormat.of().formatHex(sha.digest()));
+    }
+
+    // length prefixed, so the two seed sets cannot run into each other
+    private static void update(MessageDigest sha, BitSet bits){
+        long[] words = bits.toLongArray();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * words.length).putInt(words.length);
+        for(long word : words) buffer.putLong(word);
+        sha.update(buffer.array());
+    }
+
+    private static MessageDigest sha256(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e){
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * the mask stored under key, from memory or else from disk, null if there is none
+     */
+    public MinCut get(Key key){
+        synchronized(this){
+            MinCut cut = memory.get(key);
+            if(cut != null){
+                memoryHits++;
+                return cut;
+            }
+            if(directory == null || !disk.containsKey(key)){
+                misses++;
+                return null;
+            }
+        }
+
+        MinCut cut = read(key);
+        synchronized(this){
+            if(cut == null){
+                misses++;
+                Long size = disk.remove(key);
+                if(size != null) diskBytes -= size;
+            } else {
+                diskHits++;
+                // refreshes the file's place in the LRU order
+                disk.get(key);
+                putInMemory(key, cut);
+            }
+        }
+        if(cut == null) delete(file(key));
+        return cut;
+    }
+
+    /**
+     * stores the mask under key in memory and, if there is a directory, on disk. storing the same
+     * key again replaces the mask
+     */
+    public void put(Key key, MinCut cut){
+        synchronized(this){
+            putInMemory(key, cut);
+        }
+        if(directory == null) return;
+
+        long size = write(key, cut);
+        if(size < 0) return;
+        List<Path> evicted;
+        synchronized(this){
+            Long old = disk.put(key, size);
+            diskBytes += size - (old != null ? old : 0);
+            evicted = evictFromDisk();
+        }
+        deleteAll(evicted);
+    }
+
+    public synchronized Stats stats(){
+        return new Stats(memoryHits, diskHits, misses, memory.size(), memoryBytes, disk.size(), diskBytes);
+    }
+
+    /**
+     * drops every mask from memory and deletes the mask files, the counters are kept
+     */
+    public void clear(){
+        List<Path> files = new ArrayList<>();
+        synchronized(this){
+            memory.clear();
+            memoryBytes = 0;
+            for(Key key : disk.keySet()) files.add(file(key));
+            disk.clear();
+            diskBytes = 0;
+        }
+        deleteAll(files);
+    }
+
+    private void putInMemory(Key key, MinCut cut){
+        MinCut old = memory.put(key, cut);
+        memoryBytes += cut.memoryFootprint() - (old != null ? old.memoryFootprint() : 0);
+        Iterator<MinCut> lru = memory.values().iterator();
+        while(memoryBytes > maxMemoryBytes && lru.hasNext()){
+            memoryBytes -= lru.next().memoryFootprint();
+            lru.remove();
+        }
+    }
+
+    // drops the least recently used files from the index until they fit, the caller deletes them
+    private List<Path> evictFromDisk(){
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<Key, Long>> lru = disk.entrySet().iterator();
+        while(diskBytes > maxDiskBytes && lru.hasNext()){
+            Map.Entry<Key, Long> entry = lru.next();
+            diskBytes -= entry.getValue();
+            evicted.add(file(entry.getKey()));
+            lru.remove();
+        }
+        return evicted;
+    }
+
+    private Path file(Key key){
+        return directory.resolve(key.digest() + SUFFIX);
+    }
+
+    // the stored mask, null if the file is gone or broken
+    private MinCut read(Key key){
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(key))))){
+            if(in.readInt() != MAGIC) return null;
+            int size = in.readInt();
+            long[] words = new long[(size + 63) >>> 6];
+            for(int w = 0; w < words.length; w++) words[w] = in.readLong();
+            return MinCut.valueOf(words, size);
+        } catch(IOException | RuntimeException e){
+            return null;
+        }
+    }
+
+    // bytes written, -1 if the file could not be written
+    private long write(Key key, MinCut cut){
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key.digest(), ".tmp");
+            long[] words = cut.toLongArray();
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))){
+                out.writeInt(MAGIC);
+                out.writeInt(cut.size());
+                for(long word : words) out.writeLong(word);
+            }
+            Files.move(temporary, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return 8 + 8L * words.length;
+        } catch(IOException e){
+            if(temporary != null) delete(temporary);
+            return -1;
+        }
+    }
+
+    private static void deleteAll(List<Path> files){
+        for(Path file : files) delete(file);
+    }
+
+    private static void delete(Path file){
+        try {
+            Files.deleteIfExists(file);
+        } catch(IOException e){
+            // left behind, another cache on the directory may still drop it
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.example.imaging;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.example.network.GridBoykovKolmogorovSolver;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+
+/**
+ * Segmentation of images too large to decode at once, at full resolution.
+ *
+ * <p>The image is never loaded whole. An {@link ImageReader} decodes one source region at a time,
+ * and labels go to a {@link MaskFile} mapped from disk. The image is split into square tiles.
+ * Each tile is cut together with a {@code margin} of its neighbours, but only the labels of its
+ * own pixels are kept, so the boundary near a tile edge still sees what lies beyond it.
+ *
+ * <p>A tile cut alone can still put the boundary differently than its neighbour does where they
+ * meet. So afterwards a band of {@code seamBand} pixels on each side of every seam is cut again in
+ * pieces of one tile length. The pixels around a piece are fixed to their current labels, the way
+ * {@link BandedGraphCut} fixes pixels outside its band. Vertical seams go first, then horizontal
+ * ones. The pieces of a seam are centred on the seams across it, so the crossings are cut in one
+ * piece.
+ *
+ * <p>The energy is the one of {@link ProcessedImage}: histogram t-links learned from the seed
+ * pixels, intensity n-links and hard constraints for the seeds, with the RGB luma as intensity.
+ * Peak memory depends on the tile size and margin, not on the image size.
+ */
+public class TiledGraphCut {
+
+    public static final int DEFAULT_TILE_SIZE = 1024;
+    public static final int DEFAULT_MARGIN = 32;
+    public static final int DEFAULT_SEAM_BAND = 16;
+
+    // hard constraint flags per pixel
+    private static final byte OBJECT = 1;
+    private static final byte BACKGROUND = 2;
+
+    private final int connectivity;
+    private final int tileSize;
+    private final int margin;
+    private final int seamBand;
+
+    public TiledGraphCut(int connectivity){
+        this(connectivity, DEFAULT_TILE_SIZE, DEFAULT_MARGIN, DEFAULT_SEAM_BAND);
+    }
+
+    /**
+     * @param connectivity - 4 or 8.
+     * @param tileSize - Side of the tiles whose labels each cut keeps.
+     * @param margin - Pixels around a tile cut with it for context, 0 for none.
+     * @param seamBand - Pixels on each side of a seam that are cut again, at most half a tile.
+     */
+    public TiledGraphCut(int connectivity, int tileSize, int margin, int seamBand){
+        if(connectivity != 4 && connectivity != 8)
+            throw new IllegalArgumentException("Connectivity must be 4 or 8");
+        if(tileSize < 2) throw new IllegalArgumentException("Tile size < 2");
+        if(margin < 0) throw new IllegalArgumentException("Margin < 0");
+        if(seamBand < 1 || 2 * seamBand > tileSize) throw new IllegalArgumentException("Seam band not in [1, tile size / 2]");
+        this.connectivity = connectivity;
+        this.tileSize = tileSize;
+        this.margin = margin;
+        this.seamBand = seamBand;
+    }
+
+    /**
+     * segments the image file with seeds in its pixel coordinates and writes the labels to a new
+     * mask file, which the caller closes
+     */
+    public MaskFile segment(Path image, List<CustomPoint> objSeeds, List<CustomPoint> bkgSeeds, Path mask) throws IOException {
+        try(ImageInputStream input = ImageIO.createImageInputStream(image.toFile())){
+            if(input == null) throw new IOException("Cannot open " + image);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if(!readers.hasNext()) throw new IOException("No image reader for " + image);
+            ImageReader reader = readers.next();
+            try {
+                // random access, regions are read in any order
+                reader.setInput(input, false, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                Seeds seeds = new Seeds(width, height, objSeeds, bkgSeeds);
+                HistogramModel hist = learnHistogram(reader, seeds);
+
+                MaskFile out = MaskFile.create(mask, width, height);
+                try {
+                    cutAll(reader, seeds, hist, out);
+                } catch(IOException | RuntimeException e){
+                    out.close();
+                    throw e;
+                }
+                return out;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void cutAll(ImageReader reader, Seeds seeds, HistogramModel hist, MaskFile mask) throws IOException {
+        int width = mask.width(), height = mask.height();
+        int cols = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+        Rectangle image = new Rectangle(0, 0, width, height);
+
+        for(int r = 0; r < rows; r++){
+            for(int c = 0; c < cols; c++){
+                Rectangle tile = new Rectangle(c * tileSize, r * tileSize, tileSize, tileSize).intersection(image);
+                Rectangle region = new Rectangle(tile.x - margin, tile.y - margin, tile.width + 2 * margin,
+                        tile.height + 2 * margin).intersection(image);
+                cut(reader, seeds, hist, mask, region, tile, false);
+            }
+        }
+
+        // pieces of one tile length centred on the seams across, so each crossing is in one piece
+        int half = tileSize / 2;
+        for(int c = 1; c < cols; c++){
+            for(int r = 0; r <= rows; r++){
+                Rectangle piece = new Rectangle(c * tileSize - seamBand, r * tileSize - half, 2 * seamBand, tileSize)
+                        .intersection(image);
+                if(!piece.isEmpty()) cut(reader, seeds, hist, mask, piece, piece, true);
+            }
+        }
+        for(int r = 1; r < rows; r++){
+            for(int c = 0; c <= cols; c++){
+                Rectangle piece = new Rectangle(c * tileSize - half, r * tileSize - seamBand, tileSize, 2 * seamBand)
+                        .intersection(image);
+                if(!piece.isEmpty()) cut(reader, seeds, hist, mask, piece, piece, true);
+            }
+        }
+    }
+
+    /**
+     * cuts region and writes the labels of keep into the mask. with fixedOutside the pixels around
+     * region keep their labels in the mask and pull their neighbours in region towards them,
+     * otherwise the region is cut as if nothing lay around it
+     */
+    private void cut(ImageReader reader, Seeds seeds, HistogramModel hist, MaskFile mask,
+            Rectangle region, Rectangle keep, boolean fixedOutside) throws IOException {
+
+        Rectangle image = new Rectangle(0, 0, mask.width(), mask.height());
+        Rectangle context = fixedOutside
+                ? new Rectangle(region.x - 1, region.y - 1, region.width + 2, region.height + 2).intersection(image)
+                : region;
+        int[] intensities = readIntensities(reader, context);
+        byte[] hard = seeds.flags(region);
+
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(region.width, region.height, connectivity);
+        for(int y = 0; y < region.height; y++){
+            for(int x = 0; x < region.width; x++){
+                int curr = y * region.width + x;
+                int gx = region.x + x, gy = region.y + y;
+                int intensity = intensities[(gy - context.y) * context.width + gx - context.x];
+
+                long source = sourceWeight(hard[curr], intensity, hist);
+                long sink = sinkWeight(hard[curr], intensity, hist);
+
+                for(int d = 0; d < connectivity; d++){
+                    int nx = gx + ProcessedImage.DX[d];
+                    int ny = gy + ProcessedImage.DY[d];
+                    if(!image.contains(nx, ny)) continue;
+
+                    boolean inside = region.contains(nx, ny);
+                    if(!inside && !fixedOutside) continue;
+                    long weight = ProcessedImage.boundaryWeight(intensity,
+                            intensities[(ny - context.y) * context.width + nx - context.x], d);
+                    if(!inside){
+                        if(mask.get(nx, ny)) source = saturatedAdd(source, weight);
+                        else sink = saturatedAdd(sink, weight);
+                    } else if(isForward(d)){
+                        grid.addEdge(curr, d, weight, weight);
+                    }
+                }
+                grid.addTerminalWeights(curr, source, sink);
+            }
+        }
+
+        boolean[] cut = grid.getMinCut();
+        for(int y = keep.y; y < keep.y + keep.height; y++){
+            for(int x = keep.x; x < keep.x + keep.width; x++){
+                mask.set(x, y, cut[(y - region.y) * region.width + x - region.x]);
+            }
+        }
+    }
+
+    /**
+     * reads only the tiles that hold seeds
+     */
+    private HistogramModel learnHistogram(ImageReader reader, Seeds seeds) throws IOException {
+        HistogramModel hist = new HistogramModel();
+        int cols = (seeds.width + tileSize - 1) / tileSize;
+
+        // seed indices sorted by the tile they are in
+        long[] byTile = new long[seeds.keys.length];
+        for(int i = 0; i < byTile.length; i++){
+            long tile = (long) (seeds.y(i) / tileSize) * cols + seeds.x(i) / tileSize;
+            byTile[i] = tile << 32 | i;
+        }
+        Arrays.sort(byTile);
+
+        Rectangle image = new Rectangle(0, 0, seeds.width, seeds.height);
+        for(int first = 0, last; first < byTile.length; first = last){
+            long t = byTile[first] >>> 32;
+            for(last = first + 1; last < byTile.length && byTile[last] >>> 32 == t; last++);
+
+            Rectangle tile = new Rectangle((int) (t % cols) * tileSize, (int) (t / cols) * tileSize, tileSize, tileSize)
+                    .intersection(image);
+            int[] intensities = readIntensities(reader, tile);
+            for(int k = first; k < last; k++){
+                int i = (int) byTile[k];
+                int intensity = intensities[(seeds.y(i) - tile.y) * tile.width + seeds.x(i) - tile.x];
+                if((seeds.flags[i] & OBJECT) != 0) hist.addObjSeed(intensity);
+                if((seeds.flags[i] & BACKGROUND) != 0) hist.addBkgSeed(intensity);
+            }
+        }
+        return hist.compile();
+    }
+
+    // decodes only region of the image
+    private static int[] readIntensities(ImageReader reader, Rectangle region) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        BufferedImage decoded = reader.read(0, param);
+        return IntensityPlane.widen(IntensityPlane.of(decoded));
+    }
+
+    // t-link from the source, what labelling the pixel background costs
+    private static long sourceWeight(byte hard, int intensity, HistogramModel hist){
+        if((hard & OBJECT) != 0) return Long.MAX_VALUE;
+        if(hard != 0) return 0;
+        return hist.bkgEnergy(intensity);
+    }
+
+    // t-link to the sink, what labelling the pixel object costs
+    private static long sinkWeight(byte hard, int intensity, HistogramModel hist){
+        if((hard & BACKGROUND) != 0) return Long.MAX_VALUE;
+        if(hard != 0) return 0;
+        return hist.objEnergy(intensity);
+    }
+
+    private static boolean isForward(int direction){
+        for(int d : ProcessedImage.FORWARD_DIRECTIONS) if(d == direction) return true;
+        return false;
+    }
+
+    private static long saturatedAdd(long capacity, long amount){
+        return capacity > Long.MAX_VALUE - amount ? Long.MAX_VALUE : capacity + amount;
+    }
+
+    /**
+     * seed pixels sorted by row major index with their hard constraint flags, so the seeds of a
+     * region are found by one binary search per row
+     */
+    private static final class Seeds {
+
+        final int width, height;
+        final long[] keys;
+        final byte[] flags;
+
+        Seeds(int width, int height, List<CustomPoint> objSeeds, List<CustomPoint> bkgSeeds){
+            this.width = width;
+            this.height = height;
+
+            long[] all = new long[objSeeds.size() + bkgSeeds.size()];
+            int n = 0;
+            for(CustomPoint p : objSeeds) all[n++] = key(p, width, height) << 2 | OBJECT;
+            for(CustomPoint p : bkgSeeds) all[n++] = key(p, width, height) << 2 | BACKGROUND;
+            Arrays.sort(all);
+
+            // a pixel in both lists gets both flags
+            long[] keys = new long[n];
+            byte[] flags = new byte[n];
+            int m = 0;
+            for(long seed : all){
+                long key = seed >>> 2;
+                if(m == 0 || keys[m - 1] != key) keys[m++] = key;
+                flags[m - 1] |= (byte) (seed & 3);
+            }
+            this.keys = Arrays.copyOf(keys, m);
+            this.flags = Arrays.copyOf(flags, m);
+        }
+
+        private static long key(CustomPoint p, int width, int height){
+            if(p.x() < 0 || p.x() >= width || p.y() < 0 || p.y() >= height)
+                throw new IllegalArgumentException("Seed " + p + " outside the " + width + " x " + height + " image");
+            return (long) p.y() * width + p.x();
+        }
+
+        int x(int i){
+            return (int) (keys[i] % width);
+        }
+
+        int y(int i){
+            return (int) (keys[i] / width);
+        }
+
+        // flags of the pixels of region, row major
+        byte[] flags(Rectangle region){
+            byte[] hard = new byte[region.width * region.height];
+            for(int y = region.y; y < region.y + region.height; y++){
+                long first = (long) y * width + region.x;
+                long last = first + region.width - 1;
+                int i = Arrays.binarySearch(keys, first);
+                if(i < 0) i = -i - 1;
+                for(; i < keys.length && keys[i] <= last; i++){
+                    hard[(y - region.y) * region.width + (int) (keys[i] - first)] = flags[i];
+                }
+            }
+            return hard;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.imaging;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * WeightKernel on the vector API: differences are taken a vector of intensities at a time and
+ * the capacities gathered from the tables a vector at a time, the tail of a row in scalar code.
+ * only loaded when the jdk.incubator.vector module is present
+ */
+final class VectorWeightKernel extends WeightKernel {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    // as many int lanes as long lanes, the gather takes one int index per long
+    private static final VectorSpecies<Integer> INTS = LONGS.vectorBitSize() >= 128
+            ? VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2))
+            : null;
+
+    VectorWeightKernel(){
+        if(INTS == null) throw new UnsupportedOperationException("Vectors of " + LONGS.length() + " long");
+    }
+
+    @Override
+    void lookup(long[] table, int[] keys, int from, long[] out, int to, int count){
+        int i = 0;
+        for(int bound = LONGS.loopBound(count); i < bound; i += LONGS.length()){
+            LongVector.fromArray(LONGS, table, 0, keys, from + i).intoArray(out, to + i);
+        }
+        for(; i < count; i++) out[to + i] = table[keys[from + i]];
+    }
+
+    @Override
+    void lookupDifference(long[] table, int[] values, int from, int neighborFrom, int[] differences, long[] out, int to, int count){
+        int i = 0;
+        for(int bound = LONGS.loopBound(count); i < bound; i += LONGS.length()){
+            IntVector.fromArray(INTS, values, from + i)
+                    .sub(IntVector.fromArray(INTS, values, neighborFrom + i))
+                    .abs()
+                    .intoArray(differences, i);
+            LongVector.fromArray(LONGS, table, 0, differences, i).intoArray(out, to + i);
+        }
+        for(; i < count; i++) out[to + i] = table[Math.abs(values[from + i] - values[neighborFrom + i])];
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.imaging;
+
+/**
+ * table lookups that turn a row of intensities into a row of edge capacities. the energies of the
+ * histogram and the n-link weights only depend on an 8-bit intensity or intensity difference, so
+ * building a graph is gathering from 256-entry tables.
+ *
+ * the kernel in use is a SIMD one on the jdk.incubator.vector API when that module is present,
+ * the JVM then runs with --add-modules jdk.incubator.vector, and a scalar loop otherwise or when
+ * the graphcut.scalarKernel system property is true
+ */
+abstract class WeightKernel {
+
+    private static final WeightKernel SELECTED = select();
+
+    static WeightKernel get(){
+        return SELECTED;
+    }
+
+    static WeightKernel scalar(){
+        return new ScalarWeightKernel();
+    }
+
+    private static WeightKernel select(){
+        if(Boolean.getBoolean("graphcut.scalarKernel")) return scalar();
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return scalar();
+        try{
+            return new VectorWeightKernel();
+        } catch(LinkageError | UnsupportedOperationException e){
+            // no usable vector shape on this platform
+            return scalar();
+        }
+    }
+
+    /**
+     * out[to + i] = table[keys[from + i]] for i < count
+     */
+    abstract void lookup(long[] table, int[] keys, int from, long[] out, int to, int count);
+
+    /**
+     * out[to + i] = table[|values[from + i] - values[neighborFrom + i]|] for i < count. differences
+     * holds at least count ints the kernel may overwrite, owned by the calling thread
+     */
+    abstract void lookupDifference(long[] table, int[] values, int from, int neighborFrom, int[] differences, long[] out, int to, int count);
+
+
+    private static final class ScalarWeightKernel extends WeightKernel {
+
+        @Override
+        void lookup(long[] table, int[] keys, int from, long[] out, int to, int count){
+            for(int i = 0; i < count; i++) out[to + i] = table[keys[from + i]];
+        }
+
+        @Override
+        void lookupDifference(long[] table, int[] values, int from, int neighborFrom, int[] differences, long[] out, int to, int count){
+            for(int i = 0; i < count; i++) out[to + i] = table[Math.abs(values[from + i] - values[neighborFrom + i])];
+        }
+    }
+}
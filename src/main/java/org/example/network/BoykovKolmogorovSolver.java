@@ -1,30 +1,71 @@
 package org.example.network;
 
-import java.sql.Array;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
-import java.util.Set;
-import org.jetbrains.annotations.Nullable;
-
+import java.util.Arrays;
+
+/**
+ * Boykov-Kolmogorov max-flow on an explicit flow graph, with s and t as the roots of the two
+ * search trees.
+ *
+ * <p>Per-node state lives in primitive arrays: the tree a node belongs to, the arc from its parent,
+ * and the timestamp / distance-to-root marks of the original paper. When an orphan looks for a new
+ * parent, the walk towards the root stops at the first node already verified in the current
+ * round, and every node on the way is stamped, so origin checks are amortized O(1) instead of a
+ * full walk to the root per candidate. Active nodes and orphans are kept in intrusive int FIFOs.
+ *
+ * <p>The trees and the flow survive a solve, so edge capacities can be changed afterwards with
+ * {@link #updateCapacity(int, long)} and the next query only searches for what the change opened
+ * up, the dynamic graph cuts of Kohli and Torr.
+ */
 public class BoykovKolmogorovSolver extends NetworkFlowSolverBase{
 
+    private static final byte FREE = 0;
+    private static final byte SOURCE = 1;
+    private static final byte SINK = 2;
+
+    // parent values besides arc indices
+    private static final int NO_PARENT = -1;
+    private static final int ORPHAN = -2;
+    private static final int ROOT = -3;
+
+    private static final int NONE = -1;
+    private static final int INFINITE_DIST = Integer.MAX_VALUE;
+
+    // FREE, SOURCE or SINK
+    private byte[] tree;
+
+    // path information for augmenting tree operations, the arc from a node's parent to the node
+    private int[] parent;
+
+    // round in which the distance to the root was last verified, and that distance
+    private int[] timestamp;
+    private int[] dist;
+    private int time;
+
+    // FIFO of active nodes, nextActive[i] is NONE when i is not queued and the tail points to itself
+    private int[] nextActive;
+    private int activeHead, activeTail;
 
-    Set<Integer> activeSet;
-    Set<Integer> orphans;
+    // next arc to scan for each active node. growth resumes at the collision arc after an
+    // augmentation instead of rescanning terminals with thousands of arcs from the start,
+    // activating a node again rewinds it
+    private int[] currentArc;
 
+    // FIFO of orphans, nextOrphan[i] works like nextActive
+    private int[] nextOrphan;
+    private int orphanHead, orphanTail;
 
-    // -1 for S tree, 1 for T tree
-    private int[] nodeInTree;
+    // whether the trees hold a search, false before the first solve and after reset()
+    private boolean searched;
 
-    // path information for augmenting tree operations
-    private Edge[] parent;
+    // only allocated once capacities are updated after solving: the arc from s and the arc to t
+    // of each node, NONE if it has none, what both were raised by when reparametrizing the node,
+    // and the stack of the flow cancelling search
+    private int[] sourceArc;
+    private int[] sinkArc;
+    private long[] offset;
+    private int[] scanArc;
+    private int[] path;
+    private boolean updatesPrepared;
 
     public BoykovKolmogorovSolver(int n, int s, int t){
         super(n, s, t);
@@ -33,207 +74,542 @@ public class BoykovKolmogorovSolver extends NetworkFlowSolverBase{
     @Override
     public void solve(){
 
-        nodeInTree = new int[n];
-        orphans = new LinkedHashSet<>();
+        graph.compile();
+        if(!searched) initialize();
 
-        parent = new Edge[n];
+        // stamps from before a capacity update can point through the orphans it made
+        time++;
+        if(stats != null) stats.beginPhase();
+        adoptOrphans();
+        if(stats != null) stats.endPhase(SolverStats.Phase.ADOPT);
 
-        activeSet = new LinkedHashSet<>();
+        while(true) {
 
-        // initiate
-        visit(s);
-        visit(t);
-        nodeInTree[s] = -1;
-        nodeInTree[t] = 1;
+            if(stats != null) stats.beginPhase();
+            int collisionArc = activeGrow();
+            if(stats != null) stats.endPhase(SolverStats.Phase.GROW);
+            if(collisionArc == NONE) break;
 
-        activeSet.add(s);
-        activeSet.add(t);
+            if(stats != null) stats.beginPhase();
+            maxFlow += augmentPath(collisionArc);
+            if(stats != null) stats.endPhase(SolverStats.Phase.AUGMENT);
 
-        minCut[s] = true;
+            if(stats != null) stats.beginPhase();
+            adoptOrphans();
+            if(stats != null) stats.endPhase(SolverStats.Phase.ADOPT);
+        }
 
+        for(int i = 0; i < n; i++) minCut[i] = tree[i] == SOURCE;
+    }
 
-        long flow = Long.MAX_VALUE;
+    private void initialize(){
+        // kept from an earlier solve after reset()
+        if(tree == null){
+            tree = new byte[n];
+            parent = new int[n];
+            timestamp = new int[n];
+            dist = new int[n];
+            nextActive = new int[n];
+            currentArc = new int[n];
+            nextOrphan = new int[n];
+        }
+        Arrays.fill(tree, FREE);
+        Arrays.fill(timestamp, 0);
+        Arrays.fill(dist, 0);
+        Arrays.fill(parent, NO_PARENT);
+        Arrays.fill(nextActive, NONE);
+        Arrays.fill(nextOrphan, NONE);
+        activeHead = activeTail = NONE;
+        orphanHead = orphanTail = NONE;
+        time = 0;
 
-        while(true) {
+        // initiate
+        tree[s] = SOURCE;
+        tree[t] = SINK;
+        parent[s] = ROOT;
+        parent[t] = ROOT;
+
+        setActive(s);
+        setActive(t);
+        searched = true;
+    }
 
-            Edge collisionEdge = activeGrow();
-            if(collisionEdge != null){
-                flow = augmentPath(collisionEdge);
-            } else {
-                break;
+    @Override
+    protected void resetSolver(){
+        // the flow is gone, the next solve grows the trees from the terminals again
+        if(updatesPrepared) undoReparametrization();
+        searched = false;
+        updatesPrepared = false;
+    }
+
+    // takes what reparametrize added off the terminal arcs, infinite ones stay infinite
+    private void undoReparametrization(){
+        for(int node = 0; node < n; node++){
+            if(offset[node] == 0) continue;
+            for(int arc : new int[]{sourceArc[node], sinkArc[node]}){
+                long capacity = graph.capacity(arc);
+                if(capacity != Long.MAX_VALUE) graph.setCapacity(arc, capacity - offset[node]);
             }
+            offset[node] = 0;
+        }
+    }
 
-            if(flow == Long.MAX_VALUE) break;
-            maxFlow += flow;
 
-            adoptOrphans();
+    /**
+     * changes the capacity of an edge returned by addEdge. before the first solve this only sets
+     * the capacity, afterwards the flow and both trees are repaired in place and the next query
+     * resumes the search from the nodes around the edge
+     *
+     * if the edge carries more flow than the new capacity the surplus has to go. a node with an
+     * arc from s and an arc to t absorbs it by reparametrization: both arcs grow by the surplus,
+     * which adds the same constant to every cut and so keeps the minimum cut, and the constant is
+     * taken off the flow. a lowered terminal arc of such a node simply stays saturated, for an
+     * n-link the surplus is routed through the terminal arcs of its ends. nodes without both
+     * terminal arcs cancel the surplus along flow-carrying paths back to s or on to t
+     */
+    public void updateCapacity(int edge, long capacity){
+        if(capacity < 0) throw new IllegalArgumentException("Capacity < 0");
+        if(edge < 0 || edge >= graph.edgeCount()) throw new IllegalArgumentException("Unknown edge");
+
+        graph.compile();
+        int arc = graph.arcOf(edge);
+        if(!searched){
+            graph.setCapacity(arc, capacity);
+            return;
+        }
+        if(!updatesPrepared) prepareUpdates();
+
+        // terminal arcs carry the constant their node was reparametrized by
+        int node = reparametrizedNode(arc);
+        if(node != NONE) capacity = saturatedAdd(capacity, offset[node]);
+
+        long surplus = graph.flow(arc) - capacity;
+        if(surplus > 0 && node != NONE){
+            int other = arc == sourceArc[node] ? sinkArc[node] : sourceArc[node];
+            capacity = saturatedAdd(capacity, surplus);
+            offset[node] += surplus;
+            graph.setCapacity(other, saturatedAdd(graph.capacity(other), surplus));
+            residualChanged(other);
+            maxFlow -= surplus;
+        }else if(surplus > 0){
+            int from = graph.source(arc);
+            int to = graph.target(arc);
+            reduceFlow(arc, surplus);
+            if(from != to){
+                long deficit = surplus;
+                if(from == s) maxFlow -= surplus;
+                else deficit = drainExcess(from, surplus, to);
+                if(to != t && deficit > 0) fillDeficit(to, deficit);
+            }
         }
+        graph.setCapacity(arc, capacity);
+        residualChanged(arc);
 
+        markUnsolved();
     }
 
+    private void prepareUpdates(){
+        if(sourceArc == null){
+            sourceArc = new int[n];
+            sinkArc = new int[n];
+            offset = new long[n];
+            scanArc = new int[n];
+            path = new int[n];
+        }
+        updatesPrepared = true;
+        Arrays.fill(offset, 0);
+        Arrays.fill(sourceArc, NONE);
+        Arrays.fill(sinkArc, NONE);
+
+        for(int e = 0; e < graph.edgeCount(); e++){
+            int arc = graph.arcOf(e);
+            int from = graph.source(arc);
+            int to = graph.target(arc);
+            if(from == s && to != s && to != t && sourceArc[to] == NONE) sourceArc[to] = arc;
+            if(to == t && from != s && from != t && sinkArc[from] == NONE) sinkArc[from] = arc;
+        }
+    }
+
+    // node whose pair of terminal arcs the arc belongs to, NONE for every other arc
+    private int reparametrizedNode(int arc){
+        int from = graph.source(arc);
+        int to = graph.target(arc);
+        if(from == s && to != t && sourceArc[to] == arc && sinkArc[to] != NONE) return to;
+        if(to == t && from != s && sinkArc[from] == arc && sourceArc[from] != NONE) return from;
+        return NONE;
+    }
 
     /**
-     *  for each active node in the active set, expand and incorporate new members to the active set and the
-     *  tree. if all neighbors are discovered, active node becomes passive
-     *
-     *  if collision with another tree is detected, return the collision edge
-     *  if all members of active sets are exhausted, return null, no collision found and therefore,
-     *  no augmenting path found
+     * node receives amount more than it sends, while partner sends amount more than it receives.
+     * the excess goes to t, or back to s or to the partner along the flow, returns the deficit
+     * the partner is still left with
+     */
+    private long drainExcess(int node, long amount, int partner){
+        if(sourceArc[node] != NONE && sinkArc[node] != NONE){
+            reparametrize(node, amount);
+            graph.augment(sinkArc[node], amount);
+            residualChanged(sourceArc[node]);
+            maxFlow -= amount;
+            return amount;
+        }
+        long toPartner = cancelFlow(node, amount, true, partner);
+        maxFlow -= amount - toPartner;
+        return amount - toPartner;
+    }
+
+    // node sends amount more than it receives, take it from s or stop sending it to t
+    private void fillDeficit(int node, long amount){
+        if(sourceArc[node] != NONE && sinkArc[node] != NONE){
+            reparametrize(node, amount);
+            graph.augment(sourceArc[node], amount);
+            residualChanged(sinkArc[node]);
+        } else {
+            cancelFlow(node, amount, false, NONE);
+        }
+    }
+
+    // adds amount to both terminal arcs of node, and so to the capacity of every cut
+    private void reparametrize(int node, long amount){
+        offset[node] += amount;
+        graph.setCapacity(sourceArc[node], saturatedAdd(graph.capacity(sourceArc[node]), amount));
+        graph.setCapacity(sinkArc[node], saturatedAdd(graph.capacity(sinkArc[node]), amount));
+    }
+
+    // capacities at or near Long.MAX_VALUE stand for infinity and stay there
+    private static long saturatedAdd(long capacity, long amount){
+        return capacity > Long.MAX_VALUE - amount ? Long.MAX_VALUE : capacity + amount;
+    }
+
+    private void reduceFlow(int arc, long amount){
+        graph.augment(graph.reverse(arc), amount);
+        residualChanged(arc);
+        residualChanged(graph.reverse(arc));
+    }
+
+    /**
+     * takes amount units of flow off paths from node back to s, or from node on to t, following
+     * arcs that carry flow; a path may also end at partner, which closes a cycle of flow. a depth
+     * first search with a current arc per node finds each path, nodes that lead nowhere stay
+     * visited until the next path. returns how much was taken off paths ending at partner
      */
-    public Edge activeGrow(){
+    private long cancelFlow(int node, long amount, boolean towardsSource, int partner){
+        int end = towardsSource ? s : t;
+        long toPartner = 0;
+
+        while(amount > 0){
+            markAllNodesAsUnvisited();
+            visit(node);
+            scanArc[node] = graph.first(node);
+            int depth = 0;
+            int u = node;
+
+            while(u != end && u != partner){
+                int next = NONE;
+                for(; scanArc[u] < graph.end(u); scanArc[u]++){
+                    int arc = scanArc[u];
+                    int flowArc = towardsSource ? graph.reverse(arc) : arc;
+                    if(!visited(graph.target(arc)) && graph.flow(flowArc) > 0){
+                        next = arc;
+                        break;
+                    }
+                }
 
-        while(!activeSet.isEmpty()){
-            int active = activeSet.iterator().next();
+                if(next == NONE){
+                    if(depth == 0) throw new IllegalStateException("Flow is not conserved");
+                    u = graph.source(path[--depth]);
+                    scanArc[u]++;
+                    continue;
+                }
+                path[depth++] = next;
+                u = graph.target(next);
+                visit(u);
+                scanArc[u] = graph.first(u);
+            }
 
-            for(Edge edge : graph[active]){
-                if(nodeInTree[active] < 0 && edge.remainingCapacity() <= 0) continue;
-                else if(nodeInTree[active] > 0 && edge.residual.remainingCapacity() <= 0) continue;
+            long bottleneck = amount;
+            for(int i = 0; i < depth; i++){
+                int flowArc = towardsSource ? graph.reverse(path[i]) : path[i];
+                bottleneck = Math.min(bottleneck, graph.flow(flowArc));
+            }
+            for(int i = 0; i < depth; i++){
+                reduceFlow(towardsSource ? graph.reverse(path[i]) : path[i], bottleneck);
+            }
+            amount -= bottleneck;
+            if(u == partner) toPartner += bottleneck;
+        }
+        return toPartner;
+    }
 
-                int potentialChild = edge.to;
+    /**
+     * restores the tree invariants around an arc whose residual capacity changed. a saturated
+     * parent arc orphans its child; an arc that opened from the source tree or into the sink tree
+     * takes a free node in, or activates both ends so the collision is found
+     */
+    private void residualChanged(int arc){
+        int from = graph.source(arc);
+        int to = graph.target(arc);
+
+        if(graph.residual(arc) <= 0){
+            if(tree[to] == SOURCE && parent[to] == arc) setOrphan(to);
+            if(tree[from] == SINK && parent[from] == graph.reverse(arc)) setOrphan(from);
+            return;
+        }
 
-                if(nodeInTree[potentialChild] == 0) {
-                    nodeInTree[potentialChild] = nodeInTree[active];
-                    parent[potentialChild] = edge;
-                    activeSet.add(potentialChild);
-                    // incorporate into cut
-                    if(nodeInTree[active] == -1) minCut[potentialChild] = true;
-                }else if(nodeInTree[potentialChild] != 0 && nodeInTree[potentialChild] != nodeInTree[active]){
-                    return edge;
+        if(tree[from] == SOURCE && tree[to] == FREE){
+            attach(to, from, arc);
+        }else if(tree[to] == SINK && tree[from] == FREE){
+            attach(from, to, graph.reverse(arc));
+        }else if(tree[from] == SOURCE && tree[to] == SINK){
+            // passive nodes must not see the other tree, either end may be orphaned first
+            setActive(from);
+            setActive(to);
+        }
+    }
+
+    private void attach(int node, int parentNode, int arc){
+        tree[node] = tree[parentNode];
+        parent[node] = arc;
+        timestamp[node] = timestamp[parentNode];
+        dist[node] = dist[parentNode] + 1;
+        setActive(node);
+    }
+
+
+    /**
+     *  for each active node in the active queue, expand and incorporate new members to the active queue and the
+     *  tree. if all neighbors are discovered, active node becomes passive
+     *
+     *  if collision with another tree is detected, return the collision arc and keep the node active,
+     *  the next call resumes from that arc
+     *  if all active nodes are exhausted, return NONE, no collision found and therefore,
+     *  no augmenting path found
+     */
+    public int activeGrow(){
+
+        for(int active = peekActive(); active != NONE; active = peekActive()){
+
+            for(int arc = currentArc[active]; arc < graph.end(active); arc++){
+                if(stats != null) stats.scannedArcs++;
+                if(tree[active] == SOURCE && graph.residual(arc) <= 0) continue;
+                else if(tree[active] == SINK && graph.residual(graph.reverse(arc)) <= 0) continue;
+
+                int potentialChild = graph.target(arc);
+
+                if(tree[potentialChild] == FREE) {
+                    tree[potentialChild] = tree[active];
+                    parent[potentialChild] = arc;
+                    timestamp[potentialChild] = timestamp[active];
+                    dist[potentialChild] = dist[active] + 1;
+                    setActive(potentialChild);
+                    if(stats != null) stats.grownNodes++;
+                }else if(tree[potentialChild] != tree[active]){
+                    currentArc[active] = arc;
+                    time++;
+                    return arc;
+                }else if(timestamp[potentialChild] <= timestamp[active] && dist[potentialChild] > dist[active]){
+                    // active offers a shorter path to the root
+                    parent[potentialChild] = arc;
+                    timestamp[potentialChild] = timestamp[active];
+                    dist[potentialChild] = dist[active] + 1;
                 }
             }
-            activeSet.remove(active);
+            popActive();
+            time++;
         }
 
-        return null;
+        return NONE;
     }
 
     /**
      *  augment the path by the bottleneck value
      *
-     *  orphan nodes that are on the receiving end of a saturated edge as a result of the augmentation
+     *  orphan nodes that are on the receiving end of a saturated arc as a result of the augmentation
      */
-    public long augmentPath(Edge collisionEdge){
+    public long augmentPath(int collisionArc){
 
         // check tree and handle directionality
-        if(nodeInTree[collisionEdge.from] > 0){
-            collisionEdge = collisionEdge.residual;
+        if(tree[graph.source(collisionArc)] == SINK){
+            collisionArc = graph.reverse(collisionArc);
         }
 
+        int from = graph.source(collisionArc);
+        int to = graph.target(collisionArc);
+
         // finding the bottleneck value
-        long bottleneck = Long.MAX_VALUE;
-        for(Edge edge = parent[collisionEdge.from]; edge != null; edge = parent[edge.from]){
-            bottleneck = Math.min(bottleneck, edge.remainingCapacity());
+        long bottleneck = graph.residual(collisionArc);
+        for(int arc = parent[from]; arc >= 0; arc = parent[graph.source(arc)]){
+            bottleneck = Math.min(bottleneck, graph.residual(arc));
         }
-        for(Edge edge = parent[collisionEdge.to]; edge != null; edge = parent[edge.from]){
-            bottleneck = Math.min(bottleneck, edge.residual.remainingCapacity());
+        for(int arc = parent[to]; arc >= 0; arc = parent[graph.source(arc)]){
+            bottleneck = Math.min(bottleneck, graph.residual(graph.reverse(arc)));
         }
-        bottleneck = Math.min(bottleneck, collisionEdge.remainingCapacity());
-
-        if(bottleneck == Long.MAX_VALUE) return 0;
 
 
         // augmenting the path with the bottleneck value
-        for(Edge edge = parent[collisionEdge.from]; edge != null; edge = parent[edge.from]){
-            edge.augment(bottleneck);
+        for(int arc = parent[from]; arc >= 0; arc = parent[graph.source(arc)]){
+            graph.augment(arc, bottleneck);
 
             // orphan node
-            int orphan = edge.to;
-            if(edge.remainingCapacity() <= 0){
-                parent[orphan] = null;
-                orphans.add(orphan);
-            }
+            if(graph.residual(arc) <= 0) setOrphan(graph.target(arc));
         }
-        for(Edge edge = parent[collisionEdge.to]; edge != null; edge = parent[edge.from]){
-            edge.residual.augment(bottleneck);
+        for(int arc = parent[to]; arc >= 0; arc = parent[graph.source(arc)]){
+            graph.augment(graph.reverse(arc), bottleneck);
 
             //orphan node
-            int orphan = edge.to;
-            if(edge.residual.remainingCapacity() <= 0){
-                parent[orphan] = null;
-                orphans.add(orphan);
-            }
+            if(graph.residual(graph.reverse(arc)) <= 0) setOrphan(graph.target(arc));
         }
-        collisionEdge.augment(bottleneck);
+        graph.augment(collisionArc, bottleneck);
 
+        if(stats != null) stats.augmented(bottleneck);
         return bottleneck;
     }
 
 
     /**
-     * attempt to adopt an orphaned node to the same tree as it was in
+     * attempt to adopt an orphaned node to the same tree as it was in, preferring the candidate
+     * parent closest to the root
      *
-     * if not, mark all of its neighbors that connect to the orphan with a non-saturated node as active
+     * if not, mark all of its neighbors that connect to the orphan with a non-saturated arc as active
      * and mark the node's first layer of children as orphan and process in the next iterations
      */
     public void adoptOrphans(){
-        while(!orphans.isEmpty()){
-            int orphan = orphans.iterator().next();
-            orphans.remove(orphan);
+        for(int orphan = popOrphan(); orphan != NONE; orphan = popOrphan()){
 
-            boolean adopted = false;
+            byte side = tree[orphan];
+            int bestArc = NONE;
+            int bestDist = INFINITE_DIST;
 
             // trying to find valid parent
-            for(Edge edge : graph[orphan]){
+            for(int out = graph.first(orphan); out < graph.end(orphan); out++){
 
-                int potentialParent = edge.to;
+                int potentialParent = graph.target(out);
 
-                // stay consistent with parent edge handling
-                edge = edge.residual;
+                // stay consistent with parent arc handling
+                int arc = graph.reverse(out);
 
                 // check if parent is valid, step 1
-                if(nodeInTree[potentialParent] != nodeInTree[orphan]) continue;
-                if(nodeInTree[potentialParent] < 0 && edge.remainingCapacity() <= 0) continue;
-                else if (nodeInTree[potentialParent] > 0 && edge.residual.remainingCapacity() <= 0) continue;
+                if(tree[potentialParent] != side) continue;
+                if(side == SOURCE && graph.residual(arc) <= 0) continue;
+                else if(side == SINK && graph.residual(out) <= 0) continue;
 
                 // check if parent is valid if it's actually rooted at the desired terminal
-                if(checkSrc(potentialParent, (nodeInTree[potentialParent] == 1) ? t : s)){
-                    parent[orphan] = edge;
-                    adopted = true;
-                    break;
+                int length = distanceToRoot(potentialParent);
+                if(length < bestDist){
+                    bestArc = arc;
+                    bestDist = length;
                 }
-
             }
 
-            if(adopted) continue;
+            if(bestArc != NONE){
+                parent[orphan] = bestArc;
+                timestamp[orphan] = time;
+                dist[orphan] = bestDist + 1;
+                if(stats != null) stats.orphansAdopted++;
+                continue;
+            }
             //  ----- if no valid parent found ------->
 
             // scan neighbors in the same tree
-            for(Edge edge : graph[orphan]){
-                int neighbor = edge.to;
-
-                if(nodeInTree[neighbor] < 0)
-                    edge = edge.residual;
+            for(int out = graph.first(orphan); out < graph.end(orphan); out++){
+                int neighbor = graph.target(out);
+                if(tree[neighbor] != side) continue;
 
-                if(nodeInTree[neighbor] != 0 && nodeInTree[neighbor] == nodeInTree[orphan]){
-                    if(edge.remainingCapacity() > 0){
-                        activeSet.add(neighbor);
-                    }
+                int arc = (side == SOURCE) ? graph.reverse(out) : out;
+                if(graph.residual(arc) > 0){
+                    setActive(neighbor);
+                }
 
-                    if(parent[neighbor] != null && parent[neighbor].from == orphan){
-                        orphans.add(neighbor);
-                        parent[neighbor] = null;
-                    }
+                if(parent[neighbor] >= 0 && graph.source(parent[neighbor]) == orphan){
+                    setOrphan(neighbor);
                 }
             }
 
-            // modify minCut
-            if(nodeInTree[orphan] == -1) minCut[orphan] = false;
-            nodeInTree[orphan] = 0;
-            activeSet.remove(orphan);
+            tree[orphan] = FREE;
+            parent[orphan] = NO_PARENT;
+            if(stats != null) stats.orphansFreed++;
         }
     }
 
     /**
-     * check if a given node is rooted at the given terminal where terminal = -1, 1
+     * returns the number of arcs between node and the root of its tree, or INFINITE_DIST if the
+     * path runs into an orphan. the walk stops at the first node verified in this round, and every
+     * node on the way is stamped with the current time and its distance
      */
-    private boolean checkSrc(int node, int terminal){
-        int curr = node;
-        while(parent[curr] != null){
-//            if(curr == terminal) return true;
-            curr = parent[curr].from;
+    private int distanceToRoot(int node){
+        int length = 0;
+        int walked = 0;
+        for(int curr = node; ; ){
+            if(timestamp[curr] == time){
+                length += dist[curr];
+                break;
+            }
+            int arc = parent[curr];
+            if(arc == ROOT){
+                timestamp[curr] = time;
+                dist[curr] = 0;
+                break;
+            }
+            if(arc == ORPHAN){
+                length = INFINITE_DIST;
+                break;
+            }
+            length++;
+            walked++;
+            curr = graph.source(arc);
         }
+        if(stats != null){
+            stats.rootWalks++;
+            stats.rootWalkArcs += walked;
+        }
+        if(length == INFINITE_DIST) return INFINITE_DIST;
+
+        int remaining = length;
+        for(int curr = node; timestamp[curr] != time; curr = graph.source(parent[curr])){
+            timestamp[curr] = time;
+            dist[curr] = remaining--;
+        }
+        return length;
+    }
+
+    private void setActive(int node){
+        currentArc[node] = graph.first(node);
+        if(nextActive[node] != NONE) return;
+        if(activeTail != NONE) nextActive[activeTail] = node;
+        else activeHead = node;
+        activeTail = node;
+        nextActive[node] = node;
+    }
+
+    // returns the oldest active node that is still in a tree, dropping freed ones
+    private int peekActive(){
+        while(activeHead != NONE && tree[activeHead] == FREE) popActive();
+        return activeHead;
+    }
+
+    private void popActive(){
+        int node = activeHead;
+        activeHead = (nextActive[node] == node) ? NONE : nextActive[node];
+        if(activeHead == NONE) activeTail = NONE;
+        nextActive[node] = NONE;
+    }
+
+    private void setOrphan(int node){
+        parent[node] = ORPHAN;
+        if(nextOrphan[node] != NONE) return;
+        if(stats != null) stats.orphansCreated++;
+        if(orphanTail != NONE) nextOrphan[orphanTail] = node;
+        else orphanHead = node;
+        orphanTail = node;
+        nextOrphan[node] = node;
+    }
 
-        return curr == terminal;
+    private int popOrphan(){
+        int node = orphanHead;
+        if(node == NONE) return NONE;
+        orphanHead = (nextOrphan[node] == node) ? NONE : nextOrphan[node];
+        if(orphanHead == NONE) orphanTail = NONE;
+        nextOrphan[node] = NONE;
+        return node;
     }
 
 
@@ -0,0 +1,149 @@
+/**
+ * Dinic's algorithm: a breadth first search from the source splits the residual graph into
+ * levels, then a blocking flow is pushed along arcs that go exactly one level down, repeating
+ * until the sink can no longer be reached. Each node keeps a current-arc pointer, so an arc that
+ * was found useless is never looked at again in the same phase.
+ *
+ * <p>With capacity scaling only arcs with at least {@code delta} residual capacity are used,
+ * starting with the largest power of two below the biggest capacity and halving delta whenever the
+ * sink becomes unreachable. The level, current-arc, queue and path arrays are allocated once and
+ * reused by every phase.
+ *
+ * <p>Time Complexity: O(V^2 E), O(VE log U) with capacity scaling
+ */
+package org.example.network;
+
+import java.util.Arrays;
+
+public class DinicSolver extends NetworkFlowSolverBase {
+
+    private static final int NONE = -1;
+
+    private boolean capacityScaling;
+
+    // per phase: distance from the source, -1 if unreachable, and the next arc to try
+    private int[] level;
+    private int[] currentArc;
+
+    // BFS queue and the arcs of the path being built by the DFS
+    private int[] queue;
+    private int[] path;
+
+    /**
+     * Creates an instance of a flow network solver. Use the {@link #addEdge(int, int, long)} method
+     * to add edges to the graph.
+     *
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param s - The index of the source node, 0 <= s < n
+     * @param t - The index of the sink node, 0 <= t < n, t != s
+     */
+    public DinicSolver(int n, int s, int t) {
+        super(n, s, t);
+    }
+
+    // Only push along arcs with at least delta residual capacity, halving delta as it runs out.
+    public void setCapacityScaling(boolean capacityScaling) {
+        this.capacityScaling = capacityScaling;
+    }
+
+    @Override
+    public void solve() {
+        graph.compile();
+        // kept for the next solve after reset()
+        if (level == null) {
+            level = new int[n];
+            currentArc = new int[n];
+            queue = new int[n];
+            path = new int[n];
+        }
+
+        long delta = capacityScaling ? Long.highestOneBit(largestCapacity()) : 1;
+        for (; delta > 0; delta /= 2) {
+            while (bfs(delta)) {
+                for (int u = 0; u < n; u++) currentArc[u] = graph.first(u);
+                maxFlow += blockingFlow(delta);
+            }
+        }
+
+        // the last search ran with delta 1, its levels mark what the source still reaches
+        for (int i = 0; i < n; i++) minCut[i] = level[i] != NONE;
+    }
+
+    private long largestCapacity() {
+        long largest = 1;
+        for (int arc = 0; arc < graph.arcCount(); arc++) largest = Math.max(largest, graph.residual(arc));
+        return largest;
+    }
+
+    // Levels the nodes by their distance from the source, returns whether the sink was reached.
+    private boolean bfs(long delta) {
+        Arrays.fill(level, NONE);
+        int head = 0, tail = 0;
+        level[s] = 0;
+        queue[tail++] = s;
+
+        while (head < tail) {
+            int u = queue[head++];
+            for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                int v = graph.target(arc);
+                if (level[v] == NONE && graph.residual(arc) >= delta) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[t] != NONE;
+    }
+
+    /**
+     * Pushes flow along shortest paths until none is left in the level graph. The path is grown
+     * from the source with an explicit stack; a dead end is taken out of the level graph and the
+     * search backs up one arc, and after an augmentation it resumes from the first saturated arc.
+     */
+    private long blockingFlow(long delta) {
+        long total = 0;
+        int depth = 0;
+        int u = s;
+
+        while (true) {
+            if (u == t) {
+                long bottleneck = Long.MAX_VALUE;
+                for (int i = 0; i < depth; i++) bottleneck = Math.min(bottleneck, graph.residual(path[i]));
+
+                int firstSaturated = depth;
+                for (int i = depth - 1; i >= 0; i--) {
+                    graph.augment(path[i], bottleneck);
+                    if (graph.residual(path[i]) < delta) firstSaturated = i;
+                }
+                total += bottleneck;
+
+                depth = firstSaturated;
+                u = graph.source(path[depth]);
+                continue;
+            }
+
+            int arc = admissibleArc(u, delta);
+            if (arc != NONE) {
+                path[depth++] = arc;
+                u = graph.target(arc);
+            } else if (u == s) {
+                return total;
+            } else {
+                // nothing reaches the sink through u any more in this phase
+                level[u] = NONE;
+                u = graph.source(path[--depth]);
+                currentArc[u]++;
+            }
+        }
+    }
+
+    // Advances the current arc of u to the next arc into the following level, NONE if none is left.
+    private int admissibleArc(int u, long delta) {
+        for (; currentArc[u] < graph.end(u); currentArc[u]++) {
+            int arc = currentArc[u];
+            int v = graph.target(arc);
+            if (graph.residual(arc) >= delta && level[v] == level[u] + 1) return arc;
+        }
+        return NONE;
+    }
+}
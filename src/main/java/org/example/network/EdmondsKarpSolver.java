@@ -15,6 +15,10 @@ import java.util.*;
 
 public class EdmondsKarpSolver extends NetworkFlowSolverBase {
 
+    // arc used to reach each node, -1 if none, and the BFS queue; kept across solves
+    private int[] prev;
+    private int[] queue;
+
     /**
      * Creates an instance of a flow network solver. Use the {@link #addEdge(int, int, int)} method to
      * add edges to the graph.
@@ -30,6 +34,11 @@ public class EdmondsKarpSolver extends NetworkFlowSolverBase {
     // Run Edmonds-Karp and compute the max flow from the source to the sink node.
     @Override
     public void solve() {
+        graph.compile();
+        if (prev == null) {
+            prev = new int[n];
+            queue = new int[n];
+        }
         long flow;
         do {
             markAllNodesAsUnvisited();
@@ -41,39 +50,39 @@ public class EdmondsKarpSolver extends NetworkFlowSolverBase {
     }
 
     private long bfs() {
-        Edge[] prev = new Edge[n];
+        Arrays.fill(prev, -1);
 
-        // The queue can be optimized to use a faster queue
-        Queue<Integer> q = new ArrayDeque<>(n);
+        int head = 0, tail = 0;
         visit(s);
-        q.offer(s);
+        queue[tail++] = s;
 
         // Perform BFS from source to sink
-        while (!q.isEmpty()) {
-            int node = q.poll();
+        while (head < tail) {
+            int node = queue[head++];
             if (node == t) break;
 
-            for (Edge edge : graph[node]) {
-                long cap = edge.remainingCapacity();
-                if (cap > 0 && !visited(edge.to)) {
-                    visit(edge.to);
-                    prev[edge.to] = edge;
-                    q.offer(edge.to);
+            for (int arc = graph.first(node); arc < graph.end(node); arc++) {
+                int to = graph.target(arc);
+                long cap = graph.residual(arc);
+                if (cap > 0 && !visited(to)) {
+                    visit(to);
+                    prev[to] = arc;
+                    queue[tail++] = to;
                 }
             }
         }
 
         // Sink not reachable!
-        if (prev[t] == null) return 0;
+        if (prev[t] == -1) return 0;
 
         long bottleNeck = Long.MAX_VALUE;
 
         // Find augmented path and bottle neck
-        for (Edge edge = prev[t]; edge != null; edge = prev[edge.from])
-            bottleNeck = min(bottleNeck, edge.remainingCapacity());
+        for (int arc = prev[t]; arc != -1; arc = prev[graph.source(arc)])
+            bottleNeck = min(bottleNeck, graph.residual(arc));
 
         // Retrace augmented path and update flow values.
-        for (Edge edge = prev[t]; edge != null; edge = prev[edge.from]) edge.augment(bottleNeck);
+        for (int arc = prev[t]; arc != -1; arc = prev[graph.source(arc)]) graph.augment(arc, bottleNeck);
 
         // Return bottleneck flow
         return bottleNeck;
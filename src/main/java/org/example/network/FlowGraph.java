@@ -0,0 +1,748 @@
+package org.example.network;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Flat, primitive-array storage for a flow network.
+ *
+ * <p>Edges are first recorded in a forward-star list ({@code head}/{@code next}) where edge
+ * {@code e} owns the two arcs {@code 2e} (forward) and {@code 2e + 1} (residual). Calling
+ * {@link #compile()} turns that list into a compressed sparse row (CSR) layout: the arcs leaving
+ * node {@code u} are {@code first[u] .. first[u + 1] - 1}, in the same order they were added, and
+ * each arc knows its target, its reverse arc and its residual capacity.
+ *
+ * <p>Only residual capacities are stored. The two arcs of an edge always hold the edge's capacity
+ * between them, so the capacity of a forward arc is its residual plus that of its reverse arc and
+ * the flow is the reverse arc's residual. The residuals are kept as {@code short}, {@code int} or
+ * {@code long}, whichever is the narrowest that fits every capacity when the graph is compiled;
+ * {@link #setCapacity} widens them when a later capacity does not fit.
+ *
+ * <p>Capacities of at least {@link #INFINITE} are hard constraints, which the narrow layouts cannot
+ * hold as such. When the terminals are known, a hard arc {@code u -> v} is stored with one more than
+ * the capacity of all edges leaving {@code v} (if {@code v} is not the sink) or entering {@code u}
+ * (if {@code u} is not the source), whichever is smaller and has no hard edge itself. A cut through
+ * the arc then always costs more than moving {@code v} to the source side or {@code u} to the sink
+ * side, so no minimum cut crosses it and the max flow and min cuts are those of the graph with the
+ * hard arc. {@link #capacity} still reports such an arc as {@link Long#MAX_VALUE}. A graph with a hard
+ * arc that has no such bound keeps {@code long} residuals and the capacities as given.
+ *
+ * <p>Memory per added edge (two arcs) after {@link #compile()}:
+ *
+ * <pre>
+ *   CSR, long residuals  : 2 * (4 target + 4 reverse + 8 residual) + 4 edge index = 36 bytes
+ *   CSR, int residuals   : 2 * (4 target + 4 reverse + 4 residual) + 4 edge index = 28 bytes
+ *   CSR, short residuals : 2 * (4 target + 4 reverse + 2 residual) + 4 edge index = 24 bytes
+ *   List&lt;Edge&gt;[] layout  : 2 * (56 byte Edge object + 4 byte ArrayList slot)              = 120 bytes
+ * </pre>
+ *
+ * plus a quarter byte for the bit telling forward from reverse arcs. The Edge figure assumes a
+ * 64-bit JVM with compressed oops (12 byte header, 2 ints, 1 reference, 4 longs, padded to 8) and
+ * ignores ArrayList growth slack, so it is a lower bound. The build-time arrays are released by
+ * {@link #compile()}.
+ *
+ * <p>{@link #clear()} empties a graph for the next one on the same nodes. From then on the arrays
+ * are kept through every compile and refilled in place whenever the edge count matches, so
+ * rebuilding equally sized graphs, like the images of a batch, allocates nothing.
+ *
+ * <p>With an {@link OffHeapStorage} set, {@link #compile()} moves the CSR arrays into its segments
+ * and only the two bit sets stay on the heap. Every accessor picks the array or the segment with a
+ * branch on the layout, which is the same for the whole solve, so the solvers see no virtual calls.
+ * Segments offer no atomic add on {@code short}, so off-heap residuals are at least {@code int}.
+ */
+public final class FlowGraph {
+
+    /** Estimated bytes per added edge once the graph is compiled with long residuals. */
+    public static final int BYTES_PER_EDGE = 36;
+
+    /** Estimated bytes per added edge of the former {@code List<Edge>[]} layout. */
+    public static final int LEGACY_BYTES_PER_EDGE = 120;
+
+    /** Capacities from here up are hard constraints. */
+    public static final long INFINITE = Long.MAX_VALUE / 4;
+
+    private static final int NONE = -1;
+
+    // bytes per residual capacity, or-ed with OFF_HEAP for the layout
+    private static final int SHORT = 2;
+    private static final int INT = 4;
+    private static final int LONG = 8;
+    private static final int OFF_HEAP = 16;
+
+    private static final VarHandle RESIDUAL = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INT_RESIDUAL = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SHORT_RESIDUAL = MethodHandles.arrayElementVarHandle(short[].class);
+    private static final VarHandle SEGMENT_RESIDUAL = segmentElement(JAVA_LONG);
+    private static final VarHandle INT_SEGMENT_RESIDUAL = segmentElement(JAVA_INT);
+
+    // (segment, index) handle to the elements of a segment holding an array
+    private static VarHandle segmentElement(ValueLayout layout) {
+        return MethodHandles.insertCoordinates(layout.arrayElementVarHandle(), 1, 0L);
+    }
+
+    private final int n;
+
+    // terminals, NONE when unknown, then hard arcs are never narrowed
+    private final int source;
+    private final int sink;
+
+    // build-time forward-star list, dropped once compiled
+    private int[] head;
+    private int[] next;
+    private int[] arcTo;
+
+    // per edge; capacities move into the CSR arrays on compilation
+    private long[] edgeCapacity;
+    private long[] edgeCost;
+    private int edgeCount;
+
+    // CSR layout, valid once compiled; residuals live in the one array matching width
+    private int[] first;
+    private int[] target;
+    private int[] reverse;
+    private int width;
+    private int layout;
+    private long[] residual;
+    private int[] intResidual;
+    private short[] shortResidual;
+    private int[] edgeArc;
+
+    // bit sets over arcs: forward arcs of edges, and the hard ones among them (null when none)
+    private long[] forward;
+    private long[] hard;
+
+    // the CSR arrays once moved off the heap, residuals laid out by width
+    private OffHeapStorage storage;
+    private boolean offHeap;
+    private MemorySegment firstSegment;
+    private MemorySegment targetSegment;
+    private MemorySegment reverseSegment;
+    private MemorySegment residualSegment;
+    private MemorySegment edgeArcSegment;
+
+    private boolean compiled;
+
+    // set by clear(): compile() keeps its arrays, and its scratch arrays, for the next graph
+    private boolean retain;
+    private int[] position;
+    private int[] slot;
+    private long[] arcCapacity;
+    private long[] bound;
+    private long[] spareHard;
+
+    public FlowGraph(int n) {
+        this(n, NONE, NONE, 16);
+    }
+
+    /**
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param source - The source node, or -1 if unknown.
+     * @param sink - The sink node, or -1 if unknown.
+     */
+    public FlowGraph(int n, int source, int sink) {
+        this(n, source, sink, 16);
+    }
+
+    /**
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param source - The source node, or -1 if unknown.
+     * @param sink - The sink node, or -1 if unknown.
+     * @param expectedEdges - Initial edge capacity, the arrays grow when it is exceeded.
+     */
+    public FlowGraph(int n, int source, int sink, int expectedEdges) {
+        this.n = n;
+        this.source = source;
+        this.sink = sink;
+        int edges = Math.max(expectedEdges, 1);
+        head = new int[n];
+        Arrays.fill(head, NONE);
+        next = new int[2 * edges];
+        arcTo = new int[2 * edges];
+        edgeCapacity = new long[edges];
+    }
+
+    /**
+     * Records a directed edge and its residual twin.
+     *
+     * @return the index of the edge, in insertion order
+     */
+    public int addEdge(int from, int to, long capacity) {
+        if (compiled) throw new IllegalStateException("Graph already compiled");
+        if (edgeCount == edgeCapacity.length) grow();
+
+        int e = edgeCount++;
+        edgeCapacity[e] = capacity;
+        link(2 * e, from, to);
+        link(2 * e + 1, to, from);
+        return e;
+    }
+
+    /** Cost variant of {@link #addEdge(int, int, long)}, costs are only kept for inspection. */
+    public int addEdge(int from, int to, long capacity, long cost) {
+        int e = addEdge(from, to, capacity);
+        if (edgeCost == null) edgeCost = new long[edgeCapacity.length];
+        edgeCost[e] = cost;
+        return e;
+    }
+
+    /**
+     * Makes {@link #compile()} put the CSR arrays into segments of the storage instead of the heap.
+     * The storage has to stay open for as long as the graph is used.
+     */
+    public void setStorage(OffHeapStorage storage) {
+        if (compiled) throw new IllegalStateException("Graph already compiled");
+        this.storage = storage;
+    }
+
+    private void link(int arc, int from, int to) {
+        arcTo[arc] = to;
+        next[arc] = head[from];
+        head[from] = arc;
+    }
+
+    /**
+     * Makes room for {@code edges} more edges at once, so adding a graph of known size grows the
+     * build-time arrays at most once and not by doubling.
+     */
+    public void ensureEdgeCapacity(int edges) {
+        if (compiled) throw new IllegalStateException("Graph already compiled");
+        if (edgeCount + edges > edgeCapacity.length) grow(edgeCount + edges);
+    }
+
+    private void grow() {
+        grow(edgeCapacity.length * 2);
+    }
+
+    private void grow(int edges) {
+        edgeCapacity = Arrays.copyOf(edgeCapacity, edges);
+        if (edgeCost != null) edgeCost = Arrays.copyOf(edgeCost, edges);
+        next = Arrays.copyOf(next, 2 * edges);
+        arcTo = Arrays.copyOf(arcTo, 2 * edges);
+    }
+
+    /**
+     * Converts the edge list into the CSR layout. Arcs keep their insertion order within each
+     * node, so solvers visit neighbours exactly as they would have with per-node lists. Calling
+     * this more than once is a no-op; no edges may be added afterwards.
+     */
+    public void compile() {
+        if (compiled) return;
+        compiled = true;
+
+        int arcs = 2 * edgeCount;
+        first = reuse(first, n + 1);
+        Arrays.fill(first, 0);
+        for (int a = 0; a < arcs; a++) first[arcTo[a ^ 1] + 1]++;
+        for (int u = 0; u < n; u++) first[u + 1] += first[u];
+
+        // forward-star lists are newest first, so fill every node's slice back to front
+        int[] position = reuse(this.position, n);
+        for (int u = 0; u < n; u++) {
+            int count = 0;
+            for (int a = head[u]; a != NONE; a = next[a]) count++;
+            position[u] = first[u] + count;
+        }
+
+        int[] slot = reuse(this.slot, arcs);
+        target = reuse(target, arcs);
+        long[] arcCapacity = reuse(this.arcCapacity, arcs);
+        Arrays.fill(arcCapacity, 0);
+        forward = reuse(forward, (arcs + 63) >> 6);
+        Arrays.fill(forward, 0);
+        for (int u = 0; u < n; u++) {
+            for (int a = head[u]; a != NONE; a = next[a]) {
+                int i = --position[u];
+                slot[a] = i;
+                target[i] = arcTo[a];
+                if ((a & 1) == 0) {
+                    arcCapacity[i] = edgeCapacity[a >> 1];
+                    forward[i >> 6] |= 1L << i;
+                }
+            }
+        }
+
+        reverse = reuse(reverse, arcs);
+        edgeArc = reuse(edgeArc, edgeCount);
+        for (int a = 0; a < arcs; a++) reverse[slot[a]] = slot[a ^ 1];
+        for (int e = 0; e < edgeCount; e++) edgeArc[e] = slot[2 * e];
+
+        if (retain) {
+            this.position = position;
+            this.slot = slot;
+            this.arcCapacity = arcCapacity;
+        } else {
+            head = null;
+            next = null;
+            arcTo = null;
+            edgeCapacity = null;
+        }
+
+        store(arcCapacity);
+        if (storage != null) moveOffHeap();
+    }
+
+    private void moveOffHeap() {
+        firstSegment = copyOf(first);
+        targetSegment = copyOf(target);
+        reverseSegment = copyOf(reverse);
+        edgeArcSegment = copyOf(edgeArc);
+        first = null;
+        target = null;
+        reverse = null;
+        edgeArc = null;
+
+        // no atomic add on short segments
+        if (width == SHORT) widen(INT);
+        residualSegment = width == INT ? copyOf(intResidual) : copyOf(residual);
+        intResidual = null;
+        residual = null;
+        offHeap = true;
+        layout = width | OFF_HEAP;
+    }
+
+    // An array of the given length, the old one when arrays are retained and it has that length.
+    private int[] reuse(int[] old, int length) {
+        return retain && old != null && old.length == length ? old : new int[length];
+    }
+
+    private long[] reuse(long[] old, int length) {
+        return retain && old != null && old.length == length ? old : new long[length];
+    }
+
+    private short[] reuse(short[] old, int length) {
+        return retain && old != null && old.length == length ? old : new short[length];
+    }
+
+    private MemorySegment copyOf(int[] values) {
+        MemorySegment segment = storage.allocate(4L * values.length);
+        MemorySegment.copy(values, 0, segment, JAVA_INT, 0, values.length);
+        return segment;
+    }
+
+    private MemorySegment copyOf(long[] values) {
+        MemorySegment segment = storage.allocate(8L * values.length);
+        MemorySegment.copy(values, 0, segment, JAVA_LONG, 0, values.length);
+        return segment;
+    }
+
+    // Picks the narrowest residual layout that holds every capacity, hard arcs at their bound.
+    private void store(long[] arcCapacity) {
+        int arcs = arcCapacity.length;
+        long widest = 0;
+        boolean narrow = true;
+        if (hard != null) spareHard = hard;
+        hard = null;
+        for (int a = 0; a < arcs; a++) {
+            if (arcCapacity[a] >= INFINITE) {
+                if (hard == null) hard = emptyHardSet();
+                hard[a >> 6] |= 1L << a;
+            } else {
+                widest = Math.max(widest, arcCapacity[a]);
+            }
+        }
+        // bounds are sums of a node's capacities, only taken once these fit an int
+        narrow = widest <= Integer.MAX_VALUE;
+        if (hard != null && narrow) {
+            long[] bound = reuse(this.bound, arcs);
+            if (retain) this.bound = bound;
+            for (int a = 0; a < arcs && narrow; a++) {
+                if (!isHard(a)) continue;
+                bound[a] = hardBound(a, arcCapacity);
+                narrow = bound[a] != NONE;
+                widest = Math.max(widest, bound[a]);
+            }
+            if (narrow) {
+                for (int a = 0; a < arcs; a++) if (isHard(a)) arcCapacity[a] = bound[a];
+            }
+        }
+        if (!narrow) hard = null;
+
+        width = !narrow || widest > Integer.MAX_VALUE ? LONG : widest > Short.MAX_VALUE ? INT : SHORT;
+        layout = width;
+        switch (width) {
+            case SHORT -> {
+                shortResidual = reuse(shortResidual, arcs);
+                for (int a = 0; a < arcs; a++) shortResidual[a] = (short) arcCapacity[a];
+            }
+            case INT -> {
+                intResidual = reuse(intResidual, arcs);
+                for (int a = 0; a < arcs; a++) intResidual[a] = (int) arcCapacity[a];
+            }
+            default -> residual = arcCapacity;
+        }
+    }
+
+    /**
+     * Smallest capacity a hard arc can be stored with, one more than the total capacity out of its
+     * head or into its tail, or NONE when both ends are terminals or touch other hard arcs.
+     * capacities holds the forward arcs' capacities, null to read the stored ones.
+     */
+    private long hardBound(int arc, long[] capacities) {
+        if (source == NONE) return NONE;
+        long best = Long.MAX_VALUE;
+
+        int v = target(arc);
+        if (v != sink) {
+            long out = 0;
+            for (int a = first(v); a < end(v) && out != NONE; a++) {
+                if (!isForward(a)) continue;
+                out = isHard(a) ? NONE : out + (capacities == null ? residual(a) + residual(reverse(a)) : capacities[a]);
+            }
+            if (out != NONE) best = Math.min(best, out + 1);
+        }
+
+        int u = source(arc);
+        if (u != source) {
+            long in = 0;
+            for (int a = first(u); a < end(u) && in != NONE; a++) {
+                int r = reverse(a);
+                if (!isForward(r)) continue;
+                in = isHard(r) ? NONE : in + (capacities == null ? residual(r) + residual(a) : capacities[r]);
+            }
+            if (in != NONE) best = Math.min(best, in + 1);
+        }
+        return best == Long.MAX_VALUE ? NONE : best;
+    }
+
+    private boolean isForward(int arc) {
+        return (forward[arc >> 6] & 1L << arc) != 0;
+    }
+
+    private boolean isHard(int arc) {
+        return hard != null && (hard[arc >> 6] & 1L << arc) != 0;
+    }
+
+    private void setHard(int arc, boolean value) {
+        if (value) {
+            if (hard == null) hard = emptyHardSet();
+            hard[arc >> 6] |= 1L << arc;
+        } else if (hard != null) {
+            hard[arc >> 6] &= ~(1L << arc);
+        }
+    }
+
+    // Bit set for the first hard arc, the one of an earlier compile when arrays are retained.
+    private long[] emptyHardSet() {
+        long[] set = reuse(spareHard, forward.length);
+        Arrays.fill(set, 0);
+        return set;
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    public int nodeCount() {
+        return n;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int arcCount() {
+        return 2 * edgeCount;
+    }
+
+    /* CSR accessors, only valid after compile() */
+
+    // First arc leaving node u.
+    public int first(int u) {
+        return offHeap ? firstSegment.getAtIndex(JAVA_INT, u) : first[u];
+    }
+
+    // One past the last arc leaving node u.
+    public int end(int u) {
+        return offHeap ? firstSegment.getAtIndex(JAVA_INT, u + 1) : first[u + 1];
+    }
+
+    // Node the arc points to.
+    public int target(int arc) {
+        return offHeap ? targetSegment.getAtIndex(JAVA_INT, arc) : target[arc];
+    }
+
+    // Node the arc starts at.
+    public int source(int arc) {
+        return target(reverse(arc));
+    }
+
+    public int reverse(int arc) {
+        return offHeap ? reverseSegment.getAtIndex(JAVA_INT, arc) : reverse[arc];
+    }
+
+    public long residual(int arc) {
+        return switch (layout) {
+            case SHORT -> shortResidual[arc];
+            case INT -> intResidual[arc];
+            case LONG -> residual[arc];
+            case INT | OFF_HEAP -> residualSegment.getAtIndex(JAVA_INT, arc);
+            default -> residualSegment.getAtIndex(JAVA_LONG, arc);
+        };
+    }
+
+    // Capacity of the edge on its forward arc, 0 on the reverse arc.
+    public long capacity(int arc) {
+        if (!isForward(arc)) return 0;
+        if (isHard(arc)) return Long.MAX_VALUE;
+        return residual(arc) + residual(reverse(arc));
+    }
+
+    public long flow(int arc) {
+        return isForward(arc) ? residual(reverse(arc)) : -residual(arc);
+    }
+
+    // Bytes per residual capacity, 2, 4 or 8.
+    public int residualWidth() {
+        return width;
+    }
+
+    // Whether compile() moved the arrays into an OffHeapStorage.
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // Arc carrying the forward direction of edge e.
+    public int arcOf(int edge) {
+        return offHeap ? edgeArcSegment.getAtIndex(JAVA_INT, edge) : edgeArc[edge];
+    }
+
+    public long edgeCost(int edge) {
+        return edgeCost == null ? 0 : edgeCost[edge];
+    }
+
+    /**
+     * Changes the capacity of a forward arc and keeps the flow on it, so the residual capacity moves
+     * by the same amount. The flow has to fit the new capacity. Narrow residuals are widened when the
+     * capacity, or the bound of a hard arc next to it, no longer fits.
+     */
+    public void setCapacity(int arc, long newCapacity) {
+        if (!isForward(arc)) throw new IllegalArgumentException("Not a forward arc");
+        long flow = flow(arc);
+        if (flow > newCapacity) throw new IllegalArgumentException("Flow exceeds capacity");
+
+        if (width != LONG && newCapacity >= INFINITE) {
+            setHard(arc, true);
+            long bound = hardBound(arc, null);
+            if (bound == NONE) widen(LONG);
+            else if (!fits(bound)) widen(bound > Integer.MAX_VALUE ? LONG : INT);
+            if (width != LONG) {
+                setResidual(arc, Math.max(bound, flow) - flow);
+                // hard arcs next to it may have counted on its finite capacity
+                raiseHardBounds(arc);
+                return;
+            }
+        }
+        if (width != LONG) {
+            setHard(arc, false);
+            if (!fits(newCapacity)) widen(newCapacity > Integer.MAX_VALUE ? LONG : INT);
+        }
+        setResidual(arc, newCapacity - flow);
+        if (hard != null) raiseHardBounds(arc);
+    }
+
+    /**
+     * Sets the capacity of an edge returned by {@link #addEdge}. Before compiling this only
+     * replaces the recorded capacity, afterwards it is {@link #setCapacity} on the edge's arc.
+     */
+    public void setEdgeCapacity(int edge, long capacity) {
+        if (edge < 0 || edge >= edgeCount) throw new IllegalArgumentException("Unknown edge");
+        if (compiled) setCapacity(arcOf(edge), capacity);
+        else edgeCapacity[edge] = capacity;
+    }
+
+    /** Takes all flow off the graph, every arc gets the residual it had when compiled. */
+    public void resetFlow() {
+        if (!compiled) return;
+        for (int a = 0; a < arcCount(); a++) {
+            if (!isForward(a)) continue;
+            int back = reverse(a);
+            setResidual(a, residual(a) + residual(back));
+            setResidual(back, 0);
+        }
+    }
+
+    /**
+     * Removes every edge, so a new graph can be built on the same nodes and terminals. The arrays
+     * stay allocated and later compiles refill them instead of allocating new ones. Off the heap
+     * the segments are dropped and the next compile takes new ones from the storage.
+     */
+    public void clear() {
+        if (head == null) {
+            // released by the first compile, sized for a graph like the last one
+            int edges = Math.max(edgeCount, 1);
+            head = new int[n];
+            next = new int[2 * edges];
+            arcTo = new int[2 * edges];
+            edgeCapacity = new long[edges];
+            if (edgeCost != null) edgeCost = new long[edges];
+        }
+        Arrays.fill(head, NONE);
+        if (edgeCost != null) Arrays.fill(edgeCost, 0);
+        edgeCount = 0;
+        compiled = false;
+        retain = true;
+
+        if (offHeap) {
+            offHeap = false;
+            firstSegment = null;
+            targetSegment = null;
+            reverseSegment = null;
+            residualSegment = null;
+            edgeArcSegment = null;
+        }
+    }
+
+    // Hard arcs into the arc's tail or out of its head may have relied on its old capacity.
+    private void raiseHardBounds(int arc) {
+        for (int node : new int[] {source(arc), target(arc)}) {
+            for (int a = first(node); a < end(node) && width != LONG; a++) {
+                int h = isForward(a) ? a : reverse(a);
+                if (h == arc || !isHard(h)) continue;
+
+                long bound = hardBound(h, null);
+                long stored = residual(h) + residual(reverse(h));
+                if (bound == NONE) widen(LONG);
+                else if (bound > stored && !fits(bound)) widen(bound > Integer.MAX_VALUE ? LONG : INT);
+                if (width != LONG && bound > stored) setResidual(h, residual(h) + bound - stored);
+            }
+        }
+    }
+
+    private boolean fits(long capacity) {
+        return capacity <= (width == SHORT ? Short.MAX_VALUE : width == INT ? Integer.MAX_VALUE : Long.MAX_VALUE);
+    }
+
+    private void setResidual(int arc, long value) {
+        switch (layout) {
+            case SHORT -> shortResidual[arc] = (short) value;
+            case INT -> intResidual[arc] = (int) value;
+            case LONG -> residual[arc] = value;
+            case INT | OFF_HEAP -> residualSegment.setAtIndex(JAVA_INT, arc, (int) value);
+            default -> residualSegment.setAtIndex(JAVA_LONG, arc, value);
+        }
+    }
+
+    /**
+     * Copies the residuals into a wider layout; hard arcs become Long.MAX_VALUE when it is long.
+     * Off the heap the old segment stays allocated until the storage is closed.
+     */
+    private void widen(int newWidth) {
+        int arcs = arcCount();
+        long[] values = new long[arcs];
+        for (int a = 0; a < arcs; a++) values[a] = residual(a);
+        if (newWidth == LONG && hard != null) {
+            for (int a = 0; a < arcs; a++) {
+                if (isHard(a)) values[a] += Long.MAX_VALUE - (values[a] + values[reverse(a)]);
+            }
+            hard = null;
+        }
+
+        shortResidual = null;
+        intResidual = null;
+        residual = null;
+        width = newWidth;
+        if (width == INT) {
+            intResidual = new int[arcs];
+            for (int a = 0; a < arcs; a++) intResidual[a] = (int) values[a];
+        } else {
+            residual = values;
+        }
+        layout = width;
+
+        if (offHeap) {
+            residualSegment = width == INT ? copyOf(intResidual) : copyOf(residual);
+            intResidual = null;
+            residual = null;
+            layout = width | OFF_HEAP;
+        }
+    }
+
+    /** Pushes {@code amount} units of flow along the arc and returns it to the reverse arc. */
+    public void augment(int arc, long amount) {
+        int back = reverse(arc);
+        switch (layout) {
+            case SHORT -> {
+                shortResidual[arc] -= (short) amount;
+                shortResidual[back] += (short) amount;
+            }
+            case INT -> {
+                intResidual[arc] -= (int) amount;
+                intResidual[back] += (int) amount;
+            }
+            case LONG -> {
+                residual[arc] -= amount;
+                residual[back] += amount;
+            }
+            case INT | OFF_HEAP -> {
+                residualSegment.setAtIndex(JAVA_INT, arc, residualSegment.getAtIndex(JAVA_INT, arc) - (int) amount);
+                residualSegment.setAtIndex(JAVA_INT, back, residualSegment.getAtIndex(JAVA_INT, back) + (int) amount);
+            }
+            default -> {
+                residualSegment.setAtIndex(JAVA_LONG, arc, residualSegment.getAtIndex(JAVA_LONG, arc) - amount);
+                residualSegment.setAtIndex(JAVA_LONG, back, residualSegment.getAtIndex(JAVA_LONG, back) + amount);
+            }
+        }
+    }
+
+    /* Concurrent access, for solvers where several threads push on the same graph */
+
+    // Residual capacity as last published by any thread.
+    public long residualOpaque(int arc) {
+        return switch (layout) {
+            case SHORT -> (short) SHORT_RESIDUAL.getOpaque(shortResidual, arc);
+            case INT -> (int) INT_RESIDUAL.getOpaque(intResidual, arc);
+            case LONG -> (long) RESIDUAL.getOpaque(residual, arc);
+            case INT | OFF_HEAP -> (int) INT_SEGMENT_RESIDUAL.getOpaque(residualSegment, (long) arc);
+            default -> (long) SEGMENT_RESIDUAL.getOpaque(residualSegment, (long) arc);
+        };
+    }
+
+    /**
+     * Atomic variant of {@link #augment(int, long)}. Safe as long as only one thread at a time
+     * decreases a given arc, which holds when each node is discharged by a single owner.
+     */
+    public void augmentConcurrently(int arc, long amount) {
+        int back = reverse(arc);
+        switch (layout) {
+            case SHORT -> {
+                SHORT_RESIDUAL.getAndAdd(shortResidual, arc, (short) -amount);
+                SHORT_RESIDUAL.getAndAdd(shortResidual, back, (short) amount);
+            }
+            case INT -> {
+                INT_RESIDUAL.getAndAdd(intResidual, arc, (int) -amount);
+                INT_RESIDUAL.getAndAdd(intResidual, back, (int) amount);
+            }
+            case LONG -> {
+                RESIDUAL.getAndAdd(residual, arc, -amount);
+                RESIDUAL.getAndAdd(residual, back, amount);
+            }
+            case INT | OFF_HEAP -> {
+                INT_SEGMENT_RESIDUAL.getAndAdd(residualSegment, (long) arc, (int) -amount);
+                INT_SEGMENT_RESIDUAL.getAndAdd(residualSegment, (long) back, (int) amount);
+            }
+            default -> {
+                SEGMENT_RESIDUAL.getAndAdd(residualSegment, (long) arc, -amount);
+                SEGMENT_RESIDUAL.getAndAdd(residualSegment, (long) back, amount);
+            }
+        }
+    }
+
+    /** Estimated footprint of the compiled graph on or off the heap, see the class comment. */
+    public long memoryFootprint() {
+        int bytesPerEdge = BYTES_PER_EDGE - 2 * (LONG - (compiled ? width : LONG));
+        return (long) bytesPerEdge * edgeCount + edgeCount / 4 + 4L * (n + 1);
+    }
+
+    /** Footprint the same graph would have had as {@code List<Edge>[]}. */
+    public long legacyMemoryFootprint() {
+        // every node held an ArrayList (24 bytes) with its backing array (16 byte header)
+        return (long) LEGACY_BYTES_PER_EDGE * edgeCount + 40L * n;
+    }
+}
@@ -0,0 +1,282 @@
+package org.example.network;
+
+import java.util.Arrays;
+
+/**
+ * Incremental breadth-first search (IBFS) max-flow of Goldberg, Hed, Kaplan, Tarjan and Werneck.
+ *
+ * <p>Like {@link BoykovKolmogorovSolver} it grows a search tree from s and one from t and augments
+ * where they touch, but both trees are breadth-first: every node is labelled with its distance
+ * from its root, and the two trees take turns scanning one whole layer. An orphan only takes a
+ * parent from the layer just above it, scanning on from the arc its last parent was found on;
+ * when none is left it is relabelled under its lowest neighbour in the tree, or freed if that
+ * would put it past the tree's frontier, where scanning the frontier finds it again. Orphans are
+ * adopted in label order from one bucket per label, which keeps the trees shortest path trees
+ * and gives the O(n^2 m) bound the BK trees lack.
+ *
+ * <p>On the segmentation graphs, where every pixel has an arc from s and one to t, alternating
+ * keeps both trees about half as deep as growing only the side with the smaller layer.
+ */
+public class IbfsSolver extends NetworkFlowSolverBase {
+
+    private static final byte FREE = 0;
+    private static final byte SOURCE = 1;
+    private static final byte SINK = 2;
+
+    // parent values besides arc indices
+    private static final int ORPHAN = -2;
+    private static final int ROOT = -3;
+
+    private static final int NONE = -1;
+
+    // FREE, SOURCE or SINK
+    private byte[] tree;
+
+    // distance to the root of the node's tree
+    private int[] label;
+
+    // arc with residual capacity away from the root: from the parent for source tree nodes, to the
+    // parent for sink tree nodes
+    private int[] parent;
+
+    // arc of the node the last parent was found on, earlier arcs offer none in the same layer
+    private int[] currentArc;
+
+    // per tree, the label of the layer scanned next, its nodes, and the nodes of the layer below;
+    // only the tree being grown has a layer below its frontier
+    private final int[] depth = new int[3];
+    private byte growing;
+    private final IntList[] layer = new IntList[3];
+    private final IntList[] nextLayer = new IntList[3];
+
+    // orphans of both trees bucketed by label, nextOrphan links a bucket like an intrusive list,
+    // and the range of labels that may hold any
+    private int[] orphanBucket;
+    private int[] nextOrphan;
+    private int lowestOrphan, highestOrphan;
+
+    // BFS queue of the final cut search
+    private int[] queue;
+
+    /**
+     * Creates an instance of a flow network solver. Use the {@link #addEdge(int, int, long)} method
+     * to add edges to the graph.
+     *
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param s - The index of the source node, 0 <= s < n
+     * @param t - The index of the sink node, 0 <= t < n, t != s
+     */
+    public IbfsSolver(int n, int s, int t) {
+        super(n, s, t);
+    }
+
+    @Override
+    public void solve() {
+        graph.compile();
+
+        // kept for the next solve after reset()
+        if (tree == null) {
+            tree = new byte[n];
+            label = new int[n];
+            parent = new int[n];
+            currentArc = new int[n];
+            orphanBucket = new int[n + 2];
+            nextOrphan = new int[n];
+            queue = new int[n];
+            for (byte side : new byte[] {SOURCE, SINK}) {
+                layer[side] = new IntList();
+                nextLayer[side] = new IntList();
+            }
+        }
+        Arrays.fill(tree, FREE);
+        Arrays.fill(orphanBucket, NONE);
+        lowestOrphan = orphanBucket.length;
+        highestOrphan = NONE;
+
+        for (byte side : new byte[] {SOURCE, SINK}) {
+            int root = side == SOURCE ? s : t;
+            tree[root] = side;
+            parent[root] = ROOT;
+            depth[side] = 0;
+            layer[side].size = 0;
+            nextLayer[side].size = 0;
+            layer[side].add(root);
+        }
+
+        // a tree whose next layer comes out empty is closed, no augmenting path is left
+        for (byte side = SOURCE; grow(side); side = side == SOURCE ? SINK : SOURCE) ;
+
+        markSourceSide();
+    }
+
+    /**
+     * Scans the current layer of one tree. Free nodes behind residual arcs join the layer below,
+     * an arc into the other tree is augmented until it saturates or its node leaves the layer.
+     * Returns whether the layer below has any nodes.
+     */
+    private boolean grow(byte side) {
+        growing = side;
+        int d = depth[side];
+        IntList current = layer[side];
+
+        // relabelled orphans may join the layer while it is scanned
+        for (int i = 0; i < current.size; i++) {
+            int u = current.items[i];
+
+            for (int arc = graph.first(u); arc < graph.end(u) && tree[u] == side && label[u] == d; ) {
+                int away = side == SOURCE ? arc : graph.reverse(arc);
+                int w = graph.target(arc);
+
+                if (graph.residual(away) <= 0 || tree[w] == side) {
+                    arc++;
+                } else if (tree[w] == FREE) {
+                    tree[w] = side;
+                    label[w] = d + 1;
+                    parent[w] = away;
+                    currentArc[w] = graph.reverse(arc);
+                    nextLayer[side].add(w);
+                    arc++;
+                } else {
+                    // away leads from the source tree into the sink tree
+                    maxFlow += augment(away);
+                    adoptOrphans();
+                }
+            }
+        }
+
+        current.size = 0;
+        layer[side] = nextLayer[side];
+        nextLayer[side] = current;
+        if (layer[side].size == 0) return false;
+        depth[side]++;
+        return true;
+    }
+
+    // Pushes the bottleneck along s -> from -> to -> t and orphans the nodes below saturated arcs.
+    private long augment(int bridge) {
+        int from = graph.source(bridge);
+        int to = graph.target(bridge);
+
+        long bottleneck = graph.residual(bridge);
+        for (int v = from; parent[v] != ROOT; v = graph.source(parent[v])) {
+            bottleneck = Math.min(bottleneck, graph.residual(parent[v]));
+        }
+        for (int v = to; parent[v] != ROOT; v = graph.target(parent[v])) {
+            bottleneck = Math.min(bottleneck, graph.residual(parent[v]));
+        }
+
+        graph.augment(bridge, bottleneck);
+        for (int v = from; parent[v] != ROOT; ) {
+            int arc = parent[v];
+            graph.augment(arc, bottleneck);
+            if (graph.residual(arc) <= 0) setOrphan(v);
+            v = graph.source(arc);
+        }
+        for (int v = to; parent[v] != ROOT; ) {
+            int arc = parent[v];
+            graph.augment(arc, bottleneck);
+            if (graph.residual(arc) <= 0) setOrphan(v);
+            v = graph.target(arc);
+        }
+        return bottleneck;
+    }
+
+    // Adopts orphans lowest label first, adopting one only ever orphans nodes further down.
+    private void adoptOrphans() {
+        while (lowestOrphan <= highestOrphan) {
+            int v = orphanBucket[lowestOrphan];
+            if (v == NONE) {
+                lowestOrphan++;
+                continue;
+            }
+            orphanBucket[lowestOrphan] = nextOrphan[v];
+            adopt(v);
+        }
+        lowestOrphan = orphanBucket.length;
+        highestOrphan = NONE;
+    }
+
+    private void adopt(int v) {
+        byte side = tree[v];
+        int d = label[v];
+
+        // a parent in the layer above, the arcs before the current one have none
+        for (int arc = currentArc[v]; arc < graph.end(v); arc++) {
+            int u = graph.target(arc);
+            int towards = side == SOURCE ? graph.reverse(arc) : arc;
+            if (tree[u] == side && label[u] == d - 1 && graph.residual(towards) > 0) {
+                parent[v] = towards;
+                currentArc[v] = arc;
+                return;
+            }
+        }
+
+        // relabel under the lowest neighbour still in the tree
+        int bestArc = NONE;
+        int best = Integer.MAX_VALUE;
+        for (int arc = graph.first(v); arc < graph.end(v); arc++) {
+            int u = graph.target(arc);
+            int towards = side == SOURCE ? graph.reverse(arc) : arc;
+            if (u != v && tree[u] == side && label[u] < best && graph.residual(towards) > 0) {
+                best = label[u];
+                bestArc = arc;
+            }
+        }
+
+        // nodes past the frontier are found again when their neighbours there are scanned
+        int deepest = side == growing ? depth[side] + 1 : depth[side];
+        if (bestArc == NONE || best + 1 > deepest) {
+            tree[v] = FREE;
+        } else {
+            label[v] = best + 1;
+            parent[v] = side == SOURCE ? graph.reverse(bestArc) : bestArc;
+            currentArc[v] = bestArc;
+            if (label[v] == depth[side]) layer[side].add(v);
+            else if (label[v] == depth[side] + 1) nextLayer[side].add(v);
+        }
+
+        for (int arc = graph.first(v); arc < graph.end(v); arc++) {
+            int w = graph.target(arc);
+            int fromV = side == SOURCE ? arc : graph.reverse(arc);
+            if (tree[w] == side && parent[w] == fromV) setOrphan(w);
+        }
+    }
+
+    private void setOrphan(int v) {
+        parent[v] = ORPHAN;
+        nextOrphan[v] = orphanBucket[label[v]];
+        orphanBucket[label[v]] = v;
+        lowestOrphan = Math.min(lowestOrphan, label[v]);
+        highestOrphan = Math.max(highestOrphan, label[v]);
+    }
+
+    // The cut closest to s, the nodes s still reaches in the residual graph.
+    private void markSourceSide() {
+        int head = 0, tail = 0;
+        markAllNodesAsUnvisited();
+        visit(s);
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                int v = graph.target(arc);
+                if (!visited(v) && graph.residual(arc) > 0) {
+                    visit(v);
+                    queue[tail++] = v;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) minCut[i] = visited(i);
+    }
+
+    // Growable int array holding one layer, stale entries are skipped when scanned.
+    private static final class IntList {
+        private int[] items = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+            items[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.example.network;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Source side of a minimum cut as a bitset, one bit per node where {@code boolean[]} takes a byte.
+ *
+ * <p>Cuts are read off a solved {@link FlowGraph} by a reachability pass over its residual arcs,
+ * independent of the solver's own search state. On large graphs the pass is a level-synchronous
+ * breadth-first search whose frontier is split into chunks that run in parallel, each node claimed
+ * by an atomic OR on its word. A cut is a snapshot: it stays valid when the solver is reset or
+ * solves another graph.
+ *
+ * <p>Runs of consecutive nodes on one side are found a word at a time, which is what compositing a
+ * mask row by row wants.
+ */
+public final class MinCut {
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // graphs with fewer arcs are searched on the calling thread
+    static final int PARALLEL_ARCS = 1 << 20;
+
+    // frontier nodes one task expands
+    private static final int CHUNK = 2048;
+
+    /** Receives the runs of {@link #forEachRun}, nodes from inclusive to exclusive. */
+    @FunctionalInterface
+    public interface RunVisitor {
+        void run(int from, int to);
+    }
+
+    private final long[] words;
+    private final int size;
+
+    private MinCut(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    /** The cut with the marked nodes on the source side. */
+    public static MinCut of(boolean[] sourceSide) {
+        MinCut cut = new MinCut(sourceSide.length);
+        for (int i = 0; i < sourceSide.length; i++) if (sourceSide[i]) cut.words[i >>> 6] |= 1L << i;
+        return cut;
+    }
+
+    /**
+     * The cut of size nodes whose source side bits are words, as {@link #toLongArray} gives them:
+     * node i is bit i % 64 of word i / 64. Bits past size are ignored.
+     */
+    public static MinCut valueOf(long[] words, int size) {
+        if (size < 0 || words.length != (size + 63) >>> 6)
+            throw new IllegalArgumentException(words.length + " words for " + size + " nodes");
+        MinCut cut = new MinCut(size);
+        System.arraycopy(words, 0, cut.words, 0, words.length);
+        cut.clearPadding();
+        return cut;
+    }
+
+    /**
+     * Nodes reachable from s over arcs with residual capacity, the minimal source side once the
+     * graph carries a maximum flow. Searches in parallel when the graph is large.
+     */
+    public static MinCut reachableFromSource(FlowGraph graph, int s) {
+        return reachableFromSource(graph, s, shouldParallelize(graph));
+    }
+
+    public static MinCut reachableFromSource(FlowGraph graph, int s, boolean parallel) {
+        return reach(graph, s, -1, true, parallel);
+    }
+
+    /**
+     * Nodes that cannot reach t over arcs with residual capacity without passing s, and s itself.
+     * This is a minimum cut already when the graph only carries a maximum preflow, as after the
+     * first phase of push-relabel.
+     */
+    public static MinCut notReachingSink(FlowGraph graph, int s, int t) {
+        return notReachingSink(graph, s, t, shouldParallelize(graph));
+    }
+
+    public static MinCut notReachingSink(FlowGraph graph, int s, int t, boolean parallel) {
+        MinCut cut = reach(graph, t, s, false, parallel);
+        for (int w = 0; w < cut.words.length; w++) cut.words[w] = ~cut.words[w];
+        cut.clearPadding();
+        return cut;
+    }
+
+    private static boolean shouldParallelize(FlowGraph graph) {
+        return graph.arcCount() >= PARALLEL_ARCS && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Marks every node the root reaches, forward along arcs with residual capacity, or backwards
+     * along them when forward is false. The barrier node, if not -1, is neither marked nor passed.
+     */
+    private static MinCut reach(FlowGraph graph, int root, int barrier, boolean forward, boolean parallel) {
+        graph.compile();
+        MinCut cut = new MinCut(graph.nodeCount());
+        cut.words[root >>> 6] |= 1L << root;
+        if (barrier != -1) cut.words[barrier >>> 6] |= 1L << barrier;
+
+        if (!parallel) {
+            int[] queue = new int[graph.nodeCount()];
+            int head = 0, tail = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                    int v = graph.target(arc);
+                    if (open(graph, arc, forward) && !cut.isSourceSide(v)) {
+                        cut.words[v >>> 6] |= 1L << v;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            return cut.unmark(barrier);
+        }
+
+        int[] frontier = {root};
+        while (frontier.length > 0) {
+            int[] level = frontier;
+            int chunks = (level.length + CHUNK - 1) / CHUNK;
+            IntStream tasks = IntStream.range(0, chunks);
+            if (chunks > 1) tasks = tasks.parallel();
+            int[][] claimed = tasks
+                    .mapToObj(c -> cut.expand(graph, level, c * CHUNK, Math.min(level.length, (c + 1) * CHUNK), forward))
+                    .toArray(int[][]::new);
+
+            int total = 0;
+            for (int[] part : claimed) total += part.length;
+            frontier = new int[total];
+            total = 0;
+            for (int[] part : claimed) {
+                System.arraycopy(part, 0, frontier, total, part.length);
+                total += part.length;
+            }
+        }
+        return cut.unmark(barrier);
+    }
+
+    private MinCut unmark(int node) {
+        if (node != -1) words[node >>> 6] &= ~(1L << node);
+        return this;
+    }
+
+    // the nodes of level[from, to) reach, claimed by this call and no other
+    private int[] expand(FlowGraph graph, int[] level, int from, int to, boolean forward) {
+        int[] next = new int[16];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int u = level[i];
+            for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                int v = graph.target(arc);
+                if (!open(graph, arc, forward) || isSourceSide(v)) continue;
+                long bit = 1L << v;
+                long old = (long) WORD.getAndBitwiseOr(words, v >>> 6, bit);
+                if ((old & bit) != 0) continue;
+                if (count == next.length) next = Arrays.copyOf(next, 2 * count);
+                next[count++] = v;
+            }
+        }
+        return Arrays.copyOf(next, count);
+    }
+
+    // whether flow can still go from the arc's tail to its head, or the other way for !forward
+    private static boolean open(FlowGraph graph, int arc, boolean forward) {
+        return (forward ? graph.residual(arc) : graph.residual(graph.reverse(arc))) > 0;
+    }
+
+    private void clearPadding() {
+        if ((size & 63) != 0) words[words.length - 1] &= -1L >>> (64 - (size & 63));
+    }
+
+    // Number of nodes, on either side.
+    public int size() {
+        return size;
+    }
+
+    public boolean isSourceSide(int node) {
+        return (words[node >>> 6] & 1L << node) != 0;
+    }
+
+    // Number of nodes on the source side, the foreground pixels of a segmentation.
+    public int sourceSideCount() {
+        int count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        return count;
+    }
+
+    // First source side node at or after from, size() if there is none.
+    public int nextSourceSide(int from) {
+        if (from >= size) return size;
+        int w = from >>> 6;
+        long word = words[w] & -1L << from;
+        while (word == 0) {
+            if (++w == words.length) return size;
+            word = words[w];
+        }
+        return Math.min(size, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    // First sink side node at or after from, size() if there is none.
+    public int nextSinkSide(int from) {
+        if (from >= size) return size;
+        int w = from >>> 6;
+        long word = ~words[w] & -1L << from;
+        while (word == 0) {
+            if (++w == words.length) return size;
+            word = ~words[w];
+        }
+        return Math.min(size, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /** Calls the visitor with every maximal run of consecutive nodes on the given side, in order. */
+    public void forEachRun(boolean sourceSide, RunVisitor visitor) {
+        int from = sourceSide ? nextSourceSide(0) : nextSinkSide(0);
+        while (from < size) {
+            int to = sourceSide ? nextSinkSide(from) : nextSourceSide(from);
+            visitor.run(from, to);
+            from = sourceSide ? nextSourceSide(to) : nextSinkSide(to);
+        }
+    }
+
+    public boolean[] toBooleanArray() {
+        boolean[] sourceSide = new boolean[size];
+        forEachRun(true, (from, to) -> Arrays.fill(sourceSide, from, to, true));
+        return sourceSide;
+    }
+
+    /** A copy of the bits, see {@link #valueOf}. */
+    public long[] toLongArray() {
+        return words.clone();
+    }
+
+    // Estimated heap bytes of the bitset, against size() bytes for a boolean[].
+    public long memoryFootprint() {
+        return 16 + 8L * words.length + 16;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MinCut cut && cut.size == size && Arrays.equals(cut.words, words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return "MinCut[" + sourceSideCount() + " of " + size + " nodes on the source side]";
+    }
+}
@@ -4,6 +4,7 @@
 package org.example.network;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class NetworkFlowSolverBase {
@@ -57,7 +58,10 @@ public abstract class NetworkFlowSolverBase {
     protected long minCost;
 
     protected boolean[] minCut;
-    protected List<Edge>[] graph;
+    protected final FlowGraph graph;
+
+    // bitset cut of the last solve, extracted on first request
+    private MinCut minCutSet;
 
     // 'visited' and 'visitedToken' are variables used for graph sub-routines to
     // track whether a node has been visited or not. In particular, node 'i' was
@@ -70,6 +74,9 @@ public abstract class NetworkFlowSolverBase {
     // run the solver multiple times, because it always yields the same result.
     private boolean solved;
 
+    // Counters and phase timings, null unless instrumented. Solvers check for null before counting.
+    protected SolverStats stats;
+
     /**
      * Creates an instance of a flow network solver. Use the {@link #addEdge} method to add edges to
      * the graph.
@@ -82,43 +89,87 @@ public abstract class NetworkFlowSolverBase {
         this.n = n;
         this.s = s;
         this.t = t;
-        initializeGraph();
+        graph = new FlowGraph(n, s, t);
         minCut = new boolean[n];
         visited = new int[n];
     }
 
-    // Construct an empty graph with n nodes including the source and sink nodes.
-    @SuppressWarnings("unchecked")
-    private void initializeGraph() {
-        graph = new List[n];
-        for (int i = 0; i < n; i++) graph[i] = new ArrayList<Edge>();
-    }
-
     /**
      * Adds a directed edge (and residual edge) to the flow graph.
      *
      * @param from - The index of the node the directed edge starts at.
      * @param to - The index of the node the directed edge ends at.
      * @param capacity - The capacity of the edge.
+     * @return the index of the edge, in insertion order
      */
-    public void addEdge(int from, int to, long capacity) {
+    public int addEdge(int from, int to, long capacity) {
         if (capacity < 0) throw new IllegalArgumentException("Capacity < 0");
-        Edge e1 = new Edge(from, to, capacity);
-        Edge e2 = new Edge(to, from, 0);
-        e1.residual = e2;
-        e2.residual = e1;
-        graph[from].add(e1);
-        graph[to].add(e2);
+        return graph.addEdge(from, to, capacity);
     }
 
     /** Cost variant of {@link #addEdge(int, int, int)} for min-cost max-flow */
-    public void addEdge(int from, int to, long capacity, long cost) {
-        Edge e1 = new Edge(from, to, capacity, cost);
-        Edge e2 = new Edge(to, from, 0, -cost);
-        e1.residual = e2;
-        e2.residual = e1;
-        graph[from].add(e1);
-        graph[to].add(e2);
+    public int addEdge(int from, int to, long capacity, long cost) {
+        return graph.addEdge(from, to, capacity, cost);
+    }
+
+    /** Reserves room for that many more edges, see {@link FlowGraph#ensureEdgeCapacity}. */
+    public void ensureEdgeCapacity(int edges) {
+        graph.ensureEdgeCapacity(edges);
+    }
+
+    /**
+     * Sets the capacity of an edge returned by {@link #addEdge}, before the first solve or after
+     * {@link #reset()}.
+     */
+    public void setEdgeCapacity(int edge, long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity < 0");
+        if (solved) throw new IllegalStateException("Graph already solved, reset() it first");
+        graph.setEdgeCapacity(edge, capacity);
+    }
+
+    /**
+     * Takes all flow off the graph so it can be solved again, typically after new capacities were
+     * set with {@link #setEdgeCapacity}. The edges stay, and the graph, the solver's work arrays
+     * and the array returned by {@link #getMinCut()} are reused by the next solve.
+     */
+    public void reset() {
+        graph.resetFlow();
+        maxFlow = 0;
+        minCost = 0;
+        Arrays.fill(minCut, false);
+        minCutSet = null;
+        resetSolver();
+        solved = false;
+    }
+
+    /**
+     * Removes every edge and resets the solver, so the next graph on the same nodes can be added.
+     * Arrays are kept for it, a graph with as many edges as the last one allocates nothing.
+     */
+    public void clearEdges() {
+        graph.clear();
+        reset();
+    }
+
+    /**
+     * Turns counting and phase timing on or off, see {@link SolverStats}. Turning it on again starts
+     * from zero. Off by default, then solvers skip all of it.
+     */
+    public void setInstrumented(boolean instrumented) {
+        stats = instrumented ? new SolverStats(getClass().getSimpleName()) : null;
+    }
+
+    // Returns the counters of the solves so far, or null if the solver is not instrumented. Does not solve.
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Keeps the compiled flow graph in off-heap segments of the storage, see {@link FlowGraph}.
+     * Has to be called before solving, and the storage has to stay open while the solver is used.
+     */
+    public void setGraphStorage(OffHeapStorage storage) {
+        graph.setStorage(storage);
     }
 
     // Marks node 'i' as visited.
@@ -141,10 +192,37 @@ public abstract class NetworkFlowSolverBase {
      * Returns the graph after the solver has been executed. This allow you to inspect the {@link
      * Edge#flow} compared to the {@link Edge#capacity} in each edge. This is useful if you want to
      * figure out which edges were used during the max flow.
+     *
+     * <p>The solvers work on the flat {@link FlowGraph}, so the returned edges are a snapshot
+     * built on demand; changing them does not affect the solver.
      */
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public List<Edge>[] getGraph() {
         execute();
-        return graph;
+        List<Edge>[] edges = new List[n];
+        long[] arcCost = new long[graph.arcCount()];
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int a = graph.arcOf(e);
+            arcCost[a] = graph.edgeCost(e);
+            arcCost[graph.reverse(a)] = -graph.edgeCost(e);
+        }
+
+        Edge[] byArc = new Edge[graph.arcCount()];
+        for (int u = 0; u < n; u++) {
+            edges[u] = new ArrayList<>(graph.end(u) - graph.first(u));
+            for (int a = graph.first(u); a < graph.end(u); a++) {
+                byArc[a] = new Edge(u, graph.target(a), graph.capacity(a), arcCost[a]);
+                byArc[a].flow = graph.flow(a);
+                edges[u].add(byArc[a]);
+            }
+        }
+        for (int a = 0; a < byArc.length; a++) byArc[a].residual = byArc[graph.reverse(a)];
+        return edges;
+    }
+
+    // Estimated heap bytes held by the flow graph, see FlowGraph.
+    public long getGraphMemoryFootprint() {
+        return graph.memoryFootprint();
     }
 
     // Returns the maximum flow from the source to the sink.
@@ -168,13 +246,58 @@ public abstract class NetworkFlowSolverBase {
         return minCut;
     }
 
+    /**
+     * Returns the min-cut as a bitset, one bit per node against the byte per node of {@link
+     * #getMinCut()}. It is read off the residual graph by a reachability pass of its own, in
+     * parallel on large graphs, and unlike the array it is not reused by the next solve.
+     */
+    public MinCut getMinCutSet() {
+        execute();
+        if (minCutSet == null) minCutSet = extractMinCut();
+        return minCutSet;
+    }
+
+    // Reads the cut off the solved graph, the nodes s reaches over residual arcs by default.
+    protected MinCut extractMinCut() {
+        return MinCut.reachableFromSource(graph, s);
+    }
+
     // Wrapper method that ensures we only call solve() once
     private void execute() {
         if (solved) return;
         solved = true;
+
+        SolverStats.SolveEvent event = new SolverStats.SolveEvent();
+        // the counters add up over solves, the event reports this one's share
+        long[] before = stats != null && event.isEnabled() ? stats.solveCounters() : null;
+        event.begin();
+        long start = System.nanoTime();
         solve();
+        if (stats != null) {
+            stats.solves++;
+            stats.solveNanos += System.nanoTime() - start;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.solver = getClass().getSimpleName();
+            event.nodes = n;
+            event.arcs = graph.arcCount();
+            event.maxFlow = maxFlow;
+            if (before != null) event.setCounters(before, stats.solveCounters());
+            event.commit();
+        }
     }
 
-    // Method to implement which solves the network flow problem.
+    // Makes the next query call solve() again, for solvers whose graph can change after solving.
+    protected void markUnsolved() {
+        solved = false;
+        minCutSet = null;
+    }
+
+    // Called by reset(), solvers that keep search state between solves drop it here.
+    protected void resetSolver() {}
+
+    // Method to implement which solves the network flow problem. Implementations
+    // compile the graph into its CSR layout before touching any arcs.
     public abstract void solve();
 }
\ No newline at end of file
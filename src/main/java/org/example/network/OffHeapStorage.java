@@ -0,0 +1,89 @@
+package org.example.network;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory outside the Java heap for compiled {@link FlowGraph}s, see {@link FlowGraph#setStorage}.
+ *
+ * <p>Segments come from a shared {@link Arena}, so the threads of a parallel solver can all reach
+ * them. They are either anonymous memory or mapped from a scratch file, which lets the operating
+ * system page out a graph larger than physical memory. The garbage collector never scans them, and
+ * all of them are released together by {@link #close()}, after which the graphs compiled into this
+ * storage must not be used any more.
+ *
+ * <pre>
+ *   try (OffHeapStorage storage = OffHeapStorage.mapped(Path.of("/scratch"))) {
+ *       solver.setGraphStorage(storage);
+ *       ... add edges, solve, read the cut ...
+ *   }
+ * </pre>
+ */
+public final class OffHeapStorage implements AutoCloseable {
+
+    private final Arena arena = Arena.ofShared();
+
+    // scratch file the segments are mapped from, null for anonymous memory
+    private final FileChannel scratch;
+
+    private long allocated;
+
+    private OffHeapStorage(FileChannel scratch) {
+        this.scratch = scratch;
+    }
+
+    /** Storage in anonymous off-heap memory. */
+    public static OffHeapStorage inMemory() {
+        return new OffHeapStorage(null);
+    }
+
+    /**
+     * Storage mapped from a new scratch file in the given directory. The file grows with every
+     * allocation and is deleted on {@link #close()}.
+     */
+    public static OffHeapStorage mapped(Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "flow-graph", ".bin");
+        return new OffHeapStorage(FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /** Zeroed segment of at least the given size, aligned to 8 bytes. */
+    synchronized MemorySegment allocate(long bytes) {
+        long size = Math.max(8, (bytes + 7) & ~7L);
+        long offset = allocated;
+        allocated += size;
+        if (scratch == null) return arena.allocate(size, 8);
+        try {
+            // mapping past the end of the file extends it with zeros
+            return scratch.map(FileChannel.MapMode.READ_WRITE, offset, size, arena);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isMapped() {
+        return scratch != null;
+    }
+
+    /** Bytes handed out so far, segments dropped by a graph are only freed on close. */
+    public synchronized long allocatedBytes() {
+        return allocated;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+        if (scratch == null) return;
+        try {
+            scratch.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Region-decomposed {@link GridBoykovKolmogorovSolver} for large images, after the parallel graph
+ * cuts of Liu and Sun. The lattice is cut into square blocks that are solved concurrently, each
+ * search only looking at the arcs inside its block. Neighbouring regions are then merged two at a
+ * time, alternating between columns and rows, and every merged region is searched again on the
+ * residual capacities left by its parts, until the last search covers the whole image.
+ *
+ * <p>Flow pushed inside a block is a valid flow of the whole lattice, so no block result has to be
+ * reconciled or undone: the final search simply finds whatever augmenting paths cross the block
+ * borders, and the cut it returns is the exact minimum cut. Most of the flow is usually found in
+ * the blocks, whose working set fits in a core's cache, leaving little for the merges.
+ */
+public class ParallelGridBoykovKolmogorovSolver extends GridBoykovKolmogorovSolver {
+
+    // 128 x 128 pixels, about 700 KB of search state for a 4-connected block
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+
+    private final int threads;
+    private final int blockSize;
+
+    public ParallelGridBoykovKolmogorovSolver(int width, int height, int connectivity) {
+        this(width, height, connectivity, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param width - Width of the pixel lattice.
+     * @param height - Height of the pixel lattice.
+     * @param connectivity - 4 or 8.
+     * @param threads - The number of worker threads.
+     * @param blockSize - Side of the square blocks solved first.
+     */
+    public ParallelGridBoykovKolmogorovSolver(int width, int height, int connectivity, int threads, int blockSize) {
+        super(width, height, connectivity);
+        if (threads < 1) throw new IllegalArgumentException("Threads < 1");
+        if (blockSize < 1) throw new IllegalArgumentException("Block size < 1");
+        this.threads = threads;
+        this.blockSize = blockSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void solve() {
+        allocate();
+
+        // region borders along each axis, merging two regions drops every other border
+        int[] xs = borders(getWidth());
+        int[] ys = borders(getHeight());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "grid-cut-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flow = 0;
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (int j = 0; j + 1 < ys.length; j++) {
+                for (int i = 0; i + 1 < xs.length; i++) {
+                    int x0 = xs[i], x1 = xs[i + 1], y0 = ys[j], y1 = ys[j + 1];
+                    tasks.add(() -> solveRegion(x0, y0, x1, y1));
+                }
+            }
+            flow += runAll(pool, tasks);
+
+            while (xs.length > 2 || ys.length > 2) {
+                tasks.clear();
+                boolean columns = xs.length >= ys.length;
+                int[] merged = mergePairs(columns ? xs : ys);
+
+                for (int j = 0; j + 1 < (columns ? ys : merged).length; j++) {
+                    for (int i = 0; i + 1 < (columns ? merged : xs).length; i++) {
+                        int x0, x1, y0, y1, seamX = -1, seamY = -1;
+                        if (columns) {
+                            x0 = merged[i];
+                            x1 = merged[i + 1];
+                            y0 = ys[j];
+                            y1 = ys[j + 1];
+                            // region i joined old regions 2i and 2i + 1, unless the last was odd
+                            if (2 * i + 2 < xs.length) seamX = xs[2 * i + 1];
+                        } else {
+                            x0 = xs[i];
+                            x1 = xs[i + 1];
+                            y0 = merged[j];
+                            y1 = merged[j + 1];
+                            if (2 * j + 2 < ys.length) seamY = ys[2 * j + 1];
+                        }
+                        if (seamX < 0 && seamY < 0) continue;
+
+                        int sx = seamX, sy = seamY;
+                        tasks.add(() -> mergeRegions(x0, y0, x1, y1, sx, sy));
+                    }
+                }
+                flow += runAll(pool, tasks);
+
+                if (columns) xs = merged;
+                else ys = merged;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        finish(flow);
+    }
+
+    // Runs the tasks, on the calling thread when there is only one, and sums their flow.
+    private static long runAll(ExecutorService pool, List<Callable<Long>> tasks) {
+        long flow = 0;
+        try {
+            if (tasks.size() == 1) return tasks.get(0).call();
+            for (Future<Long> future : pool.invokeAll(tasks)) flow += future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Worker failed", e);
+        }
+        return flow;
+    }
+
+    // 0, blockSize, 2 * blockSize, ..., length
+    private int[] borders(int length) {
+        int blocks = Math.max(1, (length + blockSize - 1) / blockSize);
+        int[] borders = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) borders[b] = b * blockSize;
+        borders[blocks] = length;
+        return borders;
+    }
+
+    // Keeps every other border, joining regions 2k and 2k + 1.
+    private static int[] mergePairs(int[] borders) {
+        int regions = borders.length - 1;
+        int merged = (regions + 1) / 2;
+        int[] result = new int[merged + 1];
+        for (int r = 0; r < merged; r++) result[r] = borders[2 * r];
+        result[merged] = borders[regions];
+        return result;
+    }
+
+    /* Example */
+
+    /**
+     * Solves the same random 4-connected image with 1, 2, 4, ... threads up to the number of
+     * processors next to the single region solver.
+     */
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        GridBoykovKolmogorovSolver single = new GridBoykovKolmogorovSolver(side, side, 4);
+        fillRandom(single, side);
+        long start = System.nanoTime();
+        long flow = single.getMaxFlow();
+        double baseline = (System.nanoTime() - start) / 1e6;
+        System.out.printf("single region flow=%d time=%.1f ms%n", flow, baseline);
+
+        for (int threads = 1; ; threads = Math.min(2 * threads, maxThreads)) {
+            GridBoykovKolmogorovSolver solver =
+                    new ParallelGridBoykovKolmogorovSolver(side, side, 4, threads, DEFAULT_BLOCK_SIZE);
+            fillRandom(solver, side);
+            start = System.nanoTime();
+            flow = solver.getMaxFlow();
+            double millis = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("threads=%d flow=%d time=%.1f ms speedup=%.2f%n",
+                    threads, flow, millis, baseline / millis);
+            if (threads == maxThreads) break;
+        }
+    }
+
+    // smooth random terminal weights, so the cut has large connected regions like a real image
+    private static void fillRandom(GridBoykovKolmogorovSolver solver, int side) {
+        Random random = new Random(42);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int p = y * side + x;
+                double bias = Math.sin(x / 97.0) + Math.cos(y / 61.0);
+                long source = Math.max(0, Math.round(40 + 30 * bias) + random.nextInt(20));
+                long sink = Math.max(0, Math.round(40 - 30 * bias) + random.nextInt(20));
+                solver.addTerminalWeights(p, source, sink);
+                if (x + 1 < side) solver.addEdge(p, 0, 30, 30);
+                if (y + 1 < side) solver.addEdge(p, 1, 30, 30);
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package org.example.network;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded push-relabel in the lock-free style of Hong and He: a node is discharged by one
+ * thread at a time, which pushes to its lowest residual neighbour or relabels itself. Excesses and
+ * residual capacities are only changed with atomic adds, labels are written by the owning thread
+ * and read opaquely by the others, so no locks are taken.
+ *
+ * <p>Work proceeds in rounds. Each round starts with a global relabel, a level-synchronous
+ * breadth first search from the sink whose frontiers are expanded by all threads, and then
+ * discharges active nodes in parallel until the relabel work calls for the next global relabel or
+ * no active node is left. Converting the preflow into a flow, and the min-cut-only mode, are
+ * inherited from {@link PushRelabelSolver}.
+ *
+ * <p>The worker threads are started by the first solve and kept for the next ones, so solving
+ * again after {@link #reset()} or {@link #clearEdges()} starts no threads. {@link #close()} stops
+ * them. Workers that stay idle for ten seconds end on their own, so a solver
+ * that is dropped without being closed holds no threads for long.
+ */
+public class ParallelPushRelabelSolver extends PushRelabelSolver implements AutoCloseable {
+
+    private static final VarHandle EXCESS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle LABEL = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle ACTIVE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle COUNT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // same global relabel frequency as the sequential solver
+    private static final int ALPHA = 6;
+    private static final int BETA = 12;
+
+    // a worker hands half of its nodes to idle threads once it holds this many
+    private static final int SHARE_THRESHOLD = 256;
+
+    // frontiers smaller than this are expanded on the calling thread
+    private static final int PARALLEL_FRONTIER = 4096;
+
+    // how long an idle worker thread is kept
+    private static final int IDLE_SECONDS = 10;
+
+    private final int threads;
+    // the worker threads, started by the first solve
+    private ThreadPoolExecutor pool;
+    private boolean closed;
+
+    // 1 while a node is queued or being discharged, so it has a single owner
+    private int[] active;
+    // number of nodes on every label below n, a label running empty is a gap
+    private int[] labelCount;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong work = new AtomicLong();
+    // lowest label that ran empty this round, nodes above it are taken to be cut off
+    private final AtomicInteger gap = new AtomicInteger();
+    private volatile boolean relabelDue;
+
+    private final ConcurrentLinkedQueue<int[]> shared = new ConcurrentLinkedQueue<>();
+
+    private int[] frontier;
+    private int[] nextFrontier;
+    private final AtomicInteger nextFrontierSize = new AtomicInteger();
+
+    public ParallelPushRelabelSolver(int n, int s, int t) {
+        this(n, s, t, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param s - The index of the source node, 0 <= s < n
+     * @param t - The index of the sink node, 0 <= t < n, t != s
+     * @param threads - The number of worker threads.
+     */
+    public ParallelPushRelabelSolver(int n, int s, int t, int threads) {
+        super(n, s, t);
+        if (threads < 1) throw new IllegalArgumentException("Threads < 1");
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    void maximumPreflow() {
+        if (active == null) {
+            active = new int[n];
+            labelCount = new int[n + 1];
+            frontier = new int[n];
+            nextFrontier = new int[n];
+        }
+
+        if (closed) throw new IllegalStateException("Solver closed");
+        if (pool == null) {
+            pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "push-relabel-worker");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        do {
+            globalRelabel(pool);
+        } while (dischargeRound(pool));
+    }
+
+    /** Stops the worker threads. The solver cannot solve afterwards. */
+    @Override
+    public void close() {
+        closed = true;
+        if (pool != null) pool.shutdownNow();
+        pool = null;
+    }
+
+    /**
+     * Discharges active nodes on all threads until they run out or a global relabel is due.
+     * Returns false if there was no active node to begin with, i.e. the preflow is maximum.
+     */
+    private boolean dischargeRound(ExecutorService pool) {
+        List<IntStack> stacks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) stacks.add(new IntStack());
+
+        // counting sort by label, pushed low to high so every worker pops its highest node first
+        int[] start = new int[n + 1];
+        Arrays.fill(active, 0);
+        Arrays.fill(labelCount, 0);
+        for (int u = 0; u < n; u++) {
+            if (label[u] < n) labelCount[label[u]]++;
+            if (u == s || u == t || excess[u] <= 0 || label[u] >= n) continue;
+            active[u] = 1;
+            start[label[u] + 1]++;
+        }
+        for (int h = 0; h < n; h++) start[h + 1] += start[h];
+        int count = start[n];
+        if (count == 0) return false;
+
+        int[] order = frontier;
+        for (int u = 0; u < n; u++) if (active[u] == 1) order[start[label[u]]++] = u;
+        for (int i = 0; i < count; i++) stacks.get(i % threads).push(order[i]);
+
+        pending.set(count);
+        work.set(0);
+        relabelDue = false;
+        gap.set(n);
+        shared.clear();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (IntStack stack : stacks) {
+            workers.add(() -> {
+                work(stack);
+                return null;
+            });
+        }
+        runAll(pool, workers);
+        return true;
+    }
+
+    private void work(IntStack local) {
+        while (!relabelDue) {
+            if (local.isEmpty()) {
+                int[] batch = shared.poll();
+                if (batch != null) {
+                    for (int u : batch) local.push(u);
+                    continue;
+                }
+                if (pending.get() == 0) return;
+                Thread.onSpinWait();
+                continue;
+            }
+
+            process(local.pop(), local);
+
+            if (local.size() > SHARE_THRESHOLD) shared.add(local.split());
+        }
+    }
+
+    private void process(int u, IntStack local) {
+        while (true) {
+            discharge(u, local);
+            // an interrupted node keeps its flag, the next round starts from scratch anyway
+            if (relabelDue) return;
+
+            ACTIVE.setVolatile(active, u, 0);
+            // a push may have landed after the last look at the excess, take the node back
+            if ((long) EXCESS.getVolatile(excess, u) > 0 && label[u] < n
+                    && ACTIVE.compareAndSet(active, u, 0, 1)) continue;
+            pending.decrementAndGet();
+            return;
+        }
+    }
+
+    /**
+     * Pushes from u to its lowest residual neighbour while u stands above it, otherwise lifts u
+     * just above that neighbour. Stops once the excess is gone or u can no longer reach the sink.
+     */
+    private void discharge(int u, IntStack local) {
+        while (!relabelDue) {
+            long e = (long) EXCESS.getVolatile(excess, u);
+            int height = label[u];
+            if (e <= 0 || height >= n) return;
+            int cutoff = gap.get();
+            if (height > cutoff) {
+                lift(u, height, n);
+                return;
+            }
+
+            int lowest = Integer.MAX_VALUE;
+            int lowestArc = -1;
+            for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                if (graph.residualOpaque(arc) <= 0) continue;
+                int h = (int) LABEL.getOpaque(label, graph.target(arc));
+                if (h < lowest && h <= cutoff) {
+                    lowest = h;
+                    lowestArc = arc;
+                }
+            }
+
+            if (lowestArc == -1) {
+                lift(u, height, n);
+                return;
+            }
+
+            if (height > lowest) {
+                // only u's owner decreases these residuals and u's excess, others only add
+                long delta = Math.min(e, graph.residualOpaque(lowestArc));
+                int v = graph.target(lowestArc);
+                graph.augmentConcurrently(lowestArc, delta);
+                EXCESS.getAndAdd(excess, u, -delta);
+                EXCESS.getAndAdd(excess, v, delta);
+                activate(v, local);
+            } else {
+                lift(u, height, Math.min(lowest + 1, n));
+            }
+        }
+    }
+
+    /**
+     * Relabels u. A label running empty is a gap: as in the sequential solver nothing above it
+     * reaches the sink any more, and nodes above it are lifted to n when they are next discharged.
+     * The counts are only approximate while other threads relabel, a node lifted by mistake is
+     * brought back by the next global relabel, and the solve only ends after an exact one finds no
+     * active node.
+     */
+    private void lift(int u, int from, int to) {
+        if (to < n) COUNT.getAndAdd(labelCount, to, 1);
+        LABEL.setOpaque(label, u, to);
+        if ((int) COUNT.getAndAdd(labelCount, from, -1) == 1 && to < n) {
+            gap.accumulateAndGet(from, Math::min);
+        }
+
+        long total = work.addAndGet(BETA + graph.end(u) - graph.first(u));
+        if (total > (long) ALPHA * n + graph.arcCount() / 2) relabelDue = true;
+    }
+
+    private void activate(int v, IntStack local) {
+        if (v == s || v == t) return;
+        if (ACTIVE.compareAndSet(active, v, 0, 1)) {
+            pending.incrementAndGet();
+            local.push(v);
+        }
+    }
+
+    /**
+     * Sets every label to the residual distance to the sink, n when it cannot be reached. Large
+     * frontiers are split between the threads, nodes are claimed with a CAS on their label.
+     */
+    private void globalRelabel(ExecutorService pool) {
+        Arrays.fill(label, n);
+        label[t] = 0;
+        frontier[0] = t;
+        int size = 1;
+
+        for (int level = 1; size > 0; level++) {
+            nextFrontierSize.set(0);
+            int depth = level;
+
+            if (size < PARALLEL_FRONTIER) {
+                expand(0, size, depth);
+            } else {
+                int chunk = (size + threads - 1) / threads;
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int from = 0; from < size; from += chunk) {
+                    int start = from, end = Math.min(size, from + chunk);
+                    tasks.add(() -> {
+                        expand(start, end, depth);
+                        return null;
+                    });
+                }
+                runAll(pool, tasks);
+            }
+
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            size = nextFrontierSize.get();
+        }
+        label[s] = n;
+    }
+
+    private void expand(int from, int to, int depth) {
+        for (int i = from; i < to; i++) {
+            int v = frontier[i];
+            for (int arc = graph.first(v); arc < graph.end(v); arc++) {
+                int u = graph.target(arc);
+                if (u == s || graph.residual(graph.reverse(arc)) <= 0) continue;
+                if ((int) LABEL.getOpaque(label, u) == n && LABEL.compareAndSet(label, u, n, depth)) {
+                    nextFrontier[nextFrontierSize.getAndIncrement()] = u;
+                }
+            }
+        }
+    }
+
+    private static void runAll(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+    }
+
+    // Growable stack of node indices owned by one worker.
+    private static final class IntStack {
+        private int[] items = new int[64];
+        private int size;
+
+        void push(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Removes and returns the older half of the stack.
+        int[] split() {
+            int half = size / 2;
+            int[] taken = Arrays.copyOf(items, half);
+            System.arraycopy(items, half, items, 0, size - half);
+            size -= half;
+            return taken;
+        }
+    }
+
+    /* Example */
+
+    /**
+     * Solves the same random grid with 1, 2, 4, ... threads up to the number of processors and
+     * prints the speedup over one thread.
+     */
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long flow;
+            double millis;
+            try (ParallelPushRelabelSolver solver = randomGrid(side, threads)) {
+                long start = System.nanoTime();
+                flow = solver.getMaxFlow();
+                millis = (System.nanoTime() - start) / 1e6;
+            }
+            if (threads == 1) baseline = millis;
+
+            System.out.printf("threads=%d flow=%d time=%.1f ms speedup=%.2f%n",
+                    threads, flow, millis, baseline / millis);
+            if (threads == maxThreads) break;
+            if (threads * 2 > maxThreads) threads = maxThreads / 2;
+        }
+    }
+
+    // side x side 4-connected grid with random terminal and neighbour capacities, fixed seed
+    private static ParallelPushRelabelSolver randomGrid(int side, int threads) {
+        int pixels = side * side;
+        int s = pixels, t = pixels + 1;
+        ParallelPushRelabelSolver solver = new ParallelPushRelabelSolver(pixels + 2, s, t, threads);
+        solver.setMinCutOnly(true);
+
+        Random random = new Random(42);
+        for (int p = 0; p < pixels; p++) {
+            solver.addEdge(s, p, random.nextInt(100));
+            solver.addEdge(p, t, random.nextInt(100));
+            if (p % side + 1 < side) {
+                solver.addEdge(p, p + 1, random.nextInt(50));
+                solver.addEdge(p + 1, p, random.nextInt(50));
+            }
+            if (p + side < pixels) {
+                solver.addEdge(p, p + side, random.nextInt(50));
+                solver.addEdge(p + side, p, random.nextInt(50));
+            }
+        }
+        return solver;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.network;
+
+/**
+ * Minimum cuts of a parametric network for every integer lambda in [lambdaMin, lambdaMax], see
+ * {@link ParametricMaxFlowSolver}. The cuts are nested, so each node is described by the lambda
+ * from which on it is on the source side.
+ *
+ * @param lambdaMin - Lowest lambda solved for.
+ * @param lambdaMax - Highest lambda solved for.
+ * @param breakpoints - Ascending lambdas in (lambdaMin, lambdaMax] at which the source side grows.
+ * @param thresholds - Per node the lowest lambda at which it is on the source side, lambdaMin for
+ *     nodes that always are (Long.MIN_VALUE for the source itself), Long.MAX_VALUE for nodes that
+ *     never are.
+ */
+public record ParametricCut(long lambdaMin, long lambdaMax, long[] breakpoints, long[] thresholds) {
+
+    public int nodeCount() {
+        return thresholds.length;
+    }
+
+    public boolean isSourceSide(int node, long lambda) {
+        return thresholds[node] <= lambda;
+    }
+
+    // The minimum cut at lambda, nodes on the source side are marked as true.
+    public boolean[] getMinCut(long lambda) {
+        boolean[] cut = new boolean[thresholds.length];
+        fillMinCut(lambda, cut);
+        return cut;
+    }
+
+    // Writes the minimum cut at lambda into cut, for a slider that should not allocate.
+    public void fillMinCut(long lambda, boolean[] cut) {
+        if (lambda < lambdaMin || lambda > lambdaMax)
+            throw new IllegalArgumentException("Lambda " + lambda + " outside [" + lambdaMin + ", " + lambdaMax + "]");
+        for (int i = 0; i < thresholds.length; i++) cut[i] = thresholds[i] <= lambda;
+    }
+}
@@ -0,0 +1,324 @@
+package org.example.network;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Minimum cuts of a network whose terminal capacities depend on a parameter lambda: every edge has
+ * capacity {@code capacity + slope * lambda}, where only edges leaving the source may grow and only
+ * edges entering the sink may shrink with lambda. Then the minimal source sides are nested, they
+ * only grow with lambda (Gallo, Grigoriadis and Tarjan), and all of them fit in one
+ * {@link ParametricCut}.
+ *
+ * <p>The cuts are found by divide and conquer on lambda. Once the cuts at lo and hi are known, the
+ * nodes on the source side at lo are merged into the source and those on the sink side at hi into
+ * the sink, and only the nodes in between are solved at a split point, the lambda where the
+ * values of the two known cuts cross. When there is a single breakpoint between lo and hi the
+ * crossing is that breakpoint, so each breakpoint costs about two solves of a shrinking
+ * subproblem. The subproblems of one level of the recursion share no nodes, so one level builds
+ * every edge of the network at most once.
+ *
+ * <p>Flow is carried from a subproblem to the two it splits into. Those are the two sides of its
+ * minimum cut, so the edges between them are saturated or empty and the flow restricted to either
+ * side is still a flow of it. A subproblem is built from the residual capacities left by that flow,
+ * with an arc back along every edge that carries some, and its solver only augments what the new
+ * lambda adds. A terminal edge whose flow exceeds its capacity at the new lambda is lowered to the
+ * flow, and the excess is added to the node's edge to the other terminal: every cut pays exactly
+ * one of the two, so the minimum cuts stay the same. Each subproblem is still a fresh
+ * {@link BoykovKolmogorovSolver}, whose min cut is the minimal source side; the reuse saves
+ * augmentations, not the building of the residual graph. Capacities of at least
+ * {@link FlowGraph#INFINITE} with slope 0 are hard constraints.
+ */
+public class ParametricMaxFlowSolver {
+
+    private static final int NONE = -1;
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final int n, s, t;
+
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private long[] capacity = new long[16];
+    private long[] slope = new long[16];
+    private int edgeCount;
+
+    // edges leaving and entering each node, built by solve
+    private int[] outFirst, outEdges;
+    private int[] inFirst, inEdges;
+
+    // lowest lambda at which each node is on the source side, NEVER until known
+    private long[] threshold;
+
+    // index of each node in the subproblem being built, NONE for nodes outside it
+    private int[] local;
+
+    // flow on each edge left by the last subproblem that contained it
+    private long[] flow;
+
+    // edge behind each arc of the subproblem being built, and whether flow on the arc takes flow
+    // off the edge instead of adding to it
+    private int[] arcEdge = new int[16];
+    private boolean[] arcBack = new boolean[16];
+    private int arcCount;
+
+    /**
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param s - The index of the source node, 0 <= s < n
+     * @param t - The index of the sink node, 0 <= t < n, t != s
+     */
+    public ParametricMaxFlowSolver(int n, int s, int t) {
+        if (s == t) throw new IllegalArgumentException("Source and sink must differ");
+        this.n = n;
+        this.s = s;
+        this.t = t;
+    }
+
+    /** Adds an edge whose capacity does not depend on lambda. */
+    public int addEdge(int from, int to, long capacity) {
+        return addParametricEdge(from, to, capacity, 0);
+    }
+
+    /**
+     * Adds an edge with capacity {@code capacity + slope * lambda}. A non-zero slope is only allowed
+     * on edges leaving the source, if positive, and on edges entering the sink, if negative.
+     *
+     * @return the index of the edge, in insertion order
+     */
+    public int addParametricEdge(int from, int to, long capacity, long slope) {
+        if (from < 0 || from >= n || to < 0 || to >= n) throw new IllegalArgumentException("Node out of range");
+        if (slope == 0 && capacity < 0) throw new IllegalArgumentException("Capacity < 0");
+        if (slope > 0 && from != s)
+            throw new IllegalArgumentException("Only edges leaving the source may grow with lambda");
+        if (slope < 0 && to != t)
+            throw new IllegalArgumentException("Only edges entering the sink may shrink with lambda");
+
+        if (edgeCount == this.from.length) {
+            int edges = 2 * edgeCount;
+            this.from = Arrays.copyOf(this.from, edges);
+            this.to = Arrays.copyOf(this.to, edges);
+            this.capacity = Arrays.copyOf(this.capacity, edges);
+            this.slope = Arrays.copyOf(this.slope, edges);
+        }
+        int e = edgeCount++;
+        this.from[e] = from;
+        this.to[e] = to;
+        this.capacity[e] = capacity;
+        this.slope[e] = slope;
+        return e;
+    }
+
+    // Capacity of edge e at lambda.
+    private long capacityAt(int e, long lambda) {
+        if (slope[e] == 0) return capacity[e] >= FlowGraph.INFINITE ? Long.MAX_VALUE : capacity[e];
+        return Math.addExact(capacity[e], Math.multiplyExact(slope[e], lambda));
+    }
+
+    /** One subproblem: nodes that are on the sink side at lo and on the source side at hi. */
+    private record Interval(long lo, long hi, int[] nodes) {}
+
+    /**
+     * Finds the minimum cuts for every integer lambda in [lambdaMin, lambdaMax].
+     *
+     * @throws IllegalArgumentException if a capacity is negative somewhere in the range
+     * @throws ArithmeticException if a capacity overflows a long in the range
+     */
+    public ParametricCut solve(long lambdaMin, long lambdaMax) {
+        if (lambdaMin > lambdaMax) throw new IllegalArgumentException("lambdaMin > lambdaMax");
+        Math.subtractExact(lambdaMax, lambdaMin);
+        for (int e = 0; e < edgeCount; e++) {
+            // capacities are linear in lambda, so the ends of the range decide
+            if (slope[e] != 0 && (capacityAt(e, lambdaMin) < 0 || capacityAt(e, lambdaMax) < 0))
+                throw new IllegalArgumentException("Capacity of edge " + e + " < 0 in [" + lambdaMin + ", " + lambdaMax + "]");
+        }
+
+        buildAdjacency();
+        threshold = new long[n];
+        Arrays.fill(threshold, NEVER);
+        threshold[s] = Long.MIN_VALUE;
+        local = new int[n];
+        Arrays.fill(local, NONE);
+        flow = new long[edgeCount];
+
+        int[] inner = new int[n - 2];
+        for (int v = 0, i = 0; v < n; v++) if (v != s && v != t) inner[i++] = v;
+
+        // the whole graph at lambdaMin, then the rest of it at lambdaMax
+        boolean[] side = cutBetween(inner, lambdaMin, lambdaMin);
+        int[][] split = split(inner, side);
+        for (int v : split[0]) threshold[v] = lambdaMin;
+
+        ArrayDeque<Interval> pending = new ArrayDeque<>();
+        if (split[1].length > 0 && lambdaMin < lambdaMax) {
+            int[] rest = split[1];
+            int[] joined = split(rest, cutBetween(rest, lambdaMin, lambdaMax))[0];
+            if (joined.length > 0) pending.push(new Interval(lambdaMin, lambdaMax, joined));
+        }
+
+        // depth first and the lower half first, so the nodes on the source side at lo always have
+        // their threshold when an interval is solved
+        while (!pending.isEmpty()) {
+            Interval interval = pending.pop();
+            long lo = interval.lo(), hi = interval.hi();
+            if (hi - lo == 1) {
+                for (int v : interval.nodes()) threshold[v] = hi;
+                continue;
+            }
+            long mid = splitPoint(interval);
+            int[][] halves = split(interval.nodes(), cutBetween(interval.nodes(), lo, mid));
+            if (halves[1].length > 0) pending.push(new Interval(mid, hi, halves[1]));
+            if (halves[0].length > 0) pending.push(new Interval(lo, mid, halves[0]));
+        }
+
+        long[] breakpoints = Arrays.stream(threshold)
+                .filter(lambda -> lambda > lambdaMin && lambda != NEVER)
+                .sorted().distinct().toArray();
+        ParametricCut cut = new ParametricCut(lambdaMin, lambdaMax, breakpoints, threshold);
+        threshold = null;
+        local = null;
+        flow = null;
+        return cut;
+    }
+
+    private void buildAdjacency() {
+        outFirst = new int[n + 1];
+        inFirst = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            outFirst[from[e] + 1]++;
+            inFirst[to[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            outFirst[v + 1] += outFirst[v];
+            inFirst[v + 1] += inFirst[v];
+        }
+        outEdges = new int[edgeCount];
+        inEdges = new int[edgeCount];
+        int[] outNext = Arrays.copyOf(outFirst, n);
+        int[] inNext = Arrays.copyOf(inFirst, n);
+        for (int e = 0; e < edgeCount; e++) {
+            outEdges[outNext[from[e]]++] = e;
+            inEdges[inNext[to[e]]++] = e;
+        }
+    }
+
+    // Whether a node outside the subproblem is on the source side at lo.
+    private boolean sourceSide(int v, long lo) {
+        return threshold[v] <= lo;
+    }
+
+    /**
+     * Solves the nodes at lambda with everything on the source side at lo merged into the source
+     * and every other node outside them merged into the sink, starting from the flow left on their
+     * edges. Returns their side and leaves the new flow on the edges.
+     */
+    private boolean[] cutBetween(int[] nodes, long lo, long lambda) {
+        int k = nodes.length;
+        for (int i = 0; i < k; i++) local[nodes[i]] = i;
+
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(k + 2, k, k + 1);
+        arcCount = 0;
+        for (int i = 0; i < k; i++) {
+            int u = nodes[i];
+            for (int j = outFirst[u]; j < outFirst[u + 1]; j++) {
+                int e = outEdges[j];
+                int v = to[e];
+                if (local[v] != NONE) {
+                    addArc(solver, i, local[v], residualAt(e, lambda), e, false);
+                    addArc(solver, local[v], i, flow[e], e, true);
+                } else if (!sourceSide(v, lo)) {
+                    long residual = residualAt(e, lambda);
+                    addArc(solver, i, k + 1, Math.max(residual, 0), e, false);
+                    // the excess goes on the edge from the source too
+                    if (residual < 0) addArc(solver, k, i, -residual, e, true);
+                }
+                // edges back into the source side never cross the cut and carry no flow
+            }
+            for (int j = inFirst[u]; j < inFirst[u + 1]; j++) {
+                int e = inEdges[j];
+                int w = from[e];
+                if (local[w] != NONE || !sourceSide(w, lo)) continue;
+                long residual = residualAt(e, lambda);
+                addArc(solver, k, i, Math.max(residual, 0), e, false);
+                if (residual < 0) addArc(solver, i, k + 1, -residual, e, true);
+            }
+        }
+        boolean[] side = solver.getMinCut();
+
+        // flow sent back along an edge, or on the excess arc of a terminal edge, takes that much
+        // off the edge: the path through the excess arc and the edge is flow the lowered edge
+        // could not carry anyway
+        FlowGraph graph = solver.graph;
+        for (int a = 0; a < arcCount; a++) {
+            long f = graph.flow(graph.arcOf(a));
+            flow[arcEdge[a]] += arcBack[a] ? -f : f;
+        }
+
+        for (int u : nodes) local[u] = NONE;
+        return side;
+    }
+
+    // Capacity of edge e at lambda less its flow, negative if the flow no longer fits.
+    private long residualAt(int e, long lambda) {
+        long capacity = capacityAt(e, lambda);
+        return capacity == Long.MAX_VALUE ? capacity : capacity - flow[e];
+    }
+
+    private void addArc(BoykovKolmogorovSolver solver, int from, int to, long capacity, int edge, boolean back) {
+        if (capacity == 0) return;
+        if (arcCount == arcEdge.length) {
+            arcEdge = Arrays.copyOf(arcEdge, 2 * arcCount);
+            arcBack = Arrays.copyOf(arcBack, 2 * arcCount);
+        }
+        arcEdge[arcCount] = edge;
+        arcBack[arcCount++] = back;
+        solver.addEdge(from, to, capacity);
+    }
+
+    /**
+     * Lambda at which the cut with all nodes of the interval on the sink side and the one with all
+     * of them on the source side cost the same, kept strictly inside the interval. Both costs are
+     * lines in lambda; the midpoint is used when a hard edge makes one of them infinite.
+     */
+    private long splitPoint(Interval interval) {
+        long lo = interval.lo(), hi = interval.hi();
+        long middle = lo + (hi - lo) / 2;
+        for (int u : interval.nodes()) local[u] = 0;
+
+        double lowConstant = 0, lowSlope = 0, highConstant = 0, highSlope = 0;
+        boolean hard = false;
+        for (int u : interval.nodes()) {
+            for (int j = inFirst[u]; j < inFirst[u + 1]; j++) {
+                int e = inEdges[j];
+                if (local[from[e]] != NONE || !sourceSide(from[e], lo)) continue;
+                hard |= slope[e] == 0 && capacity[e] >= FlowGraph.INFINITE;
+                lowConstant += capacity[e];
+                lowSlope += slope[e];
+            }
+            for (int j = outFirst[u]; j < outFirst[u + 1]; j++) {
+                int e = outEdges[j];
+                if (local[to[e]] != NONE || sourceSide(to[e], lo)) continue;
+                hard |= slope[e] == 0 && capacity[e] >= FlowGraph.INFINITE;
+                highConstant += capacity[e];
+                highSlope += slope[e];
+            }
+        }
+        for (int u : interval.nodes()) local[u] = NONE;
+
+        if (hard || lowSlope <= highSlope) return middle;
+        double crossing = (highConstant - lowConstant) / (lowSlope - highSlope);
+        if (!(crossing > lo && crossing < hi)) return middle;
+        return Math.max(lo + 1, Math.min(hi - 1, (long) Math.floor(crossing)));
+    }
+
+    // The nodes on the source side and those on the sink side.
+    private static int[][] split(int[] nodes, boolean[] side) {
+        int count = 0;
+        for (int i = 0; i < nodes.length; i++) if (side[i]) count++;
+        int[] source = new int[count];
+        int[] sink = new int[nodes.length - count];
+        for (int i = 0, a = 0, b = 0; i < nodes.length; i++) {
+            if (side[i]) source[a++] = nodes[i];
+            else sink[b++] = nodes[i];
+        }
+        return new int[][] {source, sink};
+    }
+}
@@ -0,0 +1,419 @@
+package org.example.network;
+
+import java.util.Arrays;
+
+/**
+ * Goldberg-Tarjan push-relabel max-flow with the usual practical heuristics: periodic global
+ * relabeling by a reverse breadth first search from the sink, and the gap heuristic. Active nodes
+ * are selected either in FIFO order or highest label first.
+ *
+ * <p>The algorithm runs in two phases. The first computes a maximum preflow, which already fixes
+ * the max flow value and a minimum cut: the nodes that can no longer reach the sink. The second
+ * returns the remaining excess to the source so that every arc holds a valid flow. Segmentation
+ * only needs the cut, so {@link #setMinCutOnly(boolean)} skips the second phase.
+ *
+ * <p>Time Complexity: O(V^2 sqrt(E)) with highest label selection, O(V^3) with FIFO
+ */
+public class PushRelabelSolver extends NetworkFlowSolverBase {
+
+    public enum Selection {
+        FIFO,
+        HIGHEST_LABEL
+    }
+
+    private static final int NONE = -1;
+
+    // global relabel once the relabel work exceeds ALPHA * n + m, per Cherkassky and Goldberg
+    private static final int ALPHA = 6;
+    private static final int BETA = 12;
+
+    private final Selection selection;
+    private boolean minCutOnly;
+
+    // shared with ParallelPushRelabelSolver, which updates them through VarHandles
+    long[] excess;
+    int[] label;
+    private int[] currentArc;
+
+    // scratch queue for the breadth first searches
+    private int[] bfs;
+
+    // every node with label d < n, doubly linked, used by the gap heuristic
+    private int[] labelHead;
+    private int[] labelNext;
+    private int[] labelPrev;
+    private int maxLabel;
+
+    // highest label selection: active nodes bucketed by label
+    private int[] activeHead;
+    private int[] activeNext;
+    private int maxActive;
+
+    // FIFO selection: ring buffer of active nodes
+    private int[] queue;
+    private boolean[] queued;
+    private int queueHead, queueSize;
+
+    // phase two: FIFO of nodes returning excess to the source
+    private int[] fifo;
+    private boolean[] inFifo;
+
+    private long work;
+
+    public PushRelabelSolver(int n, int s, int t) {
+        this(n, s, t, Selection.HIGHEST_LABEL);
+    }
+
+    /**
+     * @param n - The number of nodes in the graph including source and sink nodes.
+     * @param s - The index of the source node, 0 <= s < n
+     * @param t - The index of the sink node, 0 <= t < n, t != s
+     * @param selection - The order in which active nodes are discharged.
+     */
+    public PushRelabelSolver(int n, int s, int t, Selection selection) {
+        super(n, s, t);
+        this.selection = selection;
+    }
+
+    /**
+     * When set, only the first phase runs. The max flow value and the min cut are exact, but the
+     * cut is the one closest to the sink (every node that cannot reach t is on the source side)
+     * and the flows reported by {@link #getGraph()} form a preflow, not a flow.
+     */
+    public void setMinCutOnly(boolean minCutOnly) {
+        this.minCutOnly = minCutOnly;
+    }
+
+    @Override
+    public void solve() {
+        graph.compile();
+
+        // kept for the next solve after reset()
+        if (excess == null) {
+            excess = new long[n];
+            label = new int[n];
+            currentArc = new int[n];
+            bfs = new int[n];
+            labelHead = new int[n];
+            labelNext = new int[n];
+            labelPrev = new int[n];
+            if (selection == Selection.HIGHEST_LABEL) {
+                activeHead = new int[n];
+                activeNext = new int[n];
+            } else {
+                queue = new int[n];
+                queued = new boolean[n];
+            }
+        }
+        Arrays.fill(excess, 0);
+
+        saturateSourceArcs();
+        maximumPreflow();
+
+        // excess[t] only holds what this run pushed, the graph may carry flow from an earlier run
+        maxFlow += excess[t];
+
+        if (minCutOnly) {
+            globalRelabel();
+            for (int i = 0; i < n; i++) minCut[i] = label[i] >= n;
+        } else {
+            returnExcessToSource();
+            markAllNodesAsUnvisited();
+            markReachableFromSource();
+            for (int i = 0; i < n; i++) minCut[i] = visited(i);
+        }
+    }
+
+    // a maximum preflow still has excess on the source side of the cut, only t's side is exact
+    @Override
+    protected MinCut extractMinCut() {
+        return minCutOnly ? MinCut.notReachingSink(graph, s, t) : super.extractMinCut();
+    }
+
+    /**
+     * Pushes as much as every arc out of the source can take, capped by what the receiving node
+     * could forward, so that infinite capacities do not overflow the excess.
+     */
+    private void saturateSourceArcs() {
+        for (int arc = graph.first(s); arc < graph.end(s); arc++) {
+            int v = graph.target(arc);
+            if (v == s || graph.residual(arc) <= 0) continue;
+            if (v == t) {
+                excess[t] += graph.residual(arc);
+                graph.augment(arc, graph.residual(arc));
+                continue;
+            }
+
+            long forward = 0;
+            for (int out = graph.first(v); out < graph.end(v); out++) {
+                if (graph.target(out) != s) forward = Math.min(forward + Math.min(graph.residual(out), INF), INF);
+            }
+            long delta = Math.min(graph.residual(arc), Math.max(forward - excess[v], 0));
+            if (delta == 0) continue;
+
+            graph.augment(arc, delta);
+            excess[v] += delta;
+        }
+    }
+
+    /* Phase one */
+
+    /**
+     * Discharges active nodes until every node with excess has a label of at least n, i.e. the
+     * preflow is maximum and excess[t] is the max flow.
+     */
+    void maximumPreflow() {
+        globalRelabel();
+        discharge();
+    }
+
+    private void discharge() {
+        work = 0;
+        for (int u = nextActive(); u != NONE; u = nextActive()) {
+            discharge(u);
+            if (work > (long) ALPHA * n + graph.arcCount() / 2) globalRelabel();
+        }
+    }
+
+    private void discharge(int u) {
+        while (excess[u] > 0) {
+            if (currentArc[u] == graph.end(u)) {
+                relabel(u);
+                if (label[u] >= n) return;
+                continue;
+            }
+
+            int arc = currentArc[u];
+            int v = graph.target(arc);
+            if (graph.residual(arc) > 0 && label[u] == label[v] + 1) {
+                long delta = Math.min(excess[u], graph.residual(arc));
+                graph.augment(arc, delta);
+                excess[u] -= delta;
+                boolean wasActive = excess[v] > 0;
+                excess[v] += delta;
+                if (!wasActive && v != t && v != s) activate(v);
+            } else {
+                currentArc[u]++;
+            }
+        }
+    }
+
+    /**
+     * Lifts u just above its lowest residual neighbour. If u was the last node on its label, no
+     * node above that label can reach the sink any more, and they are all lifted to n at once.
+     */
+    private void relabel(int u) {
+        int old = label[u];
+        unlinkLabel(u);
+        work += BETA + graph.end(u) - graph.first(u);
+
+        if (labelHead[old] == NONE) {
+            gap(old);
+            label[u] = n;
+            return;
+        }
+
+        int lowest = n;
+        for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+            if (graph.residual(arc) > 0) lowest = Math.min(lowest, label[graph.target(arc)] + 1);
+        }
+        label[u] = lowest;
+        currentArc[u] = graph.first(u);
+        if (lowest < n) linkLabel(u);
+    }
+
+    private void gap(int emptyLabel) {
+        for (int d = emptyLabel + 1; d <= maxLabel; d++) {
+            for (int v = labelHead[d]; v != NONE; v = labelNext[v]) label[v] = n;
+            labelHead[d] = NONE;
+            if (activeHead != null) activeHead[d] = NONE;
+        }
+        maxLabel = emptyLabel - 1;
+        if (activeHead != null) maxActive = Math.min(maxActive, maxLabel);
+    }
+
+    /**
+     * Sets every label to the exact residual distance to the sink, nodes that cannot reach it get
+     * label n, and rebuilds the label and active structures.
+     */
+    private void globalRelabel() {
+        work = 0;
+        Arrays.fill(label, n);
+        Arrays.fill(labelHead, NONE);
+        maxLabel = 0;
+        resetActive();
+
+        int head = 0, tail = 0;
+        label[t] = 0;
+        bfs[tail++] = t;
+        while (head < tail) {
+            int v = bfs[head++];
+            for (int arc = graph.first(v); arc < graph.end(v); arc++) {
+                int u = graph.target(arc);
+                if (label[u] == n && u != s && graph.residual(graph.reverse(arc)) > 0) {
+                    label[u] = label[v] + 1;
+                    bfs[tail++] = u;
+                }
+            }
+        }
+
+        for (int u = 0; u < n; u++) {
+            currentArc[u] = graph.first(u);
+            if (label[u] >= n || u == t) continue;
+            linkLabel(u);
+            if (excess[u] > 0 && u != s) activate(u);
+        }
+        label[s] = n;
+    }
+
+    private void linkLabel(int u) {
+        int d = label[u];
+        labelPrev[u] = NONE;
+        labelNext[u] = labelHead[d];
+        if (labelHead[d] != NONE) labelPrev[labelHead[d]] = u;
+        labelHead[d] = u;
+        maxLabel = Math.max(maxLabel, d);
+    }
+
+    private void unlinkLabel(int u) {
+        if (labelPrev[u] != NONE) labelNext[labelPrev[u]] = labelNext[u];
+        else labelHead[label[u]] = labelNext[u];
+        if (labelNext[u] != NONE) labelPrev[labelNext[u]] = labelPrev[u];
+    }
+
+    private void resetActive() {
+        if (selection == Selection.HIGHEST_LABEL) {
+            Arrays.fill(activeHead, NONE);
+            maxActive = NONE;
+        } else {
+            Arrays.fill(queued, false);
+            queueHead = queueSize = 0;
+        }
+    }
+
+    private void activate(int u) {
+        if (label[u] >= n) return;
+        if (selection == Selection.HIGHEST_LABEL) {
+            activeNext[u] = activeHead[label[u]];
+            activeHead[label[u]] = u;
+            maxActive = Math.max(maxActive, label[u]);
+        } else if (!queued[u]) {
+            queued[u] = true;
+            queue[(queueHead + queueSize++) % n] = u;
+        }
+    }
+
+    // Returns the next active node below label n, or NONE when the preflow is maximum.
+    private int nextActive() {
+        if (selection == Selection.HIGHEST_LABEL) {
+            while (maxActive >= 0) {
+                int u = activeHead[maxActive];
+                if (u == NONE) {
+                    maxActive--;
+                    continue;
+                }
+                activeHead[maxActive] = activeNext[u];
+                if (excess[u] > 0 && label[u] < n) return u;
+            }
+            return NONE;
+        }
+
+        while (queueSize > 0) {
+            int u = queue[queueHead];
+            queueHead = (queueHead + 1) % n;
+            queueSize--;
+            queued[u] = false;
+            if (excess[u] > 0 && label[u] < n) return u;
+        }
+        return NONE;
+    }
+
+    /* Phase two */
+
+    /**
+     * Turns the maximum preflow into a maximum flow. Every node still holding excess can reach
+     * the source in the residual graph, so a plain FIFO push-relabel towards s drains them.
+     */
+    private void returnExcessToSource() {
+        if (fifo == null) {
+            fifo = new int[n];
+            inFifo = new boolean[n];
+        }
+        Arrays.fill(inFifo, false);
+        int head = 0, size = 0;
+
+        // labels become residual distances to the source
+        Arrays.fill(label, 2 * n);
+        int bfsHead = 0, bfsTail = 0;
+        label[s] = 0;
+        bfs[bfsTail++] = s;
+        while (bfsHead < bfsTail) {
+            int v = bfs[bfsHead++];
+            for (int arc = graph.first(v); arc < graph.end(v); arc++) {
+                int u = graph.target(arc);
+                if (label[u] == 2 * n && graph.residual(graph.reverse(arc)) > 0) {
+                    label[u] = label[v] + 1;
+                    bfs[bfsTail++] = u;
+                }
+            }
+        }
+
+        for (int u = 0; u < n; u++) {
+            currentArc[u] = graph.first(u);
+            if (excess[u] > 0 && u != s && u != t) {
+                inFifo[u] = true;
+                fifo[(head + size++) % n] = u;
+            }
+        }
+
+        while (size > 0) {
+            int u = fifo[head];
+            head = (head + 1) % n;
+            size--;
+            inFifo[u] = false;
+
+            while (excess[u] > 0) {
+                if (currentArc[u] == graph.end(u)) {
+                    int lowest = Integer.MAX_VALUE;
+                    for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                        if (graph.residual(arc) > 0) lowest = Math.min(lowest, label[graph.target(arc)] + 1);
+                    }
+                    label[u] = lowest;
+                    currentArc[u] = graph.first(u);
+                    continue;
+                }
+
+                int arc = currentArc[u];
+                int v = graph.target(arc);
+                if (graph.residual(arc) > 0 && label[u] == label[v] + 1) {
+                    long delta = Math.min(excess[u], graph.residual(arc));
+                    graph.augment(arc, delta);
+                    excess[u] -= delta;
+                    excess[v] += delta;
+                    if (v != s && v != t && !inFifo[v]) {
+                        inFifo[v] = true;
+                        fifo[(head + size++) % n] = v;
+                    }
+                } else {
+                    currentArc[u]++;
+                }
+            }
+        }
+    }
+
+    private void markReachableFromSource() {
+        int head = 0, tail = 0;
+        visit(s);
+        bfs[tail++] = s;
+        while (head < tail) {
+            int u = bfs[head++];
+            for (int arc = graph.first(u); arc < graph.end(u); arc++) {
+                int v = graph.target(arc);
+                if (graph.residual(arc) > 0 && !visited(v)) {
+                    visit(v);
+                    bfs[tail++] = v;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.network;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Idle solvers kept for reuse, keyed by their class and size: node count and terminals for
+ * {@link NetworkFlowSolverBase} solvers, width, height and connectivity for
+ * {@link GridBoykovKolmogorovSolver}s.
+ *
+ * <p>A released solver is emptied ({@link NetworkFlowSolverBase#clearEdges()} or
+ * {@link GridBoykovKolmogorovSolver#reset()}) but keeps its arrays, so a job that segments many
+ * images of the same size builds and solves each of them without allocating. Solvers are
+ * handed out to one caller at a time, the pool itself is thread safe. A dropped
+ * {@link ParallelPushRelabelSolver} is closed.
+ */
+public final class SolverPool {
+
+    private record Shape(Class<?> type, int a, int b, int c) {}
+
+    private final int maxIdlePerShape;
+    private final Map<Shape, ArrayDeque<Object>> idle = new HashMap<>();
+
+    // One idle solver per shape and processor.
+    public SolverPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxIdlePerShape - How many idle solvers of one class and size are kept, solvers
+     *     released beyond that are dropped.
+     */
+    public SolverPool(int maxIdlePerShape) {
+        if (maxIdlePerShape < 1) throw new IllegalArgumentException("Max idle solvers < 1");
+        this.maxIdlePerShape = maxIdlePerShape;
+    }
+
+    /**
+     * An idle solver of the given class for n nodes with source s and sink t, or a new one from the
+     * factory when there is none. It has no edges.
+     */
+    public <S extends NetworkFlowSolverBase> S acquire(Class<? extends S> type, int n, int s, int t, Supplier<? extends S> factory) {
+        S solver = type.cast(poll(new Shape(type, n, s, t)));
+        return solver != null ? solver : factory.get();
+    }
+
+    /** An idle grid solver of the given class and size, or a new one from the factory. */
+    public <S extends GridBoykovKolmogorovSolver> S acquireGrid(Class<? extends S> type, int width, int height, int connectivity,
+            Supplier<? extends S> factory) {
+        S solver = type.cast(poll(new Shape(type, width, height, connectivity)));
+        return solver != null ? solver : factory.get();
+    }
+
+    /** Empties the solver and keeps it for the next caller. It must not be used afterwards. */
+    public void release(NetworkFlowSolverBase solver) {
+        solver.clearEdges();
+        offer(new Shape(solver.getClass(), solver.n, solver.s, solver.t), solver);
+    }
+
+    /** Clears the grid solver and keeps it for the next caller. It must not be used afterwards. */
+    public void release(GridBoykovKolmogorovSolver solver) {
+        solver.reset();
+        offer(new Shape(solver.getClass(), solver.getWidth(), solver.getHeight(), solver.getConnectivity()), solver);
+    }
+
+    // Number of idle solvers over all shapes.
+    public synchronized int idleCount() {
+        int count = 0;
+        for (ArrayDeque<Object> solvers : idle.values()) count += solvers.size();
+        return count;
+    }
+
+    // Drops every idle solver.
+    public synchronized void clear() {
+        for (ArrayDeque<Object> solvers : idle.values()) solvers.forEach(SolverPool::drop);
+        idle.clear();
+    }
+
+    private synchronized Object poll(Shape shape) {
+        ArrayDeque<Object> solvers = idle.get(shape);
+        return solvers == null ? null : solvers.pollLast();
+    }
+
+    private synchronized void offer(Shape shape, Object solver) {
+        ArrayDeque<Object> solvers = idle.computeIfAbsent(shape, key -> new ArrayDeque<>());
+        if (solvers.size() < maxIdlePerShape) solvers.addLast(solver);
+        else drop(solver);
+    }
+
+    // Stops the threads of a solver that is not kept.
+    private static void drop(Object solver) {
+        if (solver instanceof ParallelPushRelabelSolver parallel) parallel.close();
+    }
+}
@@ -0,0 +1,238 @@
+package org.example.network;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and phase timings of one solver, see {@link NetworkFlowSolverBase#setInstrumented}.
+ *
+ * <p>Solvers only touch this object when instrumentation is on; otherwise their stats field is null
+ * and every counter costs a null check. The counters add up over repeated solves, for instance
+ * after {@link BoykovKolmogorovSolver#updateCapacity}.
+ *
+ * <p>The same numbers reach JDK Flight Recorder: every solve, instrumented or not, commits an
+ * {@code org.example.network.MaxFlowSolve} event, and instrumented solvers commit an
+ * {@code org.example.network.SolverPhase} event per growth, augmentation and adoption phase when a
+ * recording enables it. The phase event is off by default and has a 1 ms threshold, so a recording
+ * only shows the phases that are worth looking at.
+ */
+public final class SolverStats {
+
+    /** Phases of the search tree solvers. */
+    public enum Phase {
+        GROW, AUGMENT, ADOPT
+    }
+
+    private final String solver;
+
+    long solves;
+    long solveNanos;
+    final long[] phaseNanos = new long[Phase.values().length];
+    final long[] phaseCalls = new long[Phase.values().length];
+
+    // tree growth: free nodes taken into a tree, arcs looked at
+    long grownNodes;
+    long scannedArcs;
+
+    long augmentations;
+    // bottleneck[k] counts augmentations whose bottleneck had its highest bit at k
+    final long[] bottlenecks = new long[64];
+
+    long orphansCreated;
+    long orphansAdopted;
+    long orphansFreed;
+
+    // walks up the parent chain to check an orphan's candidate parent, and arcs walked
+    long rootWalks;
+    long rootWalkArcs;
+
+    // start of the phase being timed and its flight recorder event
+    private long phaseStart;
+    private PhaseEvent phaseEvent;
+
+    SolverStats(String solver) {
+        this.solver = solver;
+    }
+
+    void beginPhase() {
+        phaseEvent = new PhaseEvent();
+        phaseEvent.begin();
+        phaseStart = System.nanoTime();
+    }
+
+    void endPhase(Phase phase) {
+        phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStart;
+        phaseCalls[phase.ordinal()]++;
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.solver = solver;
+            phaseEvent.phase = phase.name();
+            phaseEvent.commit();
+        }
+        phaseEvent = null;
+    }
+
+    // The counters a MaxFlowSolve event reports, in the order SolveEvent.setCounters takes them.
+    long[] solveCounters() {
+        return new long[] {augmentations, orphansCreated, getPhaseNanos(Phase.GROW), getPhaseNanos(Phase.AUGMENT),
+                getPhaseNanos(Phase.ADOPT)};
+    }
+
+    void augmented(long bottleneck) {
+        augmentations++;
+        bottlenecks[63 - Long.numberOfLeadingZeros(Math.max(bottleneck, 1))]++;
+    }
+
+    public String getSolver() {
+        return solver;
+    }
+
+    public long getSolves() {
+        return solves;
+    }
+
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getPhaseCalls(Phase phase) {
+        return phaseCalls[phase.ordinal()];
+    }
+
+    public long getGrownNodes() {
+        return grownNodes;
+    }
+
+    public long getScannedArcs() {
+        return scannedArcs;
+    }
+
+    public long getAugmentations() {
+        return augmentations;
+    }
+
+    /**
+     * Augmentations per bottleneck magnitude: entry k counts bottlenecks in [2^k, 2^(k+1)), entry 0
+     * also those of 1 or less.
+     */
+    public long[] getBottleneckHistogram() {
+        return bottlenecks.clone();
+    }
+
+    public long getOrphansCreated() {
+        return orphansCreated;
+    }
+
+    public long getOrphansAdopted() {
+        return orphansAdopted;
+    }
+
+    public long getOrphansFreed() {
+        return orphansFreed;
+    }
+
+    public long getRootWalks() {
+        return rootWalks;
+    }
+
+    public long getRootWalkArcs() {
+        return rootWalkArcs;
+    }
+
+    public double getMeanRootWalk() {
+        return rootWalks == 0 ? 0 : (double) rootWalkArcs / rootWalks;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s: %d solves in %.1f ms%n", solver, solves, solveNanos / 1e6));
+        for (Phase phase : Phase.values()) {
+            if (phaseCalls[phase.ordinal()] == 0) continue;
+            text.append(String.format("  %-7s %10d calls %10.1f ms%n", phase.name().toLowerCase(),
+                    phaseCalls[phase.ordinal()], phaseNanos[phase.ordinal()] / 1e6));
+        }
+        text.append(String.format("  grown nodes %d, scanned arcs %d%n", grownNodes, scannedArcs));
+        text.append(String.format("  augmentations %d, bottlenecks by power of two:", augmentations));
+        for (int k = 0; k < bottlenecks.length; k++) {
+            if (bottlenecks[k] > 0) text.append(String.format(" 2^%d:%d", k, bottlenecks[k]));
+        }
+        text.append(String.format("%n  orphans created %d, adopted %d, freed %d%n", orphansCreated, orphansAdopted, orphansFreed));
+        text.append(String.format("  root walks %d, %.2f arcs on average%n", rootWalks, getMeanRootWalk()));
+        return text.toString();
+    }
+
+    @Name("org.example.network.MaxFlowSolve")
+    @Label("Max-Flow Solve")
+    @Category({"Graph Cut", "Max Flow"})
+    @Description("One solve of a max-flow solver")
+    @StackTrace(false)
+    static final class SolveEvent extends Event {
+        @Label("Solver")
+        String solver;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Arcs")
+        int arcs;
+
+        @Label("Max Flow")
+        long maxFlow;
+
+        @Label("Augmentations")
+        @Description("Only counted by instrumented solvers")
+        long augmentations;
+
+        @Label("Orphans")
+        @Description("Only counted by instrumented solvers")
+        long orphans;
+
+        @Label("Grow Time")
+        @Timespan
+        long growNanos;
+
+        @Label("Augment Time")
+        @Timespan
+        long augmentNanos;
+
+        @Label("Adopt Time")
+        @Timespan
+        long adoptNanos;
+
+        // The counts of this solve, from solveCounters taken before and after it.
+        void setCounters(long[] before, long[] after) {
+            augmentations = after[0] - before[0];
+            orphans = after[1] - before[1];
+            growNanos = after[2] - before[2];
+            augmentNanos = after[3] - before[3];
+            adoptNanos = after[4] - before[4];
+        }
+    }
+
+    @Name("org.example.network.SolverPhase")
+    @Label("Solver Phase")
+    @Category({"Graph Cut", "Max Flow"})
+    @Description("A growth, augmentation or adoption phase of an instrumented solver")
+    @StackTrace(false)
+    @Enabled(false)
+    @Threshold("1 ms")
+    static final class PhaseEvent extends Event {
+        @Label("Solver")
+        String solver;
+
+        @Label("Phase")
+        String phase;
+    }
+}
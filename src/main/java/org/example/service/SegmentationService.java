@@ -0,0 +1,363 @@
+package org.example.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import org.example.batch.BatchSegmenter;
+import org.example.batch.SeedFile;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.ProcessedImage.GraphCutEngine;
+import org.example.imaging.SegmentationCache;
+import org.example.network.MinCut;
+import org.example.network.SolverPool;
+
+/**
+ * Segments images posted over HTTP, for clients that share one JVM instead of each running the
+ * Swing app.
+ *
+ * <p>{@code POST /segment} takes the image file as the body and the seeds in the query, in the
+ * {@link SeedFile} format with {@code ;} between lines, and answers with the mask PNG that
+ * {@link BatchSegmenter} would write:
+ *
+ * <pre>
+ * curl --data-binary @cat.jpg -o mask.png \
+ *     'http://localhost:8080/segment?seeds=obj+100+60+140+100;bkg+0+0+319+0&amp;downsize=5'
+ * </pre>
+ *
+ * Optional parameters are {@code downsize}, {@code connectivity} and {@code engine}, an engine name
+ * or {@code MULTILEVEL}. Seeds are in original image coordinates. {@code GET /stats} reports the
+ * counters of {@link Stats}.
+ *
+ * <p>Segmentations run on a fixed number of solve threads, and at most a fixed number more wait
+ * for them. A request beyond that is refused with 503 before its body is read. An admitted request
+ * keeps its place until it is answered, reading its body included. Every answer carries its queue,
+ * solve and total time in {@code X-Queue-Millis}, {@code X-Solve-Millis} and
+ * {@code X-Latency-Millis}. Exchanges are handled on a bounded pool with a thread for every
+ * admitted request and a few more, so a flood of connections cannot grow the thread count.
+ *
+ * <p>Each request decodes its own {@link ProcessedImage}, so requests share no image state. They
+ * only share a {@link SolverPool} and, if one is set, a {@link SegmentationCache}, both thread
+ * safe.
+ */
+public class SegmentationService implements AutoCloseable {
+
+    // largest image body accepted
+    private static final long MAX_BODY_BYTES = 256L << 20;
+
+    // handler threads beyond the admitted requests, for refusals and stats, and the exchanges that
+    // may wait for one; the server drops the connection of any exchange beyond that
+    private static final int HANDLER_SLACK = 4;
+    private static final int HANDLER_QUEUE = 16;
+
+    /**
+     * Counters since the service started.
+     *
+     * @param accepted - Requests admitted to the solve queue.
+     * @param rejected - Requests refused because the queue was full.
+     * @param completed - Requests answered with a mask.
+     * @param failed - Admitted requests answered with an error.
+     * @param totalLatencyNanos - Sum of the latencies of the completed requests.
+     * @param maxLatencyNanos - Largest latency of a completed request.
+     */
+    public record Stats(long accepted, long rejected, long completed, long failed, long totalLatencyNanos,
+            long maxLatencyNanos) {
+
+        public double meanLatencyMillis() {
+            return completed == 0 ? 0 : totalLatencyNanos / 1e6 / completed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accepted, %d rejected, %d completed, %d failed, latency mean %.2f ms max %.2f ms",
+                    accepted, rejected, completed, failed, meanLatencyMillis(), maxLatencyNanos / 1e6);
+        }
+    }
+
+    private final HttpServer server;
+    // platform threads: the server's streams pin a virtual thread that waits for a slow body
+    private final ThreadPoolExecutor handlers;
+    private final ExecutorService solvers;
+    private final Semaphore admission;
+    private final SolverPool solverPool;
+    private volatile SegmentationCache cache;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Binds to port on the loopback address, 0 for any free port. Requests are served once
+     * {@link #start} is called.
+     *
+     * @param solveThreads - Segmentations run at once.
+     * @param queueCapacity - Admitted requests that may wait for a solve thread, 0 for none.
+     */
+    public SegmentationService(int port, int solveThreads, int queueCapacity) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), solveThreads, queueCapacity);
+    }
+
+    public SegmentationService(InetSocketAddress address, int solveThreads, int queueCapacity) throws IOException {
+        if (solveThreads < 1) throw new IllegalArgumentException("Solve threads < 1");
+        if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity < 0");
+        this.solvers = Executors.newFixedThreadPool(solveThreads);
+        this.admission = new Semaphore(solveThreads + queueCapacity);
+        // every admitted request holds a handler thread until it is answered
+        int handlerThreads = solveThreads + queueCapacity + HANDLER_SLACK;
+        this.handlers = new ThreadPoolExecutor(handlerThreads, handlerThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(HANDLER_QUEUE));
+        handlers.allowCoreThreadTimeOut(true);
+        this.solverPool = new SolverPool(solveThreads);
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext("/segment", this::segment);
+        server.createContext("/stats", this::stats);
+    }
+
+    /** Looks every request up in the cache and stores what is solved there. Null for none. */
+    public void setResultCache(SegmentationCache cache) {
+        this.cache = cache;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // The port bound, useful when the service was created with port 0.
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public Stats stats() {
+        return new Stats(accepted.get(), rejected.get(), completed.get(), failed.get(), totalLatency.get(), maxLatency.get());
+    }
+
+    /** Stops accepting requests, lets running ones finish and stops the threads. */
+    @Override
+    public void close() {
+        server.stop(1);
+        solvers.close();
+        handlers.close();
+    }
+
+    /** A request that cannot be served, answered with its status and message. */
+    private static final class RequestException extends Exception {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // The parameters of one request, parsed before it is queued.
+    private record Request(byte[] image, SeedFile seeds, int downsize, int connectivity, String engine) {}
+
+    // The mask and how long the request waited and was solved.
+    private record Response(byte[] mask, int width, int height, long queueNanos, long solveNanos) {}
+
+    private void segment(HttpExchange exchange) throws IOException {
+        long arrived = System.nanoTime();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, "POST an image to /segment");
+                return;
+            }
+            // refused before the body is read, a full queue costs the client one round trip
+            if (!admission.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "Segmentation queue is full");
+                return;
+            }
+            accepted.incrementAndGet();
+            try {
+                Request request = parse(exchange);
+                long submitted = System.nanoTime();
+                Future<Response> response = solvers.submit(() -> solve(request, submitted));
+                Response done = get(response);
+
+                long latency = System.nanoTime() - arrived;
+                exchange.getResponseHeaders().set("Content-Type", "image/png");
+                exchange.getResponseHeaders().set("X-Mask-Size", done.width() + "x" + done.height());
+                exchange.getResponseHeaders().set("X-Queue-Millis", millis(done.queueNanos()));
+                exchange.getResponseHeaders().set("X-Solve-Millis", millis(done.solveNanos()));
+                exchange.getResponseHeaders().set("X-Latency-Millis", millis(latency));
+                exchange.sendResponseHeaders(200, done.mask().length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(done.mask());
+                }
+                completed.incrementAndGet();
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulate(latency);
+            } catch (RequestException e) {
+                failed.incrementAndGet();
+                send(exchange, e.status, e.getMessage());
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    private static Request parse(HttpExchange exchange) throws RequestException, IOException {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq < 0) continue;
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        if (!query.containsKey("seeds")) throw new RequestException(400, "Missing seeds");
+
+        SeedFile seeds;
+        int downsize, connectivity;
+        try {
+            seeds = SeedFile.parse("seeds", Arrays.asList(query.get("seeds").split(";")));
+            downsize = Integer.parseInt(query.getOrDefault("downsize", "1"));
+            connectivity = Integer.parseInt(query.getOrDefault("connectivity", "4"));
+        } catch (IOException | NumberFormatException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+        if (downsize < 1) throw new RequestException(400, "Downsize factor < 1");
+        if (connectivity != 4 && connectivity != 8) throw new RequestException(400, "Connectivity must be 4 or 8");
+        String engine = query.getOrDefault("engine", GraphCutEngine.BOYKOV_KOLMOGOROV.name());
+        if (!engine.equals("MULTILEVEL") && Arrays.stream(GraphCutEngine.values()).noneMatch(e -> e.name().equals(engine)))
+            throw new RequestException(400, "Unknown engine " + engine);
+
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length);
+            } catch (NumberFormatException e) {
+                throw new RequestException(400, "Bad Content-Length " + length);
+            }
+            if (declared > MAX_BODY_BYTES) throw new RequestException(413, "Image too large");
+        }
+        byte[] image;
+        try (InputStream body = exchange.getRequestBody()) {
+            image = body.readNBytes((int) MAX_BODY_BYTES + 1);
+        }
+        if (image.length > MAX_BODY_BYTES) throw new RequestException(413, "Image too large");
+        return new Request(image, seeds, downsize, connectivity, engine);
+    }
+
+    // runs on a solve thread, everything it touches belongs to this request
+    private Response solve(Request request, long submitted) throws IOException, RequestException {
+        long start = System.nanoTime();
+        ProcessedImage image;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(request.image()))) {
+            image = ProcessedImage.decode(input, "request", null, request.downsize());
+        } catch (IllegalArgumentException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+        image.grayScaleImage();
+        int width = image.getDimensions().width(), height = image.getDimensions().height();
+        SeedFile seeds = request.seeds().scaled(request.downsize(), width, height);
+
+        image.setConnectivity(request.connectivity());
+        if (request.engine().equals("MULTILEVEL")) image.setMultilevel(true);
+        else image.setGraphCutEngine(GraphCutEngine.valueOf(request.engine()));
+        image.setSolverPool(solverPool);
+        image.setResultCache(cache);
+        boolean[] cut = image.runGraphCut(seeds.src().pointToIndex(width), seeds.sink().pointToIndex(width),
+                seeds.objSeeds(), seeds.bkgSeeds());
+        image.releaseSolver();
+
+        ByteArrayOutputStream mask = new ByteArrayOutputStream();
+        ImageIO.write(BatchSegmenter.maskImage(MinCut.of(cut), width, height), "png", mask);
+        return new Response(mask.toByteArray(), width, height, start - submitted, System.nanoTime() - start);
+    }
+
+    private static Response get(Future<Response> response) throws RequestException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RequestException request) throw request;
+            // no reader for the body, or it is broken
+            if (cause instanceof IOException) throw new RequestException(400, String.valueOf(cause.getMessage()));
+            throw new RequestException(500, String.valueOf(cause));
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, stats().toString());
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] text = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, text.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(text);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Serves on the loopback address from the command line:
+     * {@code SegmentationService <port> [--solvers n] [--queue n] [--cache dir]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 != 1) {
+            System.err.println("usage: SegmentationService <port> [--solvers n] [--queue n] [--cache dir]");
+            System.exit(2);
+        }
+        int solveThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int queueCapacity = 2 * solveThreads;
+        Path cacheDirectory = null;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--solvers" -> solveThreads = Integer.parseInt(value);
+                case "--queue" -> queueCapacity = Integer.parseInt(value);
+                case "--cache" -> cacheDirectory = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        SegmentationService service = new SegmentationService(Integer.parseInt(args[0]), solveThreads, queueCapacity);
+        if (cacheDirectory != null) service.setResultCache(new SegmentationCache(64L << 20, cacheDirectory, 1L << 30));
+        service.start();
+        System.out.println("listening on " + service.server.getAddress());
+    }
+}
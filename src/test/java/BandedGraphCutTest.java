@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.example.imaging.BandedGraphCut;
+import org.example.imaging.HistogramModel;
+import org.junit.jupiter.api.Test;
+
+/**
+ * segments noisy synthetic images coarse to fine and checks the result against cutting the whole
+ * image at full resolution, which the same class does when no level is small enough to stop at
+ */
+class BandedGraphCutTest {
+
+    // bright ellipse on a dark background with some noise
+    private static int[] ellipse(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] intensities = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = (x - width / 2.0) / (width / 3.0), dy = (y - height / 2.0) / (height / 4.0);
+                int base = dx * dx + dy * dy < 1 ? 200 : 50;
+                intensities[y * width + x] = Math.clamp(base + random.nextInt(41) - 20, 0, 255);
+            }
+        }
+        return intensities;
+    }
+
+    private static boolean[] segment(BandedGraphCut cut, int width, int height, int[] intensities) {
+        int src = (height / 2) * width + width / 2, sink = 0;
+        BitSet inO = new BitSet(), inB = new BitSet();
+        for (int o : new int[] {src, src + 1, src - width}) inO.set(o);
+        for (int b : new int[] {sink, width - 1, (height - 1) * width}) inB.set(b);
+        HistogramModel hist = new HistogramModel();
+        inO.stream().forEach(o -> hist.addObjSeed(intensities[o]));
+        inB.stream().forEach(b -> hist.addBkgSeed(intensities[b]));
+        return cut.segment(width, height, intensities, hist, src, sink, inO, inB);
+    }
+
+    private static void compareWithFullCut(int width, int height, int connectivity, long seed) {
+        int[] intensities = ellipse(width, height, seed);
+        boolean[] full = segment(new BandedGraphCut(connectivity, Integer.MAX_VALUE, 1), width, height, intensities);
+        boolean[] banded = segment(new BandedGraphCut(connectivity, 300, 2), width, height, intensities);
+
+        int object = 0;
+        for (int p = 0; p < full.length; p++) {
+            if (full[p]) object++;
+            assertEquals(full[p], banded[p], "pixel " + p);
+        }
+        assertTrue(object > 0 && object < full.length);
+    }
+
+    @Test
+    void bandedCutMatchesFullCut() {
+        for (long seed = 0; seed < 5; seed++) {
+            compareWithFullCut(64, 48, 4, seed);
+            compareWithFullCut(61, 37, 8, seed);
+        }
+    }
+
+    @Test
+    void seedsStayOnTheirSide() {
+        int width = 40, height = 30;
+        int[] intensities = ellipse(width, height, 7);
+        boolean[] cut = segment(new BandedGraphCut(4, 50, 1), width, height, intensities);
+        assertTrue(cut[(height / 2) * width + width / 2]);
+        assertFalse(cut[0]);
+        assertFalse(cut[(height - 1) * width]);
+    }
+
+    @Test
+    void invalidParametersThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new BandedGraphCut(6));
+        assertThrows(IllegalArgumentException.class, () -> new BandedGraphCut(4, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new BandedGraphCut(4, 100, 0));
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.example.batch.BatchReport;
+import org.example.batch.BatchSegmenter;
+import org.example.batch.SeedFile;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.SegmentationCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * segments a directory of generated images and compares every mask with runGraphCut on the same
+ * image and seeds
+ */
+class BatchSegmenterTest {
+
+    private static final int SIZE = 60;
+
+    // a noisy bright disc on a dark background, seeded in the middle and along the top row
+    private static void writeImage(Path directory, String name, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        int radius = 12 + random.nextInt(10);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int dx = x - SIZE / 2, dy = y - SIZE / 2;
+                int gray = Math.clamp((dx * dx + dy * dy < radius * radius ? 190 : 60) + random.nextInt(41) - 20, 0, 255);
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        ImageIO.write(image, "png", directory.resolve(name).toFile());
+        Files.writeString(SeedFile.sidecarOf(directory.resolve(name)),
+                "# generated\nobj 27 27 33 33\nbkg 0 0 59 0\nsrc 30 30\n");
+    }
+
+    private static boolean[] readMask(Path file) throws IOException {
+        BufferedImage mask = ImageIO.read(file.toFile());
+        boolean[] cut = new boolean[mask.getWidth() * mask.getHeight()];
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) cut[y * mask.getWidth() + x] = (mask.getRGB(x, y) & 0xFF) != 0;
+        }
+        return cut;
+    }
+
+    private static boolean[] segmentAlone(Path file, int downsize) throws IOException {
+        ProcessedImage image = ProcessedImage.decode(file.toString(), downsize);
+        image.grayScaleImage();
+        int width = image.getDimensions().width(), height = image.getDimensions().height();
+        SeedFile seeds = SeedFile.read(SeedFile.sidecarOf(file)).scaled(downsize, width, height);
+        return image.runGraphCut(seeds.src().pointToIndex(width), seeds.sink().pointToIndex(width),
+                seeds.objSeeds(), seeds.bkgSeeds());
+    }
+
+    @Test
+    void masksMatchSingleImageSegmentation(@TempDir Path input, @TempDir Path output) throws Exception {
+        for (int i = 0; i < 12; i++) writeImage(input, "image" + i + ".png", i);
+        // no sidecar, not part of the batch
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", input.resolve("unseeded.png").toFile());
+
+        for (int downsize : new int[] {1, 2}) {
+            BatchSegmenter segmenter = new BatchSegmenter();
+            segmenter.setDownsize(downsize);
+            segmenter.setSolveThreads(2);
+            segmenter.setQueueCapacity(2);
+            BatchReport report = segmenter.run(input, output);
+
+            assertEquals(12, report.segmented());
+            assertEquals(0, report.failures().size(), report.failures().toString());
+            assertTrue(report.imagesPerSecond() > 0);
+            assertTrue(report.peakHeapBytes() > 0);
+            for (int i = 0; i < 12; i++) {
+                Path image = input.resolve("image" + i + ".png");
+                assertArrayEquals(segmentAlone(image, downsize), readMask(BatchSegmenter.maskOf(output, image)));
+            }
+            assertFalse(Files.exists(output.resolve("unseeded-mask.png")));
+        }
+    }
+
+    @Test
+    void reRunsReadTheMasksFromTheCache(@TempDir Path input, @TempDir Path output, @TempDir Path cacheDirectory) throws Exception {
+        for (int i = 0; i < 4; i++) writeImage(input, "image" + i + ".png", i);
+        BatchSegmenter segmenter = new BatchSegmenter();
+        segmenter.setResultCache(new SegmentationCache(0, cacheDirectory, 1 << 20));
+        segmenter.run(input, output);
+        byte[] first = Files.readAllBytes(BatchSegmenter.maskOf(output, input.resolve("image2.png")));
+
+        // a new cache on the same directory, as the next run of the command line would have
+        SegmentationCache cache = new SegmentationCache(1 << 20, cacheDirectory, 1 << 20);
+        segmenter.setResultCache(cache);
+        Files.delete(BatchSegmenter.maskOf(output, input.resolve("image2.png")));
+        assertEquals(4, segmenter.run(input, output).segmented());
+        assertEquals(4, cache.stats().diskHits());
+        assertEquals(0, cache.stats().misses());
+        assertArrayEquals(first, Files.readAllBytes(BatchSegmenter.maskOf(output, input.resolve("image2.png"))));
+    }
+
+    @Test
+    void brokenImagesAreReportedAndSkipped(@TempDir Path input, @TempDir Path output) throws Exception {
+        for (int i = 0; i < 4; i++) writeImage(input, "image" + i + ".png", i);
+        Files.writeString(SeedFile.sidecarOf(input.resolve("image1.png")), "obj 1 1\n");
+        Files.writeString(input.resolve("image2.png"), "not an image");
+
+        BatchReport report = new BatchSegmenter().run(input, output);
+        assertEquals(2, report.segmented());
+        assertEquals(2, report.failures().size());
+        assertTrue(Files.exists(BatchSegmenter.maskOf(output, input.resolve("image3.png"))));
+        assertFalse(Files.exists(BatchSegmenter.maskOf(output, input.resolve("image1.png"))));
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * changes capacities of a solved BoykovKolmogorovSolver and checks every re-solve against a fresh
+ * solver built with the new capacities
+ */
+class DynamicBoykovKolmogorovSolverTest {
+
+    private static void compareWithFreshSolve(int n, int s, int t, int[] from, int[] to, long[] capacity,
+            BoykovKolmogorovSolver solver) {
+        NetworkFlowSolverBase reference = new DinicSolver(n, s, t);
+        for (int e = 0; e < from.length; e++) reference.addEdge(from[e], to[e], capacity[e]);
+
+        assertEquals(reference.getMaxFlow(), solver.getMaxFlow());
+        boolean[] expected = reference.getMinCut();
+        boolean[] actual = solver.getMinCut();
+        for (int i = 0; i < n; i++) assertEquals(expected[i], actual[i], "node " + i);
+    }
+
+    // terminal links on most nodes like an image, some nodes only reachable through n-links
+    private static void updateRandomGraph(long seed) {
+        Random random = new Random(seed);
+        int nodes = 5 + random.nextInt(30);
+        int n = nodes + 2, s = nodes, t = nodes + 1;
+        int edges = 0;
+        int[] from = new int[6 * nodes], to = new int[6 * nodes];
+        long[] capacity = new long[6 * nodes];
+
+        for (int i = 0; i < nodes; i++) {
+            if (random.nextInt(4) > 0) {
+                from[edges] = s; to[edges] = i; capacity[edges++] = random.nextInt(40);
+            }
+            if (random.nextInt(4) > 0) {
+                from[edges] = i; to[edges] = t; capacity[edges++] = random.nextInt(40);
+            }
+            for (int k = 0; k < 3; k++) {
+                from[edges] = i; to[edges] = random.nextInt(nodes); capacity[edges++] = random.nextInt(25);
+            }
+        }
+        from = java.util.Arrays.copyOf(from, edges);
+        to = java.util.Arrays.copyOf(to, edges);
+        capacity = java.util.Arrays.copyOf(capacity, edges);
+
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(n, s, t);
+        for (int e = 0; e < edges; e++) assertEquals(e, solver.addEdge(from[e], to[e], capacity[e]));
+        compareWithFreshSolve(n, s, t, from, to, capacity, solver);
+
+        for (int round = 0; round < 8; round++) {
+            int changes = 1 + random.nextInt(edges);
+            for (int k = 0; k < changes; k++) {
+                int e = random.nextInt(edges);
+                capacity[e] = random.nextInt(3) == 0 ? 0 : random.nextInt(50);
+                solver.updateCapacity(e, capacity[e]);
+            }
+            compareWithFreshSolve(n, s, t, from, to, capacity, solver);
+        }
+    }
+
+    @Test
+    void randomUpdatesMatchFreshSolve() {
+        for (long seed = 0; seed < 300; seed++) updateRandomGraph(seed);
+    }
+
+    @Test
+    void reparametrizedTerminalLinkKeepsFlowExact() {
+        // s -> 0 -> t carries 10, lowering s -> 0 moves the surplus onto both terminal links of 0
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(3, 1, 2);
+        int source = solver.addEdge(1, 0, 10);
+        int sink = solver.addEdge(0, 2, 12);
+        assertEquals(10, solver.getMaxFlow());
+
+        solver.updateCapacity(source, 4);
+        assertEquals(4, solver.getMaxFlow());
+        solver.updateCapacity(sink, 1);
+        assertEquals(1, solver.getMaxFlow());
+        assertTrue(solver.getMinCut()[0]);
+
+        solver.updateCapacity(sink, 30);
+        assertEquals(4, solver.getMaxFlow());
+        assertFalse(solver.getMinCut()[0]);
+    }
+
+    @Test
+    void updateBeforeSolveOnlySetsCapacity() {
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(4, 0, 3);
+        solver.addEdge(0, 1, 5);
+        int middle = solver.addEdge(1, 2, 1);
+        solver.addEdge(2, 3, 5);
+
+        solver.updateCapacity(middle, 3);
+        assertEquals(3, solver.getMaxFlow());
+        assertThrows(IllegalArgumentException.class, () -> solver.updateCapacity(middle, -1));
+        assertThrows(IllegalArgumentException.class, () -> solver.updateCapacity(3, 1));
+    }
+}
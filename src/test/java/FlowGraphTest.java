@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.network.FlowGraph;
+import org.junit.jupiter.api.Test;
+
+/**
+ * checks which residual layout FlowGraph picks and that capacities, flows and hard arcs read the
+ * same in all of them
+ */
+class FlowGraphTest {
+
+    // s = 0 -> 1 -> 2 -> t = 3 plus 0 -> 2
+    private static FlowGraph path(long first, long middle, long last) {
+        FlowGraph graph = new FlowGraph(4, 0, 3);
+        graph.addEdge(0, 1, first);
+        graph.addEdge(1, 2, middle);
+        graph.addEdge(2, 3, last);
+        graph.addEdge(0, 2, 7);
+        graph.compile();
+        return graph;
+    }
+
+    @Test
+    void narrowestLayoutThatFits() {
+        assertEquals(2, path(5, 100, 555).residualWidth());
+        assertEquals(4, path(5, 40_000, 555).residualWidth());
+        assertEquals(8, path(5, 3_000_000_000L, 555).residualWidth());
+        assertTrue(path(5, 6, 7).memoryFootprint() < path(5, 3_000_000_000L, 7).memoryFootprint());
+    }
+
+    @Test
+    void hardArcIsBoundedByItsHead() {
+        FlowGraph graph = path(Long.MAX_VALUE, 100, 555);
+        assertEquals(2, graph.residualWidth());
+
+        int hard = graph.arcOf(0);
+        assertEquals(Long.MAX_VALUE, graph.capacity(hard));
+        // one more than everything leaving node 1
+        assertEquals(101, graph.residual(hard));
+        assertEquals(0, graph.capacity(graph.reverse(hard)));
+    }
+
+    @Test
+    void hardArcBetweenTerminalsStaysLong() {
+        FlowGraph graph = new FlowGraph(2, 0, 1);
+        graph.addEdge(0, 1, Long.MAX_VALUE);
+        graph.compile();
+        assertEquals(8, graph.residualWidth());
+        assertEquals(Long.MAX_VALUE, graph.residual(graph.arcOf(0)));
+
+        // without terminals no hard arc can be bounded
+        FlowGraph unknown = new FlowGraph(3);
+        unknown.addEdge(0, 1, Long.MAX_VALUE);
+        unknown.addEdge(1, 2, 4);
+        unknown.compile();
+        assertEquals(8, unknown.residualWidth());
+    }
+
+    @Test
+    void setCapacityWidensAndKeepsFlow() {
+        FlowGraph graph = path(Long.MAX_VALUE, 100, 555);
+        int middle = graph.arcOf(1);
+        graph.augment(graph.arcOf(0), 60);
+        graph.augment(middle, 60);
+        graph.augment(graph.arcOf(2), 60);
+
+        graph.setCapacity(middle, 50_000);
+        assertEquals(4, graph.residualWidth());
+        assertEquals(60, graph.flow(middle));
+        assertEquals(50_000, graph.capacity(middle));
+        // the hard arc into node 1 was raised past the new capacity
+        assertEquals(Long.MAX_VALUE, graph.capacity(graph.arcOf(0)));
+        assertEquals(50_001, graph.residual(graph.arcOf(0)) + graph.flow(graph.arcOf(0)));
+
+        graph.setCapacity(middle, 5_000_000_000L);
+        assertEquals(8, graph.residualWidth());
+        assertEquals(60, graph.flow(middle));
+        assertEquals(60, graph.flow(graph.arcOf(0)));
+        assertEquals(Long.MAX_VALUE, graph.capacity(graph.arcOf(0)));
+
+        assertThrows(IllegalArgumentException.class, () -> graph.setCapacity(middle, 59));
+        assertThrows(IllegalArgumentException.class, () -> graph.setCapacity(graph.reverse(middle), 5));
+    }
+}
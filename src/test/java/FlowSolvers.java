@@ -0,0 +1,73 @@
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
+import org.example.network.EdmondsKarpSolver;
+import org.example.network.IbfsSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.ParallelPushRelabelSolver;
+import org.example.network.PushRelabelSolver;
+
+/**
+ * the solvers that tests run over side by side, and the random graphs they solve
+ */
+final class FlowSolvers {
+
+    interface Factory {
+        NetworkFlowSolverBase create(int n, int s, int t);
+    }
+
+    static final Factory[] ALL = {
+        EdmondsKarpSolver::new,
+        BoykovKolmogorovSolver::new,
+        DinicSolver::new,
+        IbfsSolver::new,
+        PushRelabelSolver::new,
+        (n, s, t) -> new ParallelPushRelabelSolver(n, s, t, 4),
+    };
+
+    // edges addRandomGraph adds per node: a link from the source, one to the sink, three to neighbours
+    static final int EDGES_PER_NODE = 5;
+
+    private FlowSolvers() {
+    }
+
+    /**
+     * capacities for addRandomGraph, below maxCapacity. if hard is set one neighbour link in ten is
+     * hard; terminal links never are, so the max flow stays finite
+     */
+    static long[] randomCapacities(int nodes, long maxCapacity, boolean hard, long seed) {
+        Random random = new Random(seed);
+        long[] capacities = new long[EDGES_PER_NODE * nodes];
+        for (int e = 0; e < capacities.length; e++) {
+            boolean neighbour = e % EDGES_PER_NODE >= 2;
+            capacities[e] = hard && neighbour && random.nextInt(10) == 0 ? Long.MAX_VALUE : random.nextLong(maxCapacity);
+        }
+        return capacities;
+    }
+
+    /**
+     * a random graph on nodes inner nodes with source nodes and sink nodes + 1. the neighbours
+     * only depend on topologySeed, so graphs of the same seed differ in their capacities alone
+     */
+    static void addRandomGraph(NetworkFlowSolverBase solver, int nodes, long[] capacities, long topologySeed) {
+        Random random = new Random(topologySeed);
+        int s = nodes, t = nodes + 1, e = 0;
+        for (int i = 0; i < nodes; i++) {
+            solver.addEdge(s, i, capacities[e++]);
+            solver.addEdge(i, t, capacities[e++]);
+            for (int k = 0; k < 3; k++) solver.addEdge(i, random.nextInt(nodes), capacities[e++]);
+        }
+    }
+
+    static void addRandomGraph(NetworkFlowSolverBase solver, int nodes, long maxCapacity, boolean hard, long seed) {
+        addRandomGraph(solver, nodes, randomCapacities(nodes, maxCapacity, hard, seed), seed);
+    }
+
+    /**
+     * stops the worker threads a ParallelPushRelabelSolver keeps after solving, other solvers hold
+     * none
+     */
+    static void close(NetworkFlowSolverBase solver) {
+        if (solver instanceof ParallelPushRelabelSolver parallel) parallel.close();
+    }
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.GridBoykovKolmogorovSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.ParallelGridBoykovKolmogorovSolver;
+import org.junit.jupiter.api.Test;
+
+/**
+ * checks the grid solver against BoykovKolmogorovSolver on the same lattice built explicitly,
+ * with the terminals as two extra nodes
+ */
+class GridBoykovKolmogorovSolverTest {
+
+    private static final int[] DX = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int[] DY = {0, 1, 0, -1, 1, 1, -1, -1};
+
+    private static void compareWithFlowGraph(int width, int height, int connectivity, long seed) {
+        compareWithFlowGraph(new GridBoykovKolmogorovSolver(width, height, connectivity), seed);
+    }
+
+    private static void compareWithFlowGraph(GridBoykovKolmogorovSolver grid, long seed) {
+        Random random = new Random(seed);
+        int width = grid.getWidth(), height = grid.getHeight(), connectivity = grid.getConnectivity();
+        int pixels = width * height;
+        int s = pixels, t = pixels + 1;
+
+        NetworkFlowSolverBase reference = new BoykovKolmogorovSolver(pixels + 2, s, t);
+
+        for (int p = 0; p < pixels; p++) {
+            long source = random.nextInt(50);
+            long sink = random.nextInt(50);
+            grid.addTerminalWeights(p, source, sink);
+            reference.addEdge(s, p, source);
+            reference.addEdge(p, t, sink);
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int d = 0; d < connectivity; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
+                    if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                    long capacity = random.nextInt(30);
+                    grid.addEdge(y * width + x, d, capacity, 0);
+                    reference.addEdge(y * width + x, ny * width + nx, capacity);
+                }
+            }
+        }
+
+        assertEquals(reference.getMaxFlow(), grid.getMaxFlow());
+
+        boolean[] expected = reference.getMinCut();
+        boolean[] actual = grid.getMinCut();
+        for (int p = 0; p < pixels; p++) assertEquals(expected[p], actual[p], "pixel " + p);
+    }
+
+    @Test
+    void fourConnectedMatchesFlowGraph() {
+        for (long seed = 0; seed < 20; seed++) compareWithFlowGraph(12, 9, 4, seed);
+    }
+
+    @Test
+    void eightConnectedMatchesFlowGraph() {
+        for (long seed = 0; seed < 20; seed++) compareWithFlowGraph(9, 12, 8, seed);
+    }
+
+    @Test
+    void parallelBlocksMatchFlowGraph() {
+        // blocks of 4 leave partial blocks on the right and bottom and an odd number to merge
+        for (long seed = 0; seed < 20; seed++) {
+            compareWithFlowGraph(new ParallelGridBoykovKolmogorovSolver(13, 10, 4, 3, 4), seed);
+            compareWithFlowGraph(new ParallelGridBoykovKolmogorovSolver(10, 13, 8, 3, 4), seed);
+        }
+    }
+
+    @Test
+    void hardConstraintsSplitTheGrid() {
+        // 1 x 3 strip: source seed, free pixel, sink seed; the cheaper n-link is cut
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(3, 1, 4);
+        grid.addTerminalWeights(0, Long.MAX_VALUE, 0);
+        grid.addTerminalWeights(2, 0, Long.MAX_VALUE);
+        grid.addEdge(0, 0, 7, 7);
+        grid.addEdge(1, 0, 3, 3);
+
+        assertEquals(3, grid.getMaxFlow());
+        assertArrayEquals(new boolean[] {true, true, false}, grid.getMinCut());
+    }
+
+    @Test
+    void rejectsEdgesLeavingTheGrid() {
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(2, 2, 4);
+        assertThrows(IllegalArgumentException.class, () -> grid.addEdge(1, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> grid.addEdge(0, 4, 1, 1));
+    }
+}
@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.example.imaging.GridGraphBuilder;
+import org.example.imaging.HistogramModel;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.NetworkFlowSolverBase.Edge;
+import org.junit.jupiter.api.Test;
+
+/**
+ * checks the edge layout of the graph builder, its table lookups against the energy formulas, and
+ * that filling in parallel bands builds the same graph as filling on one thread
+ */
+class GridGraphBuilderTest {
+
+    private static final int[] DX = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int[] DY = {0, 1, 0, -1, 1, 1, -1, -1};
+
+    @Test
+    void sourceLinksFollowThePixelOrder() {
+        for (int connectivity : new int[] {4, 8}) {
+            for (int[] size : new int[][] {{1, 1}, {1, 5}, {7, 1}, {13, 9}}) {
+                int width = size[0], height = size[1];
+                GridGraphBuilder builder = new GridGraphBuilder(width, height, connectivity);
+
+                // two t-links and the n-links that stay in the image, pixel after pixel
+                int edge = 0;
+                for (int p = 0; p < width * height; p++) {
+                    assertEquals(edge, builder.sourceLink(p));
+                    edge += 2;
+                    for (int d = 0; d < connectivity; d++) {
+                        int nx = p % width + DX[d], ny = p / width + DY[d];
+                        if (0 <= nx && nx < width && 0 <= ny && ny < height) edge++;
+                    }
+                }
+                assertEquals(edge, builder.edgeCount());
+            }
+        }
+    }
+
+    private static NetworkFlowSolverBase build(int width, int height, int connectivity, boolean parallel,
+            int[] intensities, BitSet inO, BitSet inB) {
+        HistogramModel hist = new HistogramModel();
+        for (int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) hist.addObjSeed(intensities[o]);
+        for (int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) hist.addBkgSeed(intensities[b]);
+
+        GridGraphBuilder builder = new GridGraphBuilder(width, height, connectivity);
+        builder.setParallel(parallel);
+        builder.fill(intensities, hist, inO, inB);
+        NetworkFlowSolverBase graph = new BoykovKolmogorovSolver(width * height, inO.nextSetBit(0), inB.nextSetBit(0));
+        builder.addTo(graph, inO.nextSetBit(0), inB.nextSetBit(0));
+        return graph;
+    }
+
+    @Test
+    void parallelBandsBuildTheSameGraph() {
+        // large enough to be filled in parallel
+        int width = 320, height = 240;
+        Random random = new Random(6);
+        int[] intensities = new int[width * height];
+        for (int p = 0; p < intensities.length; p++) {
+            boolean object = Math.hypot(p % width - 160, p / width - 120) < 70;
+            intensities[p] = Math.clamp((object ? 190 : 60) + random.nextInt(41) - 20, 0, 255);
+        }
+        BitSet inO = new BitSet(), inB = new BitSet();
+        inO.set(120 * width + 150, 120 * width + 170);
+        inB.set(0, width);
+
+        for (int connectivity : new int[] {4, 8}) {
+            NetworkFlowSolverBase parallel = build(width, height, connectivity, true, intensities, inO, inB);
+            NetworkFlowSolverBase serial = build(width, height, connectivity, false, intensities, inO, inB);
+            assertEquals(serial.getMaxFlow(), parallel.getMaxFlow());
+            assertArrayEquals(serial.getMinCut(), parallel.getMinCut());
+
+            List<Edge>[] expected = serial.getGraph(), actual = parallel.getGraph();
+            for (int u = 0; u < expected.length; u++) {
+                assertEquals(expected[u].size(), actual[u].size());
+                for (int i = 0; i < expected[u].size(); i++) {
+                    assertEquals(expected[u].get(i).to, actual[u].get(i).to);
+                    assertEquals(expected[u].get(i).capacity, actual[u].get(i).capacity);
+                }
+            }
+        }
+    }
+
+    // the energy as ProcessedImage computed it pixel by pixel before the lookup tables
+    private static NetworkFlowSolverBase referenceGraph(int width, int height, int connectivity,
+            int[] intensities, BitSet inO, BitSet inB) {
+        HistogramModel hist = new HistogramModel();
+        for (int o = inO.nextSetBit(0); o >= 0; o = inO.nextSetBit(o + 1)) hist.addObjSeed(intensities[o]);
+        for (int b = inB.nextSetBit(0); b >= 0; b = inB.nextSetBit(b + 1)) hist.addBkgSeed(intensities[b]);
+
+        NetworkFlowSolverBase graph = new BoykovKolmogorovSolver(width * height, inO.nextSetBit(0), inB.nextSetBit(0));
+        for (int p = 0; p < width * height; p++) {
+            long bkg = (long) (-Math.log(hist.pBkg(intensities[p])) * 100);
+            long obj = (long) (-Math.log(hist.pObj(intensities[p])) * 100);
+            graph.addEdge(inO.nextSetBit(0), p, inO.get(p) ? Long.MAX_VALUE : inB.get(p) ? 0 : bkg);
+            graph.addEdge(p, inB.nextSetBit(0), inB.get(p) ? Long.MAX_VALUE : inO.get(p) ? 0 : obj);
+            for (int d = 0; d < connectivity; d++) {
+                int nx = p % width + DX[d], ny = p / width + DY[d];
+                if (0 <= nx && nx < width && 0 <= ny && ny < height) {
+                    int diff = intensities[p] - intensities[ny * width + nx];
+                    double weight = 100 * Math.exp(-((double) diff * diff) / (2 * 30 * 30));
+                    if (d >= 4) weight /= Math.sqrt(2);
+                    graph.addEdge(p, ny * width + nx, Math.max(1, (long) weight));
+                }
+            }
+        }
+        return graph;
+    }
+
+    @Test
+    void tablesGiveTheEnergyOfTheFormulas() {
+        // every intensity and every difference, odd width so rows end in vector tails
+        int width = 67, height = 45;
+        Random random = new Random(2);
+        int[] intensities = new int[width * height];
+        for (int p = 0; p < intensities.length; p++) intensities[p] = random.nextInt(256);
+        BitSet inO = new BitSet(), inB = new BitSet();
+        for (int i = 0; i < 200; i++) inO.set(random.nextInt(intensities.length));
+        for (int i = 0; i < 200; i++) inB.set(random.nextInt(intensities.length));
+
+        for (int connectivity : new int[] {4, 8}) {
+            List<Edge>[] expected = referenceGraph(width, height, connectivity, intensities, inO, inB).getGraph();
+            List<Edge>[] actual = build(width, height, connectivity, false, intensities, inO, inB).getGraph();
+            for (int u = 0; u < expected.length; u++) {
+                assertEquals(expected[u].size(), actual[u].size());
+                for (int i = 0; i < expected[u].size(); i++) {
+                    assertEquals(expected[u].get(i).to, actual[u].get(i).to);
+                    assertEquals(expected[u].get(i).capacity, actual[u].get(i).capacity);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compiledHistogramTakesNoSeeds() {
+        HistogramModel hist = new HistogramModel();
+        hist.addObjSeed(10);
+        hist.addBkgSeed(200);
+        long before = hist.objEnergy(10);
+        assertSame(hist, hist.compile());
+        assertEquals(before, hist.objEnergy(10));
+        assertThrows(IllegalStateException.class, () -> hist.addObjSeed(10));
+        assertThrows(IllegalStateException.class, () -> hist.addBkgSeed(10));
+    }
+
+    @Test
+    void rejectsGraphsWithEdges() {
+        GridGraphBuilder builder = new GridGraphBuilder(4, 4, 4);
+        builder.fill(new int[16], new HistogramModel(), new BitSet(), new BitSet());
+        NetworkFlowSolverBase graph = new BoykovKolmogorovSolver(16, 0, 15);
+        graph.addEdge(0, 1, 1);
+        assertThrows(IllegalStateException.class, () -> builder.addTo(graph, 0, 15));
+        assertThrows(IllegalArgumentException.class, () -> builder.fill(new int[15], new HistogramModel(), new BitSet(), new BitSet()));
+    }
+}
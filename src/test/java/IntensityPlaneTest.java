@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.example.imaging.ProcessedImage;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * grayscales images of every raster layout ProcessedImage reads directly and compares the planes
+ * with the luma of getRGB, then checks that resizing, subsampled decoding and segmenting work on
+ * the plane
+ */
+class IntensityPlaneTest {
+
+    private static final int WIDTH = 37, HEIGHT = 23;
+
+    private static BufferedImage randomImage(int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) image.setRGB(x, y, 0xFF000000 | random.nextInt(1 << 24));
+        }
+        return image;
+    }
+
+    private static int luma(int rgb) {
+        int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+        return (int) (0.299 * r + 0.587 * g + 0.114 * b);
+    }
+
+    private static byte[] grayPlane(BufferedImage image) {
+        ProcessedImage processed = new ProcessedImage("random", image);
+        processed.grayScaleImage();
+        BufferedImage gray = processed.getProcessedImageInstance();
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+
+    @Test
+    void everyLayoutGivesTheLuma() {
+        int[] types = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_INDEXED,
+        };
+        for (int type : types) {
+            BufferedImage image = randomImage(type, type);
+            byte[] plane = grayPlane(image);
+            for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                assertEquals(luma(image.getRGB(p % WIDTH, p / WIDTH)), plane[p] & 0xFF, "type " + type + " pixel " + p);
+            }
+        }
+    }
+
+    @Test
+    void subimagesAndGrayImagesAreReadInPlace() {
+        BufferedImage parent = new BufferedImage(WIDTH + 10, HEIGHT + 5, BufferedImage.TYPE_3BYTE_BGR);
+        parent.getGraphics().drawImage(randomImage(BufferedImage.TYPE_INT_RGB, 1), 7, 3, null);
+        BufferedImage sub = parent.getSubimage(7, 3, WIDTH, HEIGHT);
+        byte[] plane = grayPlane(sub);
+        for (int p = 0; p < WIDTH * HEIGHT; p++) assertEquals(luma(sub.getRGB(p % WIDTH, p / WIDTH)), plane[p] & 0xFF);
+
+        // a gray image's plane is its samples, grayscaling it again changes nothing
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] samples = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        new Random(2).nextBytes(samples);
+        assertArrayEquals(samples, grayPlane(gray));
+    }
+
+    @Test
+    void resizedGrayImageIsPaintable() {
+        // a horizontal ramp, resampling keeps it a ramp
+        BufferedImage ramp = new BufferedImage(100, 40, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 40; y++) for (int x = 0; x < 100; x++) ramp.setRGB(x, y, (2 * x) * 0x010101);
+        ProcessedImage processed = new ProcessedImage("ramp", ramp);
+        processed.grayScaleImage();
+        processed.resizeImage(5);
+
+        BufferedImage resized = processed.getProcessedImageInstance();
+        assertEquals(BufferedImage.TYPE_INT_RGB, resized.getType());
+        assertEquals(new ProcessedImage.Dimensions(20, 8), processed.getDimensions());
+        for (int x = 0; x < 20; x++) {
+            int gray = resized.getRGB(x, 4) & 0xFF;
+            assertEquals(resized.getRGB(x, 4) & 0xFFFFFF, gray * 0x010101);
+            assertEquals(10 * x + 4, gray, 1);
+        }
+        processed.setRGB(0, 0, 0xFF0000);
+        assertEquals(0xFF0000, processed.getProcessedImageInstance().getRGB(0, 0) & 0xFFFFFF);
+    }
+
+    @Test
+    void segmentationDoesNotDependOnTheLayout() {
+        BufferedImage rgb = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int base = Math.hypot(x - 18, y - 11) < 8 ? 0xC08040 : 0x304060;
+                rgb.setRGB(x, y, base + random.nextInt(16) * 0x010101);
+            }
+        }
+        BufferedImage bgr = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        bgr.getGraphics().drawImage(rgb, 0, 0, null);
+
+        List<CustomPoint> obj = List.of(new CustomPoint(18, 11), new CustomPoint(19, 11));
+        List<CustomPoint> bkg = List.of(new CustomPoint(0, 0), new CustomPoint(36, 22));
+        int src = 11 * WIDTH + 18, sink = 0;
+        boolean[] fromRgb = new ProcessedImage("rgb", rgb).runGraphCut(src, sink, obj, bkg);
+        boolean[] fromBgr = new ProcessedImage("bgr", bgr).runGraphCut(src, sink, obj, bkg);
+        assertArrayEquals(fromRgb, fromBgr);
+        assertTrue(fromRgb[src] && !fromRgb[sink]);
+    }
+
+    @Test
+    void decoderSubsamplesAndCrops(@TempDir Path directory) throws Exception {
+        BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 4);
+        Path file = directory.resolve("random.png");
+        ImageIO.write(image, "png", file.toFile());
+
+        // the middle pixel of every 3 x 3 block, a partial block at the edge is dropped
+        ProcessedImage whole = ProcessedImage.decode(file.toString(), 3);
+        assertEquals(new ProcessedImage.Dimensions(WIDTH / 3, HEIGHT / 3), whole.getDimensions());
+        BufferedImage decoded = whole.getOriginalImageInstance();
+        for (int y = 0; y < HEIGHT / 3; y++) {
+            for (int x = 0; x < WIDTH / 3; x++) assertEquals(image.getRGB(3 * x + 1, 3 * y + 1), decoded.getRGB(x, y));
+        }
+
+        // a region reaching past the image is clipped to it
+        ProcessedImage region = ProcessedImage.decode(file.toString(), new Rectangle(10, 5, 100, 8), 2);
+        assertEquals(new ProcessedImage.Dimensions((WIDTH - 10) / 2, 4), region.getDimensions());
+        decoded = region.getOriginalImageInstance();
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < (WIDTH - 10) / 2; x++) assertEquals(image.getRGB(10 + 2 * x + 1, 5 + 2 * y + 1), decoded.getRGB(x, y));
+        }
+
+        // counts as resized, the gray image can be painted on
+        region.grayScaleImage();
+        BufferedImage gray = region.getProcessedImageInstance();
+        assertEquals(BufferedImage.TYPE_INT_RGB, gray.getType());
+        assertEquals(luma(image.getRGB(11, 6)), gray.getRGB(0, 0) & 0xFF);
+
+        assertEquals(new ProcessedImage.Dimensions(WIDTH, HEIGHT), ProcessedImage.decode(file.toString(), 1).getDimensions());
+        assertThrows(IllegalArgumentException.class, () -> ProcessedImage.decode(file.toString(), new Rectangle(0, 0, 2, 2), 3));
+        assertThrows(IllegalArgumentException.class, () -> ProcessedImage.decode(file.toString(), 0));
+    }
+}
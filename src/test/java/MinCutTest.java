@@ -0,0 +1,116 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.FlowGraph;
+import org.example.network.GridBoykovKolmogorovSolver;
+import org.example.network.MinCut;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.PushRelabelSolver;
+import org.junit.jupiter.api.Test;
+
+/**
+ * compares the bitset cuts with the boolean[] cuts of every solver and the parallel reachability
+ * pass with the sequential one
+ */
+class MinCutTest {
+
+    @Test
+    void bitsetCutIsTheBooleanCut() {
+        for (FlowSolvers.Factory factory : FlowSolvers.ALL) {
+            for (long seed = 0; seed < 10; seed++) {
+                NetworkFlowSolverBase solver = factory.create(202, 200, 201);
+                FlowSolvers.addRandomGraph(solver, 200, 40, true, seed);
+                MinCut cut = solver.getMinCutSet();
+                assertArrayEquals(solver.getMinCut(), cut.toBooleanArray());
+                assertSame(cut, solver.getMinCutSet());
+                FlowSolvers.close(solver);
+            }
+        }
+    }
+
+    @Test
+    void minCutOnlyPushRelabelReadsTheSinkSide() {
+        for (long seed = 0; seed < 10; seed++) {
+            PushRelabelSolver solver = new PushRelabelSolver(202, 200, 201);
+            solver.setMinCutOnly(true);
+            FlowSolvers.addRandomGraph(solver, 200, 40, true, seed);
+            assertArrayEquals(solver.getMinCut(), solver.getMinCutSet().toBooleanArray());
+        }
+    }
+
+    @Test
+    void cutOutlivesTheSolver() {
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(102, 100, 101);
+        FlowSolvers.addRandomGraph(solver, 100, 40, true, 1);
+        MinCut first = solver.getMinCutSet();
+        boolean[] expected = solver.getMinCut().clone();
+
+        solver.clearEdges();
+        FlowSolvers.addRandomGraph(solver, 100, 40, true, 2);
+        assertNotEquals(first, solver.getMinCutSet());
+        assertArrayEquals(expected, first.toBooleanArray());
+    }
+
+    @Test
+    void gridSolverPacksItsCut() {
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(9, 7, 4);
+        Random random = new Random(5);
+        for (int p = 0; p < 63; p++) {
+            grid.addTerminalWeights(p, random.nextInt(20), random.nextInt(20));
+            if (p % 9 < 8) grid.addEdge(p, 0, random.nextInt(10), random.nextInt(10));
+        }
+        assertArrayEquals(grid.getMinCut(), grid.getMinCutSet().toBooleanArray());
+    }
+
+    @Test
+    void parallelReachabilityMatchesSequential() {
+        // a random sparse graph with dead arcs, so the reached set is neither empty nor everything
+        Random random = new Random(9);
+        int n = 200_000;
+        FlowGraph graph = new FlowGraph(n, 0, n - 1);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < 2; k++) graph.addEdge(i, random.nextInt(n), random.nextInt(3) == 0 ? 0 : 5);
+        }
+        graph.compile();
+
+        MinCut sequential = MinCut.reachableFromSource(graph, 0, false);
+        MinCut parallel = MinCut.reachableFromSource(graph, 0, true);
+        assertEquals(sequential, parallel);
+        assertTrue(sequential.sourceSideCount() > 1000 && sequential.sourceSideCount() < n);
+
+        assertEquals(MinCut.notReachingSink(graph, 0, n - 1, false), MinCut.notReachingSink(graph, 0, n - 1, true));
+    }
+
+    @Test
+    void runsCoverEachSide() {
+        Random random = new Random(4);
+        for (int size : new int[] {1, 63, 64, 65, 1000}) {
+            boolean[] bits = new boolean[size];
+            for (int i = 0; i < size; i++) bits[i] = random.nextInt(4) != 0 ? i > 0 && bits[i - 1] : random.nextBoolean();
+            MinCut cut = MinCut.of(bits);
+
+            int count = 0;
+            for (boolean bit : bits) if (bit) count++;
+            assertEquals(count, cut.sourceSideCount());
+
+            for (boolean side : new boolean[] {true, false}) {
+                List<int[]> runs = new ArrayList<>();
+                cut.forEachRun(side, (from, to) -> runs.add(new int[] {from, to}));
+                boolean[] covered = new boolean[size];
+                int previousEnd = -1;
+                for (int[] run : runs) {
+                    assertTrue(run[0] > previousEnd, "runs are maximal and ordered");
+                    for (int i = run[0]; i < run[1]; i++) {
+                        assertEquals(side, bits[i]);
+                        covered[i] = true;
+                    }
+                    previousEnd = run[1];
+                }
+                for (int i = 0; i < size; i++) assertEquals(bits[i] == side, covered[i]);
+            }
+        }
+    }
+}
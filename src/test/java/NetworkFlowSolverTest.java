@@ -6,8 +6,15 @@
 
 
 
+import java.util.ArrayList;
+import java.util.List;
 import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
 import org.example.network.EdmondsKarpSolver;
+import org.example.network.IbfsSolver;
+import org.example.network.ParallelPushRelabelSolver;
+import org.example.network.PushRelabelSolver;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import org.example.network.NetworkFlowSolverBase;
@@ -16,6 +23,20 @@ abstract class NetworkFlowSolverTest {
 
     abstract NetworkFlowSolverBase createSolver(int n, int s, int t);
 
+    // two hard arcs out of the node behind a hard source arc, their residuals add up past INF
+    void assertHardArcsDoNotOverflow(NetworkFlowSolverBase solver) {
+        solver.addEdge(0, 1, Long.MAX_VALUE);
+        solver.addEdge(1, 2, Long.MAX_VALUE);
+        solver.addEdge(1, 3, Long.MAX_VALUE);
+        solver.addEdge(2, 4, 5);
+        solver.addEdge(3, 4, 5);
+
+        assertEquals(10, solver.getMaxFlow());
+        boolean[] cut = solver.getMinCut();
+        assertTrue(cut[0] && cut[1] && cut[2] && cut[3]);
+        assertFalse(cut[4]);
+    }
+
     @Test
     void simpleSolve(){
         int n = 6;
@@ -545,6 +566,33 @@ abstract class NetworkFlowSolverTest {
     }
 
 
+    @Test
+    void testRandomGraphsMatchEdmondsKarp() {
+        java.util.Random random = new java.util.Random(7);
+
+        for (int round = 0; round < 50; round++) {
+            int n = 20;
+            int s = 0;
+            int t = n - 1;
+
+            NetworkFlowSolverBase solver = createSolver(n, s, t);
+            NetworkFlowSolverBase reference = new EdmondsKarpSolver(n, s, t);
+
+            for (int i = 0; i < 80; i++) {
+                int from = random.nextInt(n);
+                int to = random.nextInt(n);
+                if (from == to) continue;
+                long capacity = random.nextInt(20);
+                solver.addEdge(from, to, capacity);
+                reference.addEdge(from, to, capacity);
+            }
+
+            assertEquals(reference.getMaxFlow(), solver.getMaxFlow(), "round " + round);
+            assertArrayEquals(reference.getMinCut(), solver.getMinCut(), "round " + round);
+        }
+    }
+
+
 }
 
 
@@ -564,3 +612,131 @@ class BoyKovKolmogorovSolverTest extends NetworkFlowSolverTest {
     }
 }
 
+
+
+class PushRelabelSolverTest extends NetworkFlowSolverTest {
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        return new PushRelabelSolver(n, s, t, PushRelabelSolver.Selection.HIGHEST_LABEL);
+    }
+
+    @Test
+    void testHardCapacities() {
+        assertHardArcsDoNotOverflow(createSolver(5, 0, 4));
+        PushRelabelSolver minCutOnly = new PushRelabelSolver(5, 0, 4);
+        minCutOnly.setMinCutOnly(true);
+        assertHardArcsDoNotOverflow(minCutOnly);
+    }
+
+    @Test
+    void testMinCutOnlySeparatesAtMinimumCapacity() {
+        java.util.Random random = new java.util.Random(11);
+
+        for (int round = 0; round < 50; round++) {
+            int n = 20;
+            int[][] edges = new int[80][];
+            PushRelabelSolver solver = new PushRelabelSolver(n, 0, n - 1);
+            solver.setMinCutOnly(true);
+            NetworkFlowSolverBase reference = new EdmondsKarpSolver(n, 0, n - 1);
+
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = new int[] {random.nextInt(n), random.nextInt(n), random.nextInt(20)};
+                solver.addEdge(edges[i][0], edges[i][1], edges[i][2]);
+                reference.addEdge(edges[i][0], edges[i][1], edges[i][2]);
+            }
+
+            boolean[] cut = solver.getMinCut();
+            long cutCapacity = 0;
+            for (int[] e : edges) if (cut[e[0]] && !cut[e[1]]) cutCapacity += e[2];
+
+            assertTrue(cut[0]);
+            assertFalse(cut[n - 1]);
+            assertEquals(reference.getMaxFlow(), solver.getMaxFlow());
+            assertEquals(reference.getMaxFlow(), cutCapacity);
+        }
+    }
+}
+
+
+class FifoPushRelabelSolverTest extends NetworkFlowSolverTest {
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        return new PushRelabelSolver(n, s, t, PushRelabelSolver.Selection.FIFO);
+    }
+
+    @Test
+    void testHardCapacities() {
+        assertHardArcsDoNotOverflow(createSolver(5, 0, 4));
+    }
+}
+
+
+
+class ParallelPushRelabelSolverTest extends NetworkFlowSolverTest {
+
+    // solvers of the running test, their worker threads are stopped after it
+    private final List<ParallelPushRelabelSolver> created = new ArrayList<>();
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        ParallelPushRelabelSolver solver = new ParallelPushRelabelSolver(n, s, t, 4);
+        created.add(solver);
+        return solver;
+    }
+
+    @AfterEach
+    void closeSolvers() {
+        created.forEach(ParallelPushRelabelSolver::close);
+    }
+
+    @Test
+    void testHardCapacities() {
+        assertHardArcsDoNotOverflow(createSolver(5, 0, 4));
+    }
+
+    @Test
+    void testWorkersOutliveASolveUntilClosed() {
+        ParallelPushRelabelSolver solver = new ParallelPushRelabelSolver(5, 0, 4, 4);
+        assertHardArcsDoNotOverflow(solver);
+        solver.clearEdges();
+        assertHardArcsDoNotOverflow(solver);
+
+        solver.close();
+        solver.reset();
+        assertThrows(IllegalStateException.class, solver::getMaxFlow);
+    }
+}
+
+
+
+class DinicSolverTest extends NetworkFlowSolverTest {
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        return new DinicSolver(n, s, t);
+    }
+}
+
+
+
+class CapacityScalingDinicSolverTest extends NetworkFlowSolverTest {
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        DinicSolver solver = new DinicSolver(n, s, t);
+        solver.setCapacityScaling(true);
+        return solver;
+    }
+}
+
+
+
+class IbfsSolverTest extends NetworkFlowSolverTest {
+
+    @Override
+    NetworkFlowSolverBase createSolver(int n, int s, int t) {
+        return new IbfsSolver(n, s, t);
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.FlowGraph;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.OffHeapStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * solves random graphs with their flow graph in off-heap segments, anonymous and file mapped, and
+ * checks them against the same solver on the heap
+ */
+class OffHeapFlowGraphTest {
+
+    @TempDir
+    Path scratch;
+
+    private static void compareWithHeap(Supplier<OffHeapStorage> storages) {
+        for (FlowSolvers.Factory factory : FlowSolvers.ALL) {
+            for (long seed = 0; seed < 20; seed++) {
+                int nodes = 10 + (int) seed * 7;
+                long maxCapacity = seed % 2 == 0 ? 500 : 5_000_000_000L;
+
+                NetworkFlowSolverBase heap = factory.create(nodes + 2, nodes, nodes + 1);
+                FlowSolvers.addRandomGraph(heap, nodes, maxCapacity, false, seed);
+
+                try (OffHeapStorage storage = storages.get()) {
+                    NetworkFlowSolverBase offHeap = factory.create(nodes + 2, nodes, nodes + 1);
+                    offHeap.setGraphStorage(storage);
+                    FlowSolvers.addRandomGraph(offHeap, nodes, maxCapacity, false, seed);
+
+                    assertEquals(heap.getMaxFlow(), offHeap.getMaxFlow());
+                    assertArrayEquals(heap.getMinCut(), offHeap.getMinCut());
+                    assertTrue(storage.allocatedBytes() > 0);
+                    FlowSolvers.close(offHeap);
+                }
+                FlowSolvers.close(heap);
+            }
+        }
+    }
+
+    @Test
+    void inMemorySolvesMatchHeap() {
+        compareWithHeap(OffHeapStorage::inMemory);
+    }
+
+    @Test
+    void mappedSolvesMatchHeap() {
+        compareWithHeap(() -> {
+            try {
+                return OffHeapStorage.mapped(scratch);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        // every scratch file is deleted on close
+        try (var files = Files.list(scratch)) {
+            assertEquals(0, files.count());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void capacityUpdatesWidenOffHeap() {
+        try (OffHeapStorage storage = OffHeapStorage.inMemory()) {
+            BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(4, 0, 3);
+            solver.setGraphStorage(storage);
+            solver.addEdge(0, 1, 5);
+            int middle = solver.addEdge(1, 2, 3);
+            solver.addEdge(2, 3, 5);
+            solver.addEdge(0, 2, 1);
+            assertEquals(4, solver.getMaxFlow());
+
+            solver.updateCapacity(middle, 3_000_000_000L);
+            // both paths now end in the 5 into t
+            assertEquals(5, solver.getMaxFlow());
+        }
+    }
+
+    @Test
+    void storageIsFixedOnceCompiled() {
+        FlowGraph graph = new FlowGraph(2, 0, 1);
+        graph.addEdge(0, 1, 3);
+        try (OffHeapStorage storage = OffHeapStorage.inMemory()) {
+            graph.setStorage(storage);
+            graph.compile();
+            assertTrue(graph.isOffHeap());
+            assertEquals(4, graph.residualWidth());
+            assertEquals(3, graph.capacity(graph.arcOf(0)));
+            assertThrows(IllegalStateException.class, () -> graph.setStorage(storage));
+        }
+        // the segments are gone with the storage
+        assertThrows(IllegalStateException.class, () -> graph.residual(0));
+    }
+}
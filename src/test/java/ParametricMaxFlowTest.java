@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.ParametricCut;
+import org.example.network.ParametricMaxFlowSolver;
+import org.junit.jupiter.api.Test;
+
+/**
+ * checks the cut of a parametric solve at every lambda of the range against a plain solve of the
+ * network at that lambda
+ */
+class ParametricMaxFlowTest {
+
+    private static final int NODES = 30;
+    private static final long MIN = -20, MAX = 40;
+
+    // one random network as parallel arrays: from, to, capacity at lambda 0, slope
+    private record Network(int[] from, int[] to, long[] capacity, long[] slope) {
+
+        static Network random(long seed, boolean hard) {
+            Random random = new Random(seed);
+            int s = NODES, t = NODES + 1, edges = 5 * NODES;
+            int[] from = new int[edges], to = new int[edges];
+            long[] capacity = new long[edges], slope = new long[edges];
+            for (int i = 0, e = 0; i < NODES; i++) {
+                // source links grow, sink links shrink, both stay >= 0 over [MIN, MAX]
+                slope[e] = random.nextInt(4);
+                capacity[e] = -slope[e] * MIN + random.nextInt(50);
+                from[e] = s;
+                to[e++] = i;
+                slope[e] = -random.nextInt(3);
+                capacity[e] = slope[e] * -MAX + random.nextInt(50);
+                from[e] = i;
+                to[e++] = t;
+                for (int k = 0; k < 3; k++, e++) {
+                    from[e] = i;
+                    to[e] = random.nextInt(NODES);
+                    capacity[e] = hard && random.nextInt(15) == 0 ? Long.MAX_VALUE : random.nextInt(30);
+                }
+            }
+            return new Network(from, to, capacity, slope);
+        }
+
+        ParametricCut solve() {
+            ParametricMaxFlowSolver solver = new ParametricMaxFlowSolver(NODES + 2, NODES, NODES + 1);
+            for (int e = 0; e < from.length; e++) solver.addParametricEdge(from[e], to[e], capacity[e], slope[e]);
+            return solver.solve(MIN, MAX);
+        }
+
+        boolean[] solveAt(long lambda) {
+            BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(NODES + 2, NODES, NODES + 1);
+            for (int e = 0; e < from.length; e++) solver.addEdge(from[e], to[e], capacity[e] + slope[e] * lambda);
+            return solver.getMinCut();
+        }
+    }
+
+    private static void assertCutsMatch(Network network) {
+        ParametricCut cuts = network.solve();
+        for (long lambda = MIN; lambda <= MAX; lambda++) {
+            assertArrayEquals(network.solveAt(lambda), cuts.getMinCut(lambda), "lambda " + lambda);
+        }
+    }
+
+    @Test
+    void cutsMatchPlainSolves() {
+        for (long seed = 0; seed < 20; seed++) assertCutsMatch(Network.random(seed, false));
+    }
+
+    @Test
+    void cutsMatchPlainSolvesWithHardEdges() {
+        for (long seed = 0; seed < 20; seed++) assertCutsMatch(Network.random(seed, true));
+    }
+
+    @Test
+    void breakpointsAreWhereTheCutGrows() {
+        Network network = Network.random(3, false);
+        ParametricCut cuts = network.solve();
+        assertTrue(cuts.breakpoints().length > 0);
+
+        long previous = MIN;
+        for (long breakpoint : cuts.breakpoints()) {
+            assertTrue(breakpoint > previous);
+            boolean[] before = cuts.getMinCut(breakpoint - 1), after = cuts.getMinCut(breakpoint);
+            boolean grew = false;
+            for (int v = 0; v < before.length; v++) {
+                assertTrue(!before[v] || after[v], "source sides are nested");
+                grew |= after[v] && !before[v];
+            }
+            assertTrue(grew);
+            previous = breakpoint;
+        }
+    }
+
+    @Test
+    void rejectsEdgesThatBreakMonotonicity() {
+        ParametricMaxFlowSolver solver = new ParametricMaxFlowSolver(4, 0, 3);
+        assertThrows(IllegalArgumentException.class, () -> solver.addParametricEdge(1, 2, 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> solver.addParametricEdge(0, 1, 5, -1));
+        assertThrows(IllegalArgumentException.class, () -> solver.addParametricEdge(1, 3, 5, 1));
+
+        solver.addParametricEdge(0, 1, 5, 1);
+        // the source link would be negative below lambda -5
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(-6, 0));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(1, 0));
+    }
+}
@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.SegmentationCache;
+import org.example.imaging.SegmentationCache.Key;
+import org.example.network.MinCut;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * stores and evicts masks in both tiers of the cache, and checks that runGraphCut serves repeated
+ * runs from it with the cut it would have solved
+ */
+class SegmentationCacheTest {
+
+    private static final byte[] IMAGE = SegmentationCache.digest(new int[16], 4, 4);
+
+    private static Key key(int src) {
+        return SegmentationCache.key(IMAGE, "test", src, 15, new BitSet(), new BitSet());
+    }
+
+    private static MinCut randomCut(int size, long seed) {
+        Random random = new Random(seed);
+        boolean[] sourceSide = new boolean[size];
+        for (int i = 0; i < size; i++) sourceSide[i] = random.nextBoolean();
+        return MinCut.of(sourceSide);
+    }
+
+    @Test
+    void keysDependOnEverythingButSeedOrder() {
+        int[] intensities = new int[16];
+        BitSet inO = new BitSet(), inB = new BitSet();
+        inO.set(5);
+        inB.set(0);
+        Key key = SegmentationCache.key(SegmentationCache.digest(intensities, 4, 4), "a", 5, 0, inO, inB);
+
+        assertEquals(key, SegmentationCache.key(SegmentationCache.digest(new int[16], 4, 4), "a", 5, 0, inO, inB));
+        assertNotEquals(key, SegmentationCache.key(SegmentationCache.digest(intensities, 8, 2), "a", 5, 0, inO, inB));
+        assertNotEquals(key, SegmentationCache.key(SegmentationCache.digest(intensities, 4, 4), "b", 5, 0, inO, inB));
+        assertNotEquals(key, SegmentationCache.key(SegmentationCache.digest(intensities, 4, 4), "a", 5, 0, inB, inO));
+        intensities[3] = 1;
+        assertNotEquals(key, SegmentationCache.key(SegmentationCache.digest(intensities, 4, 4), "a", 5, 0, inO, inB));
+    }
+
+    @Test
+    void memoryTierEvictsTheLeastRecentlyUsed() {
+        MinCut cut = randomCut(1000, 1);
+        SegmentationCache cache = new SegmentationCache(3 * cut.memoryFootprint());
+        for (int i = 0; i < 3; i++) cache.put(key(i), randomCut(1000, i));
+        assertEquals(randomCut(1000, 0), cache.get(key(0)));
+
+        // key 1 is the least recently used now
+        cache.put(key(3), cut);
+        assertNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(0)));
+        assertNotNull(cache.get(key(2)));
+        assertSame(cut, cache.get(key(3)));
+
+        SegmentationCache.Stats stats = cache.stats();
+        assertEquals(4, stats.memoryHits());
+        assertEquals(1, stats.misses());
+        assertEquals(3, stats.memoryEntries());
+        assertEquals(0.8, stats.hitRate(), 1e-9);
+    }
+
+    private static long files(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void diskTierOutlivesTheCacheAndKeepsItsBudget(@TempDir Path directory) throws Exception {
+        // nothing fits in memory, every hit comes from disk
+        SegmentationCache cache = new SegmentationCache(0, directory, 1 << 20);
+        for (int i = 0; i < 5; i++) cache.put(key(i), randomCut(1000 + i, i));
+        assertEquals(randomCut(1002, 2), cache.get(key(2)));
+        assertEquals(1, cache.stats().diskHits());
+        assertEquals(5, files(directory));
+
+        // the files of key 0 and 1 are the oldest, and do not fit into room for three
+        for (int i = 0; i < 5; i++) {
+            Files.setLastModifiedTime(directory.resolve(key(i).digest() + ".cut"), FileTime.fromMillis(1000L * i));
+        }
+        long fileBytes = cache.stats().diskBytes() / 5;
+        SegmentationCache reopened = new SegmentationCache(1 << 20, directory, 3 * fileBytes);
+        assertEquals(3, reopened.stats().diskEntries());
+        assertEquals(3, files(directory));
+        assertNull(reopened.get(key(0)));
+
+        // key 3 is the least recently used now
+        assertEquals(randomCut(1002, 2), reopened.get(key(2)));
+        reopened.put(key(5), randomCut(1000, 5));
+        assertEquals(3, files(directory));
+        assertNull(new SegmentationCache(0, directory, 1 << 20).get(key(3)));
+        assertEquals(randomCut(1004, 4), reopened.get(key(4)));
+
+        // a broken file is a miss and goes away
+        Files.writeString(directory.resolve(key(4).digest() + ".cut"), "broken");
+        SegmentationCache broken = new SegmentationCache(0, directory, 1 << 20);
+        assertNull(broken.get(key(4)));
+        assertEquals(2, files(directory));
+
+        broken.clear();
+        assertEquals(0, files(directory));
+        assertEquals(0, broken.stats().diskBytes());
+    }
+
+    @Test
+    void repeatedRunsAreServedFromTheCache() {
+        int size = 40;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int gray = Math.clamp((Math.hypot(x - 20, y - 20) < 10 ? 190 : 60) + random.nextInt(41) - 20, 0, 255);
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        List<CustomPoint> obj = List.of(new CustomPoint(20, 20), new CustomPoint(21, 20));
+        List<CustomPoint> bkg = new ArrayList<>();
+        for (int x = 0; x < size; x++) bkg.add(new CustomPoint(x, 0));
+        int src = 20 * size + 20, sink = 0;
+
+        SegmentationCache cache = new SegmentationCache(1 << 20);
+        ProcessedImage first = new ProcessedImage("first", image);
+        first.setResultCache(cache);
+        boolean[] solved = first.runGraphCut(src, sink, obj, bkg).clone();
+        assertEquals(1, cache.stats().misses());
+
+        // another session on the same pixels, seeds in another order and one given twice
+        ProcessedImage second = new ProcessedImage("second", image);
+        second.setResultCache(cache);
+        List<CustomPoint> shuffled = new ArrayList<>(bkg);
+        shuffled.add(bkg.get(3));
+        Collections.reverse(shuffled);
+        assertArrayEquals(solved, second.runGraphCut(src, sink, List.of(obj.get(1), obj.get(0)), shuffled));
+        assertEquals(1, cache.stats().memoryHits());
+
+        // another connectivity is another cut
+        second.setConnectivity(8);
+        boolean[] eightConnected = second.runGraphCut(src, sink, obj, bkg);
+        assertEquals(2, cache.stats().misses());
+        ProcessedImage uncached = new ProcessedImage("uncached", image);
+        uncached.setConnectivity(8);
+        assertArrayEquals(uncached.runGraphCut(src, sink, obj, bkg), eightConnected);
+    }
+
+    @Test
+    void aCacheHitOnOtherTerminalsDropsTheKeptGraph() {
+        int width = 12, height = 8;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) image.setRGB(x, y, ((x < width / 2 ? 50 : 200) + random.nextInt(21)) * 0x010101);
+        }
+        int last = width * height - 1;
+        List<CustomPoint> obj = List.of(new CustomPoint(10, 6));
+        List<CustomPoint> bkg = List.of(new CustomPoint(1, 1));
+        List<CustomPoint> moreObj = List.of(new CustomPoint(10, 6), new CustomPoint(8, 2));
+
+        SegmentationCache cache = new SegmentationCache(1 << 20);
+        ProcessedImage other = new ProcessedImage("other", image);
+        other.setResultCache(cache);
+        other.runGraphCut(last, 0, obj, bkg);
+
+        // the kept graph has the terminals (0, last), the hit is for (last, 0)
+        ProcessedImage edited = new ProcessedImage("edited", image);
+        edited.setResultCache(cache);
+        edited.runGraphCut(0, last, bkg, obj);
+        edited.runGraphCut(last, 0, obj, bkg);
+        assertEquals(1, cache.stats().memoryHits());
+        boolean[] cut = edited.runGraphCut(last, 0, moreObj, bkg);
+
+        ProcessedImage fresh = new ProcessedImage("fresh", image);
+        assertArrayEquals(fresh.runGraphCut(last, 0, moreObj, bkg), cut);
+        assertTrue(cut[last]);
+        assertFalse(cut[0]);
+    }
+}
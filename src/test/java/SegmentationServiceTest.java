@@ -0,0 +1,163 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import org.example.batch.SeedFile;
+import org.example.imaging.ProcessedImage;
+import org.example.service.SegmentationService;
+import org.junit.jupiter.api.Test;
+
+/**
+ * posts images to a running service and compares the masks with runGraphCut in this thread, from
+ * many clients at once, and checks that a full queue refuses requests instead of holding them
+ */
+class SegmentationServiceTest {
+
+    private static final String SEEDS = "obj 27 27 33 33;bkg 0 0 59 0;src 30 30";
+
+    // a noisy bright disc on a dark background, as PNG bytes
+    private static byte[] image(long seed) throws Exception {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(60, 60, BufferedImage.TYPE_INT_RGB);
+        int radius = 12 + random.nextInt(10);
+        for (int y = 0; y < 60; y++) {
+            for (int x = 0; x < 60; x++) {
+                int dx = x - 30, dy = y - 30;
+                int gray = Math.clamp((dx * dx + dy * dy < radius * radius ? 190 : 60) + random.nextInt(41) - 20, 0, 255);
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    private static boolean[] segmentAlone(byte[] png, int downsize) throws Exception {
+        ProcessedImage image = new ProcessedImage("alone", ImageIO.read(new ByteArrayInputStream(png)));
+        image.grayScaleImage();
+        if (downsize > 1) image.resizeImage(downsize);
+        int width = image.getDimensions().width(), height = image.getDimensions().height();
+        SeedFile seeds = SeedFile.parse("seeds", List.of(SEEDS.split(";"))).scaled(downsize, width, height);
+        return image.runGraphCut(seeds.src().pointToIndex(width), seeds.sink().pointToIndex(width),
+                seeds.objSeeds(), seeds.bkgSeeds());
+    }
+
+    private static boolean[] readMask(byte[] png) throws Exception {
+        BufferedImage mask = ImageIO.read(new ByteArrayInputStream(png));
+        boolean[] cut = new boolean[mask.getWidth() * mask.getHeight()];
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) cut[y * mask.getWidth() + x] = (mask.getRGB(x, y) & 0xFF) != 0;
+        }
+        return cut;
+    }
+
+    private static HttpRequest post(int port, String query, byte[] body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/segment?" + query))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private static String seeds() {
+        return "seeds=" + URLEncoder.encode(SEEDS, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void concurrentClientsGetTheirOwnMasks() throws Exception {
+        try (SegmentationService service = new SegmentationService(0, 2, 16);
+                HttpClient client = HttpClient.newHttpClient();
+                ExecutorService clients = Executors.newFixedThreadPool(8)) {
+            service.start();
+            List<Future<HttpResponse<byte[]>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                byte[] png = image(i);
+                responses.add(clients.submit(() -> client.send(post(service.port(), seeds(), png), HttpResponse.BodyHandlers.ofByteArray())));
+            }
+            for (int i = 0; i < 8; i++) {
+                HttpResponse<byte[]> response = responses.get(i).get();
+                assertEquals(200, response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+                assertArrayEquals(segmentAlone(image(i), 1), readMask(response.body()));
+                assertTrue(Double.parseDouble(response.headers().firstValue("X-Latency-Millis").orElseThrow()) > 0);
+                assertTrue(response.headers().firstValue("X-Solve-Millis").isPresent());
+            }
+
+            // subsampled while decoding to half the size
+            HttpResponse<byte[]> downsized = client.send(post(service.port(), seeds() + "&downsize=2&engine=IBFS", image(3)),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("30x30", downsized.headers().firstValue("X-Mask-Size").orElseThrow());
+
+            HttpResponse<String> bad = client.send(post(service.port(), "seeds=obj+1+1", image(0)), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, bad.statusCode());
+            bad = client.send(post(service.port(), seeds(), "not an image".getBytes()), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, bad.statusCode());
+
+            SegmentationService.Stats stats = service.stats();
+            assertEquals(11, stats.accepted());
+            assertEquals(9, stats.completed());
+            assertEquals(2, stats.failed());
+            assertEquals(0, stats.rejected());
+            assertTrue(stats.maxLatencyNanos() > 0);
+
+            // the client refuses to send a broken Content-Length, so a raw socket does
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.port())) {
+                socket.getOutputStream().write(("POST /segment?" + seeds() + " HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Content-Length: lots\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                String status = new String(socket.getInputStream().readNBytes(12), StandardCharsets.US_ASCII);
+                assertEquals("HTTP/1.1 400", status);
+            }
+        }
+    }
+
+    @Test
+    void fullQueueIsRefusedAtOnce() throws Exception {
+        try (SegmentationService service = new SegmentationService(0, 1, 0);
+                HttpClient client = HttpClient.newHttpClient()) {
+            service.start();
+            byte[] png = image(1);
+
+            // a client that sends its headers but not yet its body holds the only place
+            try (Socket slow = new Socket(InetAddress.getLoopbackAddress(), service.port())) {
+                OutputStream out = slow.getOutputStream();
+                out.write(("POST /segment?" + seeds() + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + png.length
+                        + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                while (service.stats().accepted() == 0) Thread.sleep(5);
+
+                HttpResponse<String> refused = client.send(post(service.port(), seeds(), png), HttpResponse.BodyHandlers.ofString());
+                assertEquals(503, refused.statusCode());
+                assertEquals("1", refused.headers().firstValue("Retry-After").orElseThrow());
+                assertEquals(1, service.stats().rejected());
+
+                out.write(png);
+                out.flush();
+                InputStream in = slow.getInputStream();
+                String status = new String(in.readNBytes(12), StandardCharsets.US_ASCII);
+                assertEquals("HTTP/1.1 200", status);
+                in.readAllBytes();
+            }
+
+            // the place is free again
+            HttpResponse<String> served = client.send(post(service.port(), seeds(), png), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, served.statusCode());
+            HttpResponse<String> stats = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/stats")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertTrue(stats.body().startsWith("2 accepted, 1 rejected, 2 completed"), stats.body());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
+import org.example.network.GridBoykovKolmogorovSolver;
+import org.example.network.NetworkFlowSolverBase;
+import org.example.network.SolverPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * solves again after reset(), setEdgeCapacity and clearEdges and checks every answer against a
+ * solver built from scratch
+ */
+class SolverReuseTest {
+
+    private static final int NODES = 40;
+    private static final int EDGES = FlowSolvers.EDGES_PER_NODE * NODES;
+
+    private static long[] capacities(long seed) {
+        return FlowSolvers.randomCapacities(NODES, 60, true, seed);
+    }
+
+    private static NetworkFlowSolverBase fresh(FlowSolvers.Factory factory, long[] capacities, long topologySeed) {
+        NetworkFlowSolverBase solver = factory.create(NODES + 2, NODES, NODES + 1);
+        FlowSolvers.addRandomGraph(solver, NODES, capacities, topologySeed);
+        return solver;
+    }
+
+    // expected is a fresh solver, closed once compared
+    private static void assertSameCut(NetworkFlowSolverBase expected, NetworkFlowSolverBase actual) {
+        assertEquals(expected.getMaxFlow(), actual.getMaxFlow());
+        assertArrayEquals(expected.getMinCut(), actual.getMinCut());
+        FlowSolvers.close(expected);
+    }
+
+    @Test
+    void resetSolvesTheSameGraphAgain() {
+        for (FlowSolvers.Factory factory : FlowSolvers.ALL) {
+            NetworkFlowSolverBase solver = fresh(factory, capacities(1), 7);
+            long flow = solver.getMaxFlow();
+            boolean[] cut = solver.getMinCut().clone();
+
+            solver.reset();
+            assertEquals(flow, solver.getMaxFlow());
+            assertArrayEquals(cut, solver.getMinCut());
+            FlowSolvers.close(solver);
+        }
+    }
+
+    @Test
+    void newCapacitiesAfterReset() {
+        for (FlowSolvers.Factory factory : FlowSolvers.ALL) {
+            NetworkFlowSolverBase solver = fresh(factory, capacities(1), 7);
+            solver.getMaxFlow();
+            assertThrows(IllegalStateException.class, () -> solver.setEdgeCapacity(0, 5));
+
+            for (long seed = 2; seed < 12; seed++) {
+                long[] capacities = capacities(seed);
+                solver.reset();
+                for (int e = 0; e < EDGES; e++) solver.setEdgeCapacity(e, capacities[e]);
+                assertSameCut(fresh(factory, capacities, 7), solver);
+            }
+            FlowSolvers.close(solver);
+        }
+    }
+
+    @Test
+    void clearedSolverTakesANewGraph() {
+        for (FlowSolvers.Factory factory : FlowSolvers.ALL) {
+            NetworkFlowSolverBase solver = fresh(factory, capacities(1), 7);
+            solver.getMaxFlow();
+
+            for (long seed = 2; seed < 12; seed++) {
+                long[] capacities = capacities(seed);
+                solver.clearEdges();
+                FlowSolvers.addRandomGraph(solver, NODES, capacities, seed);
+                assertSameCut(fresh(factory, capacities, seed), solver);
+            }
+            FlowSolvers.close(solver);
+        }
+    }
+
+    @Test
+    void resetUndoesDynamicUpdates() {
+        long[] capacities = capacities(1);
+        BoykovKolmogorovSolver solver = (BoykovKolmogorovSolver) fresh(BoykovKolmogorovSolver::new, capacities, 7);
+        solver.getMaxFlow();
+
+        // lowering saturated terminal links reparametrizes their nodes
+        long[] lowered = capacities.clone();
+        for (int e = 0; e < EDGES; e += FlowSolvers.EDGES_PER_NODE) {
+            lowered[e] /= 3;
+            solver.updateCapacity(e, lowered[e]);
+        }
+        assertSameCut(fresh(BoykovKolmogorovSolver::new, lowered, 7), solver);
+
+        solver.reset();
+        assertSameCut(fresh(BoykovKolmogorovSolver::new, lowered, 7), solver);
+    }
+
+    @Test
+    void gridSolverResets() {
+        GridBoykovKolmogorovSolver grid = new GridBoykovKolmogorovSolver(8, 8, 4);
+        long[] flows = new long[3];
+        for (int round = 0; round < 2; round++) {
+            for (int seed = 0; seed < flows.length; seed++) {
+                Random random = new Random(seed);
+                for (int p = 0; p < 64; p++) {
+                    grid.addTerminalWeights(p, random.nextInt(20), random.nextInt(20));
+                    if (p % 8 < 7) grid.addEdge(p, 0, random.nextInt(10), random.nextInt(10));
+                    if (p < 56) grid.addEdge(p, 1, random.nextInt(10), random.nextInt(10));
+                }
+                if (round == 0) flows[seed] = grid.getMaxFlow();
+                else assertEquals(flows[seed], grid.getMaxFlow());
+                grid.reset();
+            }
+        }
+    }
+
+    @Test
+    void poolHandsOutReleasedSolvers() {
+        SolverPool pool = new SolverPool(1);
+        BoykovKolmogorovSolver first = pool.acquire(BoykovKolmogorovSolver.class, 10, 0, 9, () -> new BoykovKolmogorovSolver(10, 0, 9));
+        first.addEdge(0, 9, 3);
+        assertEquals(3, first.getMaxFlow());
+        pool.release(first);
+        assertEquals(1, pool.idleCount());
+
+        // another size or class gets a new solver
+        assertNotSame(first, pool.acquire(BoykovKolmogorovSolver.class, 11, 0, 9, () -> new BoykovKolmogorovSolver(11, 0, 9)));
+        assertNotSame(first, pool.acquire(DinicSolver.class, 10, 0, 9, () -> new DinicSolver(10, 0, 9)));
+
+        BoykovKolmogorovSolver second = pool.acquire(BoykovKolmogorovSolver.class, 10, 0, 9, () -> new BoykovKolmogorovSolver(10, 0, 9));
+        assertSame(first, second);
+        assertEquals(0, pool.idleCount());
+        second.addEdge(0, 9, 5);
+        assertEquals(5, second.getMaxFlow());
+
+        // only one idle solver per shape is kept
+        pool.release(second);
+        pool.release(new BoykovKolmogorovSolver(10, 0, 9));
+        assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    void rebuildingAnEqualGraphAllocatesLittle() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int side = 100, n = side * side;
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(n + 2, n, n + 1);
+
+        long first = 0, last = 0;
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            solver.clearEdges();
+            Random random = new Random(round);
+            for (int p = 0; p < n; p++) {
+                solver.addEdge(n, p, random.nextInt(100));
+                solver.addEdge(p, n + 1, random.nextInt(100));
+                if (p % side < side - 1) solver.addEdge(p, p + 1, random.nextInt(50));
+                if (p + side < n) solver.addEdge(p, p + side, random.nextInt(50));
+            }
+            solver.getMaxFlow();
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            if (round == 0) first = allocated;
+            last = allocated;
+        }
+        // the first round allocates megabytes of arrays, later ones only a few objects
+        assertTrue(last < first / 100, "first " + first + " bytes, last " + last + " bytes");
+    }
+}
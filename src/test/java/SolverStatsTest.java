@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.network.BoykovKolmogorovSolver;
+import org.example.network.DinicSolver;
+import org.example.network.SolverStats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * checks the solver counters against what a solve must have done, and that the flight recorder
+ * events come out when a recording asks for them
+ */
+class SolverStatsTest {
+
+    @TempDir
+    Path scratch;
+
+    // grid-like graph with terminal links
+    private static BoykovKolmogorovSolver randomSolver(int nodes, long seed) {
+        Random random = new Random(seed);
+        int s = nodes, t = nodes + 1;
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(nodes + 2, s, t);
+        for (int i = 0; i < nodes; i++) {
+            solver.addEdge(s, i, random.nextInt(100));
+            solver.addEdge(i, t, random.nextInt(100));
+            for (int k = 0; k < 3; k++) solver.addEdge(i, random.nextInt(nodes), random.nextInt(50));
+        }
+        return solver;
+    }
+
+    @Test
+    void countersAddUp() {
+        BoykovKolmogorovSolver solver = randomSolver(300, 1);
+        solver.setInstrumented(true);
+        SolverStats stats = solver.getStats();
+        // reading the counters does not solve
+        assertEquals(0, stats.getSolves());
+        solver.getMaxFlow();
+
+        assertEquals(1, stats.getSolves());
+        assertTrue(stats.getAugmentations() > 0);
+        assertEquals(stats.getAugmentations(), Arrays.stream(stats.getBottleneckHistogram()).sum());
+        assertEquals(stats.getAugmentations(), stats.getPhaseCalls(SolverStats.Phase.AUGMENT));
+        // one growth phase per augmentation plus the one that finds no path
+        assertEquals(stats.getAugmentations() + 1, stats.getPhaseCalls(SolverStats.Phase.GROW));
+        assertTrue(stats.getGrownNodes() > 0);
+        assertTrue(stats.getScannedArcs() >= stats.getGrownNodes());
+        assertEquals(stats.getOrphansCreated(), stats.getOrphansAdopted() + stats.getOrphansFreed());
+        assertTrue(stats.getSolveNanos() >= stats.getPhaseNanos(SolverStats.Phase.GROW));
+
+        // the numbers do not change the answer
+        assertEquals(randomSolver(300, 1).getMaxFlow(), solver.getMaxFlow());
+    }
+
+    @Test
+    void countersAddUpOverUpdates() {
+        BoykovKolmogorovSolver solver = new BoykovKolmogorovSolver(4, 0, 3);
+        solver.setInstrumented(true);
+        solver.addEdge(0, 1, 5);
+        int middle = solver.addEdge(1, 2, 3);
+        solver.addEdge(2, 3, 5);
+        assertEquals(3, solver.getMaxFlow());
+        long augmentations = solver.getStats().getAugmentations();
+
+        solver.updateCapacity(middle, 4);
+        assertEquals(4, solver.getMaxFlow());
+        assertEquals(2, solver.getStats().getSolves());
+        assertTrue(solver.getStats().getAugmentations() > augmentations);
+    }
+
+    @Test
+    void uninstrumentedSolverHasNoStats() {
+        BoykovKolmogorovSolver solver = randomSolver(50, 2);
+        assertNull(solver.getStats());
+        solver.setInstrumented(true);
+        solver.setInstrumented(false);
+        assertNull(solver.getStats());
+    }
+
+    @Test
+    void flightRecorderSeesSolvesAndPhases() throws IOException {
+        Path file = scratch.resolve("solve.jfr");
+        long firstAugmentations, secondAugmentations;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.example.network.MaxFlowSolve");
+            recording.enable("org.example.network.SolverPhase").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+
+            BoykovKolmogorovSolver instrumented = randomSolver(200, 3);
+            instrumented.setInstrumented(true);
+            instrumented.getMaxFlow();
+            firstAugmentations = instrumented.getStats().getAugmentations();
+            // a second solve that finds the one more path the raised link opens
+            instrumented.updateCapacity(0, 1000);
+            instrumented.getMaxFlow();
+            secondAugmentations = instrumented.getStats().getAugmentations() - firstAugmentations;
+
+            DinicSolver plain = new DinicSolver(3, 0, 2);
+            plain.addEdge(0, 1, 4);
+            plain.addEdge(1, 2, 2);
+            plain.getMaxFlow();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> solves = events.stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.network.MaxFlowSolve"))
+                .toList();
+        assertEquals(3, solves.size());
+        assertTrue(solves.stream().anyMatch(e -> e.getString("solver").equals("DinicSolver") && e.getLong("maxFlow") == 2));
+        // each event counts its own solve, not the running totals
+        List<Long> augmentations = solves.stream().filter(e -> e.getString("solver").equals("BoykovKolmogorovSolver"))
+                .map(e -> e.getLong("augmentations")).toList();
+        assertEquals(List.of(firstAugmentations, secondAugmentations), augmentations);
+        assertTrue(firstAugmentations > 0);
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.example.network.SolverPhase")
+                && e.getString("phase").equals("GROW")));
+    }
+}
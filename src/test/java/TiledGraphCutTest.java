@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.example.imaging.MaskFile;
+import org.example.imaging.ProcessedImage;
+import org.example.imaging.ProcessedImage.GraphCutEngine;
+import org.example.imaging.TiledGraphCut;
+import org.example.use_interface.GraphicalUserInterface.CustomPoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * segments a generated image tile by tile and compares the mask with the grid engine cutting the
+ * whole image at once
+ */
+class TiledGraphCutTest {
+
+    private static final int WIDTH = 170, HEIGHT = 130;
+
+    @TempDir
+    Path directory;
+
+    // two noisy bright blobs on a dark background, one of them across several tile seams
+    private Path writeImage() throws IOException {
+        Random random = new Random(3);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                boolean object = Math.hypot(x - 80, y - 64) < 45 || Math.hypot(x - 140, y - 30) < 15;
+                int gray = Math.clamp((object ? 185 : 70) + random.nextInt(61) - 30, 0, 255);
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        Path file = directory.resolve("blobs.png");
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static List<CustomPoint> square(int x0, int y0, int side){
+        List<CustomPoint> points = new ArrayList<>();
+        for(int y = y0; y < y0 + side; y++) for(int x = x0; x < x0 + side; x++) points.add(new CustomPoint(x, y));
+        return points;
+    }
+
+    private static final List<CustomPoint> OBJ = square(75, 60, 8);
+    private static final List<CustomPoint> BKG = square(2, 2, 10);
+
+    private static boolean[] wholeImageCut(Path file){
+        ProcessedImage image = new ProcessedImage(file.toString());
+        image.setGraphCutEngine(GraphCutEngine.GRID_BOYKOV_KOLMOGOROV);
+        return image.runGraphCut(OBJ.getFirst().pointToIndex(WIDTH), BKG.getFirst().pointToIndex(WIDTH), OBJ, BKG);
+    }
+
+    private static boolean[] labels(MaskFile mask){
+        boolean[] cut = new boolean[mask.width() * mask.height()];
+        for(int y = 0; y < mask.height(); y++) for(int x = 0; x < mask.width(); x++) cut[y * mask.width() + x] = mask.get(x, y);
+        return cut;
+    }
+
+    @Test
+    void oneTileIsTheWholeImageCut() throws IOException {
+        Path file = writeImage();
+        try(MaskFile mask = new TiledGraphCut(4, 256, 0, 8).segment(file, OBJ, BKG, directory.resolve("mask.pbm"))){
+            assertArrayEquals(wholeImageCut(file), labels(mask));
+        }
+    }
+
+    @Test
+    void tilesAgreeWithTheWholeImageCut() throws IOException {
+        Path file = writeImage();
+        boolean[] whole = wholeImageCut(file);
+        for(int connectivity : new int[] {4, 8}){
+            try(MaskFile mask = new TiledGraphCut(connectivity, 32, 8, 6).segment(file, OBJ, BKG, directory.resolve("mask.pbm"))){
+                boolean[] tiled = labels(mask);
+                if(connectivity == 4){
+                    int differing = 0;
+                    for(int p = 0; p < whole.length; p++) if(whole[p] != tiled[p]) differing++;
+                    assertTrue(differing < whole.length / 200, differing + " pixels differ");
+                }
+                // both blobs found, nothing else
+                assertTrue(tiled[64 * WIDTH + 80] && tiled[30 * WIDTH + 140]);
+                assertFalse(tiled[120 * WIDTH + 10] || tiled[5 * WIDTH + 60]);
+            }
+        }
+    }
+
+    @Test
+    void maskIsAPortableBitmap() throws IOException {
+        Path file = writeImage();
+        Path pbm = directory.resolve("mask.pbm");
+        long objects;
+        try(MaskFile mask = new TiledGraphCut(4, 64, 8, 8).segment(file, OBJ, BKG, pbm)){
+            objects = mask.count();
+            assertTrue(objects > 0);
+        }
+
+        byte[] bytes = Files.readAllBytes(pbm);
+        byte[] header = ("P4\n" + WIDTH + " " + HEIGHT + "\n").getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(bytes, header.length));
+        assertEquals(header.length + (WIDTH + 7) / 8 * HEIGHT, bytes.length);
+        long bits = 0;
+        for(int i = header.length; i < bytes.length; i++) bits += Integer.bitCount(bytes[i] & 0xFF);
+        assertEquals(objects, bits);
+    }
+
+    @Test
+    void rejectsSeedsOutsideTheImage() throws IOException {
+        Path file = writeImage();
+        assertThrows(IllegalArgumentException.class, () -> new TiledGraphCut(4).segment(file,
+                List.of(new CustomPoint(WIDTH, 0)), BKG, directory.resolve("mask.pbm")));
+    }
+}